@@ -0,0 +1,50 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import db.juhaku.juhakudb.core.schema.ReferenceAction;
+
+/**
+ * Created by juha on 17/10/26.
+ * <p>Relation field marked with this annotation creates its foreign key with given
+ * {@link ReferenceAction} regardless of default action of database configuration. Annotation can be
+ * used with {@link javax.persistence.ManyToOne}, owning side of {@link javax.persistence.OneToOne}
+ * and {@link javax.persistence.ManyToMany} relations.</p>
+ *
+ * <p>E.g. <code>@OnDelete(ReferenceAction.CASCADE)</code>.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OnDelete {
+    ReferenceAction value();
+}
@@ -29,6 +29,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import db.juhaku.juhakudb.core.android.EntityManager;
+import db.juhaku.juhakudb.core.android.StoreStrategy;
 import db.juhaku.juhakudb.repository.android.SimpleAndroidRepository;
 
 /**
@@ -50,6 +51,14 @@ import db.juhaku.juhakudb.repository.android.SimpleAndroidRepository;
 public @interface Repository {
     Class<? extends SimpleAndroidRepository> value() default NoRepository.class;
 
+    /**
+     * Store strategy of the repository. Strategy is used for store operations that do not
+     * define strategy explicitly.
+     *
+     * @since 2.1.4
+     */
+    StoreStrategy storeStrategy() default StoreStrategy.REPLACE;
+
     /**
      * No repository class represents not initializable repository. This is the default
      * option. This basically marks the annotation so that no custom repository implementation is
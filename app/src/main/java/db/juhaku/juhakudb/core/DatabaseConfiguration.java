@@ -23,6 +23,8 @@ SOFTWARE.
 */
 package db.juhaku.juhakudb.core;
 
+import db.juhaku.juhakudb.core.schema.DateStorage;
+import db.juhaku.juhakudb.core.schema.ReferenceAction;
 import db.juhaku.juhakudb.core.schema.SchemaCreationMode;
 import db.juhaku.juhakudb.repository.android.SimpleAndroidRepository;
 
@@ -44,6 +46,9 @@ public class DatabaseConfiguration {
     private String[] repositoryLocations;
     private boolean enableAutoInject;
     private Class<? extends SimpleAndroidRepository> baseRepositoryClass;
+    private DateStorage dateStorage = DateStorage.TEXT;
+    private ReferenceAction onDelete = ReferenceAction.NO_ACTION;
+    private boolean trackCursors;
 
     /**
      * @return String value of database name
@@ -217,6 +222,83 @@ public class DatabaseConfiguration {
         this.baseRepositoryClass = baseRepositoryClass;
     }
 
+    /**
+     * Get default storage of {@link java.util.Date} fields in database.
+     *
+     * @return {@link DateStorage} of dates. Default is {@link DateStorage#TEXT}.
+     *
+     * @since 2.1.4
+     */
+    public DateStorage getDateStorage() {
+        return dateStorage;
+    }
+
+    /**
+     * Set default storage of {@link java.util.Date} fields in database. Storage can be overridden
+     * per field with {@link db.juhaku.juhakudb.annotation.DateColumn} annotation.
+     *
+     * <p>Changing storage of existing database requires database version to be upgraded with
+     * {@link SchemaCreationMode#UPDATE} mode. Existing date columns will then be migrated to the
+     * new storage.</p>
+     *
+     * @param dateStorage {@link DateStorage} of dates.
+     *
+     * @since 2.1.4
+     */
+    public void setDateStorage(DateStorage dateStorage) {
+        this.dateStorage = dateStorage;
+    }
+
+    /**
+     * Get default action taken by database for referencing rows when referenced row is deleted.
+     *
+     * @return {@link ReferenceAction} of foreign keys. Default is {@link ReferenceAction#NO_ACTION}.
+     *
+     * @since 2.1.4
+     */
+    public ReferenceAction getOnDelete() {
+        return onDelete;
+    }
+
+    /**
+     * Set default action taken by database for referencing rows when referenced row is deleted.
+     * Action can be overridden per relation with {@link db.juhaku.juhakudb.annotation.OnDelete}
+     * annotation. Relations with {@link ReferenceAction#CASCADE} or {@link ReferenceAction#SET_NULL}
+     * are left for SQLite to handle on delete.
+     *
+     * <p>SQLite does not support altering foreign keys so action is applied only to tables created
+     * after it has been changed.</p>
+     *
+     * @param onDelete {@link ReferenceAction} of foreign keys.
+     *
+     * @since 2.1.4
+     */
+    public void setOnDelete(ReferenceAction onDelete) {
+        this.onDelete = onDelete;
+    }
+
+    /**
+     * Check is tracking of cursors enabled or not.
+     * @return true if cursors are tracked; false otherwise.
+     * @since 2.1.4
+     */
+    public boolean isTrackCursors() {
+        return trackCursors;
+    }
+
+    /**
+     * Set tracking of cursors enabled. When enabled allocation site of each cursor opened by queries
+     * is recorded and cursors left open at the end of transaction are reported to log with their
+     * allocation sites and closed. Tracking is meant for debugging as recording allocation sites
+     * is expensive.
+     *
+     * @param trackCursors boolean value to define whether cursors are tracked.
+     * @since 2.1.4
+     */
+    public void setTrackCursors(boolean trackCursors) {
+        this.trackCursors = trackCursors;
+    }
+
     /**
      * @return new instance of {@link db.juhaku.juhakudb.core.DatabaseConfiguration.Builder} to
      * build configuration.
@@ -334,5 +416,38 @@ public class DatabaseConfiguration {
 
             return this;
         }
+
+        /**
+         * {@link DatabaseConfiguration#setDateStorage(DateStorage)}
+         *
+         * @since 2.1.4
+         */
+        public Builder setDateStorage(DateStorage dateStorage) {
+            databaseConfiguration.setDateStorage(dateStorage);
+
+            return this;
+        }
+
+        /**
+         * {@link DatabaseConfiguration#setOnDelete(ReferenceAction)}
+         *
+         * @since 2.1.4
+         */
+        public Builder setOnDelete(ReferenceAction onDelete) {
+            databaseConfiguration.setOnDelete(onDelete);
+
+            return this;
+        }
+
+        /**
+         * {@link DatabaseConfiguration#setTrackCursors(boolean)}
+         *
+         * @since 2.1.4
+         */
+        public Builder setTrackCursors(boolean trackCursors) {
+            databaseConfiguration.setTrackCursors(trackCursors);
+
+            return this;
+        }
     }
 }
@@ -0,0 +1,186 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.android;
+
+import android.database.Cursor;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import db.juhaku.juhakudb.core.mapping.EntityMapping;
+import db.juhaku.juhakudb.core.mapping.FieldMapping;
+import db.juhaku.juhakudb.core.mapping.MappingRegistry;
+import db.juhaku.juhakudb.exception.ConversionException;
+import db.juhaku.juhakudb.filter.Root;
+import db.juhaku.juhakudb.filter.Root.Join;
+import db.juhaku.juhakudb.util.StringUtils;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Column plan maps columns of entity and fetch join fields of query to the columns of cursor.
+ * Plan is resolved once per query from column names of the cursor and after that every row of the
+ * cursor is read by direct column index.</p>
+ *
+ * <p>Columns are resolved in the same order as {@link db.juhaku.juhakudb.filter.QueryProcessor}
+ * creates the select statement. First the columns of root and then columns of each fetch join
+ * in depth first order.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+class ColumnPlan {
+
+    private final Map<Root<?>, int[]> columns = new IdentityHashMap<>();
+
+    /**
+     * Resolve new column plan for given root of query from given cursor.
+     *
+     * @param cursor {@link Cursor} of query result.
+     * @param root {@link Root} of the query.
+     * @param mappings {@link MappingRegistry} to get entity mappings from.
+     * @throws ConversionException if any of the columns cannot be found from cursor.
+     *
+     * @since 2.1.4
+     */
+    ColumnPlan(Cursor cursor, Root<?> root, MappingRegistry mappings) {
+        String[] names = cursor.getColumnNames();
+
+        int offset = resolve(root, names, 0, mappings);
+        resolveJoins(root, names, offset, mappings);
+    }
+
+    /**
+     * Resolve columns for fetch joins of given root. Joins are walked through same way as select
+     * statement is created.
+     *
+     * @return Int offset of next column after resolved joins.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private int resolveJoins(Root<?> root, String[] names, int offset, MappingRegistry mappings) {
+        for (Root r : root.getJoins()) {
+            Join join = (Join) r;
+
+            if (join.isFetch()) {
+                offset = resolve(join, names, offset, mappings);
+            }
+
+            offset = resolveJoins(join, names, offset, mappings);
+        }
+
+        return offset;
+    }
+
+    /**
+     * Resolve cursor column indexes for columns of given root starting from given offset.
+     *
+     * @return Int offset of next column after resolved columns.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private int resolve(Root<?> root, String[] names, int offset, MappingRegistry mappings) {
+        EntityMapping mapping = mappings.getMapping(root.getModel());
+        List<FieldMapping> fields = mapping.getColumns();
+        Set<String> selection = root.getSelection();
+
+        int count = 0;
+        for (FieldMapping field : fields) {
+            if (isSelected(field, selection)) {
+                count++;
+            }
+        }
+
+        // Columns of fields that are not selected are marked with -1.
+        int[] indexes = new int[fields.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = isSelected(fields.get(i), selection)
+                    ? getColumnIndex(offset, count, names, fields.get(i).getColumnName()) : -1;
+        }
+
+        columns.put(root, indexes);
+
+        return offset + count;
+    }
+
+    /**
+     * @hide
+     */
+    private static boolean isSelected(FieldMapping field, Set<String> selection) {
+        return selection == null || field.isId() || selection.contains(field.getName());
+    }
+
+    /**
+     * Get cursor column indexes for given root. Indexes are in same order as
+     * {@link EntityMapping#getColumns()} of the model of the root. Index of column that is not
+     * selected is -1. See {@link Root#select(String...)}.
+     *
+     * @param root {@link Root} to get column indexes for.
+     * @return Int array of cursor column indexes.
+     *
+     * @since 2.1.4
+     */
+    int[] getColumns(Root<?> root) {
+        return columns.get(root);
+    }
+
+    /**
+     * Find the index of the column for the name. This is mandatory as Java cannot assure the order
+     * of the declared fields in objects. Especially dalvik cannot provide them in order.
+     *
+     * <p>Name is searched from array of names with scope of index to index + fieldCount.</p>
+     *
+     * @param index Int value of current index of columns for entity.
+     * @param fieldCount Int value of declared fields in entity.
+     * @param names String array of names in total.
+     * @param name String value of name that should be from array.
+     * @return Int index of the column in array.
+     * @throws ConversionException If field is not found from array of names within scope.
+     *
+     * @since 2.0.1
+     *
+     * @hide
+     */
+    private static int getColumnIndex(int index, int fieldCount, String[] names, String name) throws ConversionException {
+        if ((index + fieldCount) <= names.length) {
+
+            for (int i = index; i < index + fieldCount; i++) {
+
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+        }
+
+        throw new ConversionException("Name: " + name + " could not be found from names: " + StringUtils.arrayToString(names)
+                + " with scope from: " + index + " to: " + (index + fieldCount));
+    }
+}
@@ -0,0 +1,219 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.android;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import db.juhaku.juhakudb.core.mapping.MappingRegistry;
+import db.juhaku.juhakudb.filter.Root;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Conversion context holds all the state of one cursor conversion. New context is created for
+ * every conversion so that {@link EntityConverter} itself stays stateless and one converter can
+ * convert multiple cursors at the same time from different threads.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+class ConversionContext {
+
+    private Cursor cursor;
+    private final Root<?> root;
+    private final MappingRegistry mappings;
+    private ColumnPlan plan;
+    private final IdentityMap identities = new IdentityMap();
+    private final List<Object> roots = new ArrayList<>();
+    private final Set<Object> rootSet = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    private final Map<Collection<?>, Set<Object>> collections = new IdentityHashMap<>();
+    private boolean takeSnapshots = true;
+
+    /**
+     * Initialize new conversion context for given cursor and root of query. Column plan is
+     * resolved for the cursor immediately.
+     *
+     * @param cursor {@link Cursor} that is being converted.
+     * @param root {@link Root} of the query of the cursor.
+     * @param mappings {@link MappingRegistry} to get entity mappings from.
+     *
+     * @since 2.1.4
+     */
+    ConversionContext(Cursor cursor, Root<?> root, MappingRegistry mappings) {
+        this.cursor = cursor;
+        this.root = root;
+        this.mappings = mappings;
+        this.plan = new ColumnPlan(cursor, root, mappings);
+    }
+
+    /**
+     * Continue conversion from given cursor of the same query. Entities known by this context are
+     * retained so rows of the cursor are merged to entities converted from previous cursors.
+     * Column plan is resolved for the cursor immediately.
+     *
+     * @param cursor {@link Cursor} to continue conversion from.
+     *
+     * @since 2.1.4
+     */
+    void setCursor(Cursor cursor) {
+        this.cursor = cursor;
+        this.plan = new ColumnPlan(cursor, root, mappings);
+    }
+
+    /**
+     * Check whether snapshots of loaded entities are taken for updating only changed columns later.
+     *
+     * @return boolean true if snapshots are taken; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    boolean isTakeSnapshots() {
+        return takeSnapshots;
+    }
+
+    /**
+     * Set whether snapshots of loaded entities are taken. Snapshots are not needed for entities
+     * that are not expected to be stored back such as streamed entities.
+     *
+     * @param takeSnapshots boolean true to take snapshots; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    void setTakeSnapshots(boolean takeSnapshots) {
+        this.takeSnapshots = takeSnapshots;
+    }
+
+    /**
+     * Get cursor that is being converted.
+     *
+     * @return {@link Cursor} of conversion.
+     *
+     * @since 2.1.4
+     */
+    Cursor getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Get root of the query of the cursor.
+     *
+     * @return {@link Root} of query.
+     *
+     * @since 2.1.4
+     */
+    Root<?> getRoot() {
+        return root;
+    }
+
+    /**
+     * Get cursor column indexes for given root of query.
+     *
+     * @param root {@link Root} to get column indexes for.
+     * @return Int array of cursor column indexes.
+     *
+     * @since 2.1.4
+     */
+    int[] getColumns(Root<?> root) {
+        return plan.getColumns(root);
+    }
+
+    /**
+     * Get identity map of entities converted within this context.
+     *
+     * @return {@link IdentityMap} of this context.
+     *
+     * @since 2.1.4
+     */
+    IdentityMap getIdentities() {
+        return identities;
+    }
+
+    /**
+     * Add entity to distinct root entities of query. Entity is added only once.
+     *
+     * @param entity Object root entity.
+     *
+     * @since 2.1.4
+     */
+    void addRoot(Object entity) {
+        if (rootSet.add(entity)) {
+            roots.add(entity);
+        }
+    }
+
+    /**
+     * Get distinct root entities of query in order they were found from cursor.
+     *
+     * @return List of root entities.
+     *
+     * @since 2.1.4
+     */
+    <T> List<T> getRoots() {
+        return (List<T>) roots;
+    }
+
+    /**
+     * Release all the entities known by this context. Column plan of cursor is retained. This is
+     * used by streaming conversion to keep memory flat after root entity is completed.
+     *
+     * @since 2.1.4
+     */
+    void clear() {
+        identities.clear();
+        roots.clear();
+        rootSet.clear();
+        collections.clear();
+    }
+
+    /**
+     * Add entity to given collection if it is not there yet. Collection must be created within
+     * this context.
+     *
+     * @param collection {@link Collection} to add entity to.
+     * @param entity Object entity to add.
+     *
+     * @since 2.1.4
+     */
+    void addToCollection(Collection<Object> collection, Object entity) {
+        Set<Object> members = collections.get(collection);
+
+        if (members == null) {
+            members = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+            collections.put(collection, members);
+        }
+
+        if (members.add(entity)) {
+            collection.add(entity);
+        }
+    }
+}
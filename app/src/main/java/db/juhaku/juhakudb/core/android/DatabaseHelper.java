@@ -24,6 +24,7 @@ SOFTWARE.
 package db.juhaku.juhakudb.core.android;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
@@ -36,6 +37,8 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import db.juhaku.juhakudb.core.schema.Constraint;
@@ -58,6 +61,11 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * Private folder location for database version.
      */
     private static final String DB_FOLDER = ".juhaku_dbs";
+
+    /*
+     * Suffix of file marking that tables need to be rebuilt once database is opened.
+     */
+    private static final String REBUILD_SUFFIX = ".rebuild";
     private Schema schema;
     private SQLiteDatabase db;
     private DatabaseConfiguration databaseConfiguration;
@@ -133,6 +141,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             // if table is not found from previous schema, add it, otherwise alter it if necessary.
             if ((oldTable = oldSchema.getElement(table.getName())) == null) {
                 db.execSQL(table.toDDL(DDL.CREATE));
+            } else if (DDL.requiresRebuild(table, oldTable)) {
+                // Column types cannot be altered thus table is rebuilt once upgrade transaction is done.
+                markRebuild();
+                continue;
             } else {
                 for (Entry<String, Schema> entry : table.getElements().entrySet()) {
                     // if old column not found, add it.
@@ -171,6 +183,97 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.setForeignKeyConstraintsEnabled(true);
     }
 
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        if (getRebuildMarker().exists()) {
+            rebuildTables(db);
+        }
+    }
+
+    /**
+     * Mark tables to be rebuilt once database is opened. Marker is persisted before upgrade
+     * transaction is committed so rebuild will be retried on next open if it does not succeed.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private void markRebuild() {
+        File marker = getRebuildMarker();
+        try {
+            if (!marker.exists() && !marker.createNewFile()) {
+                throw new IOException("Could not create file: " + marker.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            // Fail the upgrade, otherwise new version would be committed without rebuilding tables.
+            throw new IllegalStateException("Failed to mark tables for rebuild", e);
+        }
+    }
+
+    private File getRebuildMarker() {
+        return new File(getSchemaFolder(), databaseConfiguration.getName().concat(REBUILD_SUFFIX));
+    }
+
+    /**
+     * Rebuild tables which column types has been changed during update. Rebuild is done outside
+     * of upgrade transaction in order to disable foreign keys while old tables are dropped.
+     *
+     * <p>Tables are compared against their actual column types in database thus rebuild can be
+     * retried safely. Rebuild marker is removed only after rebuild is committed.</p>
+     *
+     * @param db SQLiteDatabase to rebuild tables for.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private void rebuildTables(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(false);
+        db.beginTransaction();
+        try {
+            for (Schema table : Schema.toSet(schema)) {
+                Schema existingTable = DDL.existingTable(table.getName(), getColumnTypes(db, table.getName()));
+                if (!DDL.requiresRebuild(table, existingTable)) {
+                    continue;
+                }
+                Log.v(getClass().getName(), "Rebuilding table: " + table.getName());
+                for (String ddl : DDL.rebuildTable(table, existingTable)) {
+                    db.execSQL(ddl);
+                }
+                createConstrains(db, table);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            db.setForeignKeyConstraintsEnabled(true);
+        }
+
+        if (!getRebuildMarker().delete()) {
+            Log.w(getClass().getName(), "Failed to remove rebuild marker, tables will be checked on next open");
+        }
+    }
+
+    /**
+     * Get declared column types of table in database.
+     *
+     * @hide
+     */
+    private static Map<String, String> getColumnTypes(SQLiteDatabase db, String table) {
+        Map<String, String> columnTypes = new LinkedHashMap<>();
+        Cursor cursor = db.rawQuery("PRAGMA table_info(".concat(table).concat(")"), null);
+        try {
+            int name = cursor.getColumnIndexOrThrow("name");
+            int type = cursor.getColumnIndexOrThrow("type");
+            while (cursor.moveToNext()) {
+                columnTypes.put(cursor.getString(name), cursor.getString(type));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return columnTypes;
+    }
+
     /**
      * Get read write instance of database for current application context.
      * @return SQLiteDatabase
@@ -190,6 +293,16 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return schema;
     }
 
+    /**
+     * Get configuration of database.
+     * @return instance of {@link DatabaseConfiguration}.
+     *
+     * @since 2.1.4
+     */
+    public DatabaseConfiguration getConfiguration() {
+        return databaseConfiguration;
+    }
+
     /**
      * Execute SQL string in current database.
      * <p><strong>Note!</strong> Executing sql via this ignores return result. Use this to
@@ -35,6 +35,7 @@ import dalvik.system.DexFile;
 import db.juhaku.juhakudb.core.Criteria;
 import db.juhaku.juhakudb.core.DatabaseConfiguration;
 import db.juhaku.juhakudb.core.DatabaseConfigurationAdapter;
+import db.juhaku.juhakudb.core.mapping.MappingRegistry;
 import db.juhaku.juhakudb.exception.SchemaInitializationException;
 import db.juhaku.juhakudb.repository.RepositoryFactory;
 
@@ -90,7 +91,11 @@ public class DatabaseManager {
             Log.e(getClass().getName(), "Failed to create database", e);
         }
 
-        em = new EntityManager(databaseHelper);
+        // Precompile entity mappings once so that conversions does not need to reflect entities.
+        MappingRegistry mappings = new MappingRegistry(configuration.getDateStorage());
+        mappings.register(entityClasses);
+
+        em = new EntityManager(databaseHelper, mappings);
         factory = new RepositoryFactory(em, configuration.getBaseRepositoryClass());
 
         if (configuration.getRepositoryLocations() == null) {
@@ -25,45 +25,60 @@ package db.juhaku.juhakudb.core.android;
 
 import android.content.ContentValues;
 import android.database.Cursor;
-import android.util.Log;
+import android.database.sqlite.SQLiteProgram;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.Entity;
-import javax.persistence.ManyToMany;
-import javax.persistence.ManyToOne;
-import javax.persistence.OneToMany;
-import javax.persistence.OneToOne;
-import javax.persistence.Transient;
 
-import db.juhaku.juhakudb.core.NameResolver;
+import db.juhaku.juhakudb.core.mapping.EntityMapping;
+import db.juhaku.juhakudb.core.mapping.FieldMapping;
+import db.juhaku.juhakudb.core.mapping.MappingRegistry;
+import db.juhaku.juhakudb.core.schema.DateStorage;
 import db.juhaku.juhakudb.exception.ConversionException;
-import db.juhaku.juhakudb.exception.NameResolveException;
 import db.juhaku.juhakudb.filter.Root;
 import db.juhaku.juhakudb.filter.Root.Join;
 import db.juhaku.juhakudb.util.ReflectionUtils;
-import db.juhaku.juhakudb.util.StringUtils;
 
 /**
  * Created by juha on 13/04/16.
  *<p>This class provides conversion between entities and database tables.</p>
+ * <p>Converter does not hold state of conversions so single converter can be shared between
+ * threads. Only snapshots of persisted entities are kept and they are held weakly.</p>
  * @author juha
  *
  * @since 1.0.2
  */
 public class EntityConverter {
 
-    private static AtomicInteger index = new AtomicInteger();
+    private final MappingRegistry mappings;
+    private final EntitySnapshots snapshots = new EntitySnapshots();
+
+    /**
+     * Initialize new entity converter which compiles entity mappings on demand.
+     *
+     * @since 1.0.2
+     */
+    public EntityConverter() {
+        this(new MappingRegistry());
+    }
+
+    /**
+     * Initialize new entity converter with precompiled entity mappings.
+     *
+     * @param mappings {@link MappingRegistry} of entity mappings.
+     *
+     * @since 2.1.4
+     */
+    public EntityConverter(MappingRegistry mappings) {
+        this.mappings = mappings;
+    }
 
     /**
      * Convert cursor of SQL query result to list of entities. Root stands for root of SQL
@@ -71,6 +86,8 @@ public class EntityConverter {
      *
      * <p>Entities are converted distinctly for root entity.</p>
      *
+     * <p>Cursor is closed after conversion also when conversion fails.</p>
+     *
      * @param cursor {@link Cursor} containing SQL query result.
      * @param root {@link Root} of SQL query.
      * @return List of converted entities from cursor's returned rows.
@@ -80,60 +97,132 @@ public class EntityConverter {
      * @since 1.2.0
      */
     public <T> List<T> convertCursorToEntityList(Cursor cursor, Root<?> root) throws ConversionException {
-        List<T> entities = new ArrayList<>();
+        try {
+
+            /*
+             * All the state of conversion is kept in context of this invocation. Columns are resolved
+             * once for the cursor and rows are read by direct index after this.
+             */
+            ConversionContext context = new ConversionContext(cursor, root, mappings);
+            convertRows(context, root);
+
+            return context.getRoots();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Convert cursors of chunks of same SQL query to list of entities. Rows of all the cursors are
+     * converted within same context thus entities found from several cursors are merged and root
+     * entities are distinct across the cursors. See {@link #convertCursorToEntityList(Cursor, Root)}.
+     *
+     * @param cursors List of {@link Cursor}s of chunks of the query in order.
+     * @param root {@link Root} of SQL query.
+     * @return List of converted entities from rows of the cursors.
+     *
+     * @throws ConversionException if any exception occurs during conversion.
+     *
+     * @since 2.1.4
+     */
+    public <T> List<T> convertCursorsToEntityList(List<Cursor> cursors, Root<?> root) throws ConversionException {
+        if (cursors.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        ConversionContext context = new ConversionContext(cursors.get(0), root, mappings);
+        for (int i = 0; i < cursors.size(); i++) {
+            if (i > 0) {
+                context.setCursor(cursors.get(i));
+            }
+            convertRows(context, root);
+        }
+
+        return context.getRoots();
+    }
+
+    /**
+     * Convert remaining rows of cursor of given context to root entities of the context.
+     *
+     * @hide
+     */
+    private void convertRows(ConversionContext context, Root<?> root) {
+        Cursor cursor = context.getCursor();
 
         while (cursor.moveToNext()) {
             // convert the main object first.
-            T entity = convertCursorToEntity(cursor, root.getModel());
-            T foundEntity = findEntityById(ReflectionUtils.getIdFieldValue(entity), entities);
+            Object entity = convertCursorToEntity(context, root);
 
             /*
-             * If entity is not found add it to the list, otherwise do not add new one. Transform
-             * distinctly for root entity.
+             * Entities with same id share same instance so root entities are transformed distinctly
+             * simply by adding each instance once.
              */
-            if (foundEntity == null) {
-                entities.add(entity);
-            }
+            context.addRoot(entity);
 
             // convert joins from this model class.
-            alterEntityConvertJoins(cursor, root, foundEntity == null ? entity : foundEntity);
-
-            // reset index.
-            index.set(0);
+            alterEntityConvertJoins(context, root, entity);
         }
-
-        return entities;
     }
 
     /**
-     * Find existing entity from entities list by id of the entity.
+     * Convert cursor of SQL query result to entities one at a time. Each distinct root entity
+     * is passed to given callback as soon as all of its rows have been read.
      *
-     * @param id Object id value of the entity to look for existing entity.
-     * @param entities Collection of entities to look for entity.
-     * @return Found entity or null if was not found.
+     * <p>Root entities are only deduplicated across adjacent rows with same id which is the case
+     * with fetch joins. Conversion state is released after each root entity thus entities of
+     * different root entities do not share instances.</p>
      *
-     * @since 1.2.0
+     * <p>Snapshots are not taken of streamed entities thus storing them writes all of their
+     * columns.</p>
      *
-     * @hide
+     * @param cursor {@link Cursor} containing SQL query result.
+     * @param root {@link Root} of SQL query.
+     * @param callback {@link RowCallback} to pass converted root entities to.
+     * @return Int number of root entities passed to the callback.
+     *
+     * @throws ConversionException if any exception occurs during conversion.
+     *
+     * @since 2.1.4
      */
-    private static <T> T findEntityById(Object id, Collection<T> entities) {
-        if (id != null) {
-            for (T entity : entities) {
-                if (id.equals(ReflectionUtils.getIdFieldValue(entity))) {
+    public <T> int convertCursorToEntities(Cursor cursor, Root<?> root, RowCallback<T> callback) throws ConversionException {
+        ConversionContext context = new ConversionContext(cursor, root, mappings);
+        context.setTakeSnapshots(false);
+        EntityMapping mapping = mappings.getMapping(root.getModel());
+        int idIndex = context.getColumns(root)[mapping.getIdColumn()];
+
+        Object current = null;
+        Object currentId = null;
+        int count = 0;
 
-                    return entity;
-                }
+        while (cursor.moveToNext()) {
+            Object id = mapping.getId().read(cursor, idIndex);
+
+            // Row of another root entity, previous one is complete.
+            if (current != null && (id == null || !id.equals(currentId))) {
+                callback.onRow((T) current);
+                count++;
+                context.clear();
             }
+
+            current = convertCursorToEntity(context, root);
+            currentId = id;
+
+            alterEntityConvertJoins(context, root, current);
         }
 
-        return null;
+        if (current != null) {
+            callback.onRow((T) current);
+            count++;
+        }
+
+        return count;
     }
 
     /**
      * Alter entity's field with fetch join values from root. If root contains fetch joins they are
      * converted and placed to entity's corresponding field.
      *
-     * @param cursor {@link Cursor}'s row to be converted to entity and placed to entity's field.
+     * @param context {@link ConversionContext} of cursor which row is converted to entity and placed to entity's field.
      * @param root {@link Root} of joins that are going to be altered to the entity.
      * @param entity {@link Object} that is being altered with conversion objects.
      *
@@ -141,19 +230,20 @@ public class EntityConverter {
      *
      * @hide
      */
-    private <T> void alterEntityConvertJoins(Cursor cursor, Root<?> root, T entity) {
+    private void alterEntityConvertJoins(ConversionContext context, Root<?> root, Object entity) {
         for (Root r : root.getJoins()) {
             Join join = (Join) r;
 
             if (join.isFetch()) {
 
                 // convert field entity and add it to the object.
-                T fieldEntity = convertCursorToEntity(cursor, join.getModel());
+                Object fieldEntity = convertCursorToEntity(context, join);
 
-                Field targetField = ReflectionUtils.findField(root.getModel(), join.getTarget());
+                FieldMapping target = mappings.getMapping(root.getModel()).getField(join.getTarget());
+                Field targetField = target.getField();
 
                 // Take the id of the converted entity
-                Object id = ReflectionUtils.getIdFieldValue(fieldEntity);
+                Object id = mappings.getMapping(join.getModel()).getIdValue(fieldEntity);
 
                 //TODO support maps?
 
@@ -163,9 +253,12 @@ public class EntityConverter {
                  *
                  * This is because collections must be gradually altered since each row from database
                  * result has its own value to collection.
+                 *
+                 * If id of the entity is null it is skipped as it is an empty row from database
+                 * caused by fetch join.
                  */
                 if (Collection.class.isAssignableFrom(targetField.getType())) {
-                    Collection value = ReflectionUtils.getFieldValue(entity, targetField);
+                    Collection value = target.getValue(entity);
 
                     if (value == null) {
                         if (List.class.isAssignableFrom(targetField.getType())) {
@@ -179,181 +272,132 @@ public class EntityConverter {
                             value = instantiateByDefaultConstructor(targetField.getType());
                         }
 
-                        ReflectionUtils.setFieldValue(targetField, entity, value);
+                        target.setValue(entity, value);
                     }
 
-                    /*
-                     * Do found checking only for entities, other typed values does not have joins
-                     * forward so they can be safely added to the collection.
-                     */
-                    if (fieldEntity.getClass().isAnnotationPresent(Entity.class)) {
-
-                        // If converted entity is not found from the collection add it.
-
-                        /*
-                         * If id of the entity is not null add the entity otherwise skip it as it is
-                         * an empty row from database caused by fetch join.
-                         */
-                        if (findEntityById(id, value) == null && id != null) {
-                            value.add(fieldEntity);
-                        }
-
-                    } else {
-                        value.add(fieldEntity);
-                    }
-
-                } else {
-                    /*
-                     * If id of the entity is not null add the entity otherwise skip it as it is
-                     * an empty row from database caused by fetch join.
-                     */
+                    // Entities are shared by id so converted entity is added only once to the collection.
                     if (id != null) {
-                        ReflectionUtils.setFieldValue(targetField, entity, fieldEntity);
+                        context.addToCollection(value, fieldEntity);
                     }
+
+                } else if (id != null) {
+                    target.setValue(entity, fieldEntity);
                 }
 
                 // If join has joins to even further convert them as well.
                 if (!join.getJoins().isEmpty()) {
-                    Object parentEntity = ReflectionUtils.getFieldValue(join.getTarget(), entity);
-
-                    if (Collection.class.isAssignableFrom(targetField.getType())) {
-
-                        // Find the actual parent from the collection.
-                        Object parent = findEntityById(ReflectionUtils.getIdFieldValue(fieldEntity), (Collection<Object>) parentEntity);
-
-                        alterEntityConvertJoins(cursor, join, parent == null ? fieldEntity : parent);
-                    } else {
-
-                        alterEntityConvertJoins(cursor, join, parentEntity == null ? fieldEntity : parentEntity);
-                    }
+                    alterEntityConvertJoins(context, join, fieldEntity);
                 }
             }
         }
     }
 
     /**
-     * Convert's cursor's row to entity of model class provided.
+     * Convert's cursor's row to entity of model class of given root. Columns are read by indexes
+     * resolved to the column plan.
+     *
+     * <p>If entity with same id is already converted within the context the existing instance will
+     * be returned. If existing instance is only referenced by id so far it will be loaded from the
+     * row.</p>
      *
-     * @param cursor {@link Cursor}'s row to be converted to entity of model class.
-     * @param model {@link Class} of database model where to convert cursor's row.
+     * @param context {@link ConversionContext} of cursor which row is converted to entity of model class.
+     * @param root {@link Root} whose model class row is converted to.
      * @return Fully converted entity from cursor's row.
      *
      * @since 1.2.0
      *
      * @hide
      */
-    private <T> T convertCursorToEntity(Cursor cursor, Class<?> model) {
-        // instantiate model
-        Object entity = instantiateByDefaultConstructor(model);
+    private <T> T convertCursorToEntity(ConversionContext context, Root<?> root) {
+        EntityMapping mapping = mappings.getMapping(root.getModel());
+        IdentityMap identities = context.getIdentities();
 
-        String[] names = cursor.getColumnNames();
-        int entityIndex = index.get();
-        int fieldCount = countDeclaredFields(model);
+        Cursor cursor = context.getCursor();
+        int[] indexes = context.getColumns(root);
+        List<FieldMapping> fields = mapping.getColumns();
 
-        for (Field field : model.getDeclaredFields()) {
-            boolean accessible = field.isAccessible();
-            field.setAccessible(true);
+        Object id = mapping.getId().read(cursor, indexes[mapping.getIdColumn()]);
 
-            /*
-             * Ignore fields that has primary key as reverse join because there is no such column
-             * in database thus nothing to do.
-             */
-            if (hasPrimaryKeyJoin(field)) {
-                continue;
+        Object entity = null;
+        if (id != null) {
+            entity = identities.get(mapping.getModel(), id);
+
+            if (entity != null && identities.isLoaded(mapping.getModel(), id)) {
+                return (T) entity;
             }
+        }
 
-            String name = resolveName(field);
+        // instantiate model
+        if (entity == null) {
+            entity = mapping.newInstance();
+        }
 
-            // Double check that column name in index matches to the required column name
-            int fieldIndex = getColumnIndex(entityIndex, fieldCount, names, name);
+        /*
+         * Primary key joins are not part of columns as there is no such column in database thus
+         * nothing to do for them.
+         */
+        for (int i = 0; i < indexes.length; i++) {
+            FieldMapping field = fields.get(i);
 
-//            if (!name.equals(names[index.get()])) {
-//                throw new ConversionException("Field's name and indexed table column name does not match: " + name + " <> " + names[index.get()]);
-//            }
+            if (indexes[i] < 0) {
+                // Field is not selected by projection of the query.
+                continue;
 
-            Class<?> type = ReflectionUtils.getFieldType(field);
-            if (type.isAnnotationPresent(Entity.class)) {
+            } else if (field.isEntity()) {
 
-                /*
-                 * For entities get id fields type in order to obtain correct id value.
-                 */
-                Field idField = ReflectionUtils.findIdField(type);
-                Object value = getColumnValue(cursor, ReflectionUtils.getFieldType(idField), fieldIndex);
+                // For entities the column contains the id of referenced entity.
+                Object value = field.read(cursor, indexes[i]);
 
                 // Add entity with value to the mapping entity if value is found from database query.
                 if (value != null) {
-                    // Instantiate new entity
-                    Object fieldEntity = instantiateByDefaultConstructor(type);
-
-                    ReflectionUtils.setFieldValue(ReflectionUtils.findIdField(fieldEntity.getClass()), fieldEntity, value);
-                    ReflectionUtils.setFieldValue(field.getName(), entity, fieldEntity);
+                    field.setValue(entity, reference(identities, mappings.getMapping(field.getType()), value));
                 }
 
+            } else if (i == mapping.getIdColumn()) {
+                field.setValue(entity, id);
+
             } else {
-                // Get the value and add a new resource to result set.
-                Object value = getColumnValue(cursor, type, fieldIndex);
+                // Read the value with the typed reader of the field.
+                field.readTo(cursor, indexes[i], entity);
+            }
+        }
 
-                ReflectionUtils.setFieldValue(field.getName(), entity, value);
+        if (id != null) {
+            identities.put(mapping.getModel(), id, entity, true);
 
+            // Snapshot of loaded state is used to update only changed columns when entity is stored.
+            if (context.isTakeSnapshots()) {
+                snapshots.put(entity, entityToColumnValues(entity));
             }
-            index.incrementAndGet();
-
-            field.setAccessible(accessible); // restore original status
         }
 
         return (T) entity;
     }
 
     /**
-     * Find the index of the column for the name. This is mandatory as Java cannot assure the order
-     * of the declared fields in objects. Especially dalvik cannot provide them in order.
+     * Get reference to entity by id. If entity is already known by identity map it is returned
+     * otherwise new entity with only id set is created and put to the identity map.
      *
-     * <p>Name is searched from array of names with scope of index to index + fieldCount.</p>
+     * @param identities {@link IdentityMap} of the conversion.
+     * @param mapping {@link EntityMapping} of referenced entity.
+     * @param id Object id of referenced entity.
+     * @return Referenced entity.
      *
-     * @param index Int value of current index of columns for entity.
-     * @param fieldCount Int value of declared fields in entity.
-     * @param names String array of names in total.
-     * @param name String value of name that should be from array.
-     * @return Int index of the column in array.
-     * @throws ConversionException If field is not found from array of names within scope.
-     *
-     * @since 2.0.1
+     * @since 2.1.4
      *
      * @hide
      */
-    private static int getColumnIndex(int index, int fieldCount, String[] names, String name) throws ConversionException {
-        if ((index + fieldCount) <= names.length) {
+    private static Object reference(IdentityMap identities, EntityMapping mapping, Object id) {
+        Object entity = identities.get(mapping.getModel(), id);
 
-            for (int i = index; i < index + fieldCount; i++) {
+        if (entity == null) {
+            entity = mapping.newInstance();
+            mapping.setIdValue(entity, id);
 
-                if (names[i].equals(name)) {
-                    return i;
-                }
-            }
+            identities.put(mapping.getModel(), id, entity, false);
         }
 
-        throw new ConversionException("Name: " + name + " could not be found from names: " + StringUtils.arrayToString(names)
-                + " with scope from: " + index + " to: " + (index + fieldCount));
-    }
-
-    /**
-     * Resolves types name silently. If error will occur during name resolving error will be thrown
-     * silently. This is preferred behaviour since processing should not be allowed further if
-     * resolving fails for reason.
-     *
-     * @param type T type either {@link Class} of database entity or {@link Field} of entity class.
-     * @return String value of resolved name.
-     *
-     * @since 1.2.0
-     *
-     * @hide
-     */
-    private static <T> String resolveName(T type) {
-        try {
-            return NameResolver.resolveName(type);
-        } catch (NameResolveException e) {
-            throw new ConversionException("Failed to resolve type's name", e);
-        }
+        return entity;
     }
 
     /**
@@ -380,11 +424,13 @@ public class EntityConverter {
 
     public List<ResultSet> convertCursorToCustomResultSetList(Cursor cursor) throws ConversionException {
         List<ResultSet> retVal = new ArrayList<>();
-
-        while (cursor.moveToNext()) {
-            retVal.add(cursorToCustomResultSet(cursor));
+        try {
+            while (cursor.moveToNext()) {
+                retVal.add(cursorToCustomResultSet(cursor));
+            }
+        } finally {
+            cursor.close();
         }
-        cursor.close();
 
         return retVal;
     }
@@ -394,111 +440,40 @@ public class EntityConverter {
         int cols = cursor.getColumnCount();
         for (int i = 0; i < cols; i++) {
             String name = cursor.getColumnName(i);
-            resultSet.add(null, name, getColumnValue(cursor, null, i), null);
+            resultSet.add(null, name, getColumnValue(cursor, i), null);
         }
 
         return resultSet;
     }
 
     /*
-     * Get column value as given class.
+     * Get column value by the type of the column.
      */
-    private <T> T getColumnValue(Cursor cursor, Class<?> clazz, int index) {
-//        int index = cursor.getColumnIndex(columnName);
-//        if (index < 0 || cursor.getCount() == 0) {
-//            return null;
-//        }
+    private static Object getColumnValue(Cursor cursor, int index) {
         int type = cursor.getType(index);
 
         if (type == Cursor.FIELD_TYPE_FLOAT) {
 
-            Float val = cursor.getFloat(index);
-            if (clazz == null) {
-                return (T) val;
-            } else {
-                return (T) constructType(clazz, val.toString());
-            }
+            // SQLite REAL is a double, reading it as float would lose precision.
+            return cursor.getDouble(index);
 
         } else if (type == Cursor.FIELD_TYPE_INTEGER) {
 
-            Integer val = cursor.getInt(index);
-            if (clazz == null) {
-                return (T) val;
-            } else if (Boolean.class.isAssignableFrom(clazz) || Boolean.TYPE.isAssignableFrom(clazz)) {
-                return (T) (val == 0 ? Boolean.FALSE : Boolean.TRUE);
+            // Return integers as before and larger values as long instead of truncating them.
+            long val = cursor.getLong(index);
+            if (val == (int) val) {
+                return (int) val;
             } else {
-                return (T) constructType(clazz, val.toString());
+                return val;
             }
 
         } else if (type == Cursor.FIELD_TYPE_BLOB) {
 
-            return (T) cursor.getBlob(index);
+            return cursor.getBlob(index);
 
         } else {
 
-            String val = cursor.getString(index);
-
-            if (clazz != null && Date.class.isAssignableFrom(clazz)) {
-                try {
-
-                    if (val != null) {
-                        return (T) new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").parse(val);
-                    } else {
-                        return null;
-                    }
-
-                } catch (ParseException e) {
-                    Log.w(getClass().getName(), "incompatible date: " + val + " returning null");
-                    return null;
-                }
-
-            } else if (clazz != null && Enum.class.isAssignableFrom(clazz)) {
-
-                Class<? extends Enum> enVal = (Class<? extends Enum>) clazz;
-                if (val != null) {
-
-                    return (T) Enum.valueOf(enVal, val);
-
-                } else {
-
-                    return null;
-                }
-
-            } else {
-
-                return (T) val;
-
-            }
-        }
-    }
-
-    /*
-     * Constructs value and return as given class.
-     */
-    private <T> T constructType(Class<?> clazz, T value) {
-        try {
-            if (clazz.isAnnotationPresent(Entity.class)) {
-                clazz = ReflectionUtils.getFieldType(ReflectionUtils.findIdField(clazz));
-            }
-            Constructor<?> constructor = null;
-            for (Constructor c : clazz.getDeclaredConstructors()) {
-                if (c.getParameterTypes().length == 1 && String.class.isAssignableFrom(c.getParameterTypes()[0])) {
-                    constructor = c;
-                    break;
-                }
-            }
-            if (constructor != null) {
-
-                return (T) constructor.newInstance(value.toString());
-            } else {
-                Log.w(getClass().getName(), "incompatible type: " + value.getClass() + " with value: " + value + " for class: "
-                        + clazz + ", returning null");
-
-                return null;
-            }
-        } catch (Exception e) {
-            throw new ConversionException("Failed to construct type: " + value.getClass() + " with value: " + value
-                    + " for class: " + clazz, e);
+            return cursor.getString(index);
         }
     }
 
@@ -519,26 +494,19 @@ public class EntityConverter {
 
         ContentValues values = new ContentValues();
 
-        for (Field field : object.getClass().getDeclaredFields()) {
-            field.setAccessible(true);
-
-            // Ignore primary key joins as they do not have column in the current object's table.
-            if (hasPrimaryKeyJoin(field)) {
-                continue;
-            }
+        // Primary key joins are not part of columns as they do not have column in the current object's table.
+        for (FieldMapping mapping : mappings.getMapping(object.getClass()).getColumns()) {
+            Field field = mapping.getField();
+            String columnName = mapping.getColumnName();
 
             try {
-                String columnName;
 
                 /*
                  * If field has foreign key relation to another table and this field has a value add the foreign key
                  * value the the content values.
                  */
-                if (field.isAnnotationPresent(ManyToOne.class)
-                        || (field.isAnnotationPresent(OneToOne.class) && StringUtils.isBlank(field.getAnnotation(OneToOne.class).mappedBy()))) {
-                    columnName = NameResolver.resolveName(field);
-
-                    Object value = getIdFieldValue(object, field);
+                if (mapping.getRelation().isForeignKeyJoin()) {
+                    Object value = getIdFieldValue(object, mapping);
 
                     // Id is either long or integer.
                     if (value != null) {
@@ -549,10 +517,6 @@ public class EntityConverter {
                         }
                     }
                     continue;
-
-                } else {
-                    // Resolve regular column name of the current object.
-                    columnName = NameResolver.resolveName(field);
                 }
 
                 if (Integer.class.isAssignableFrom(field.getType()) || Integer.TYPE.isAssignableFrom(field.getType())) {
@@ -582,9 +546,11 @@ public class EntityConverter {
                 } else if (String.class.isAssignableFrom(field.getType())) {
                     values.put(columnName, (String) field.get(object));
 
+                } else if (mapping.getDateStorage() == DateStorage.EPOCH_MILLIS) {
+                    values.put(columnName, (Long) mapping.getDateStorage().toDatabaseValue((Date) field.get(object)));
+
                 } else if (Date.class.isAssignableFrom(field.getType())) {
-                    Object value = field.get(object);
-                    values.put(columnName, value != null ? new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(value) : null);
+                    values.put(columnName, (String) DateStorage.TEXT.toDatabaseValue((Date) field.get(object)));
 
                 } else if (Enum.class.isAssignableFrom(field.getType())) {
                     Object value = field.get(object);
@@ -605,72 +571,125 @@ public class EntityConverter {
     }
 
     /**
-     * Get id fields value of associated entity behind given field in object.
-     * @param object Object to query fields value from.
-     * @param item Field that has type of database entity whose id field values is returned.
-     * @return Object the value of id field. Typically is either Long or Integer.
+     * Get column values of entity as they are stored to database. Values are in the order of
+     * {@link EntityMapping#getColumns()}. Value is either null, Long, Double, String or byte array.
      *
-     * @since 1.0.2
+     * @param object The entity to get column values for.
+     * @return Array of column values.
+     * @throws ConversionException if any exception occurs during conversion.
      *
-     * @hide
+     * @since 2.1.4
      */
-    private static Object getIdFieldValue(Object object, Field item) {
-        Object val = ReflectionUtils.getFieldValue(object, item);
+    public Object[] entityToColumnValues(Object object) throws ConversionException {
+        List<FieldMapping> columns = mappings.getMapping(object.getClass()).getColumns();
+        Object[] values = new Object[columns.size()];
 
-        if (val != null) {
+        for (int i = 0; i < values.length; i++) {
+            FieldMapping mapping = columns.get(i);
 
-            return ReflectionUtils.getIdFieldValue(val);
-        } else {
+            // For foreign key relation the value is the id of referenced entity.
+            Object value = mapping.getRelation().isForeignKeyJoin()
+                    ? getIdFieldValue(object, mapping) : mapping.getValue(object);
 
-            return null;
+            if (value instanceof Boolean) {
+                values[i] = (Boolean) value ? 1L : 0L;
+
+            } else if (value instanceof Float || value instanceof Double) {
+                values[i] = ((Number) value).doubleValue();
+
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                    || value instanceof Byte) {
+                values[i] = ((Number) value).longValue();
+
+            } else if (value instanceof byte[] || value instanceof String) {
+                values[i] = value;
+
+            } else if (value instanceof Enum) {
+                values[i] = value.toString();
+
+            } else if (value instanceof Date) {
+                values[i] = mapping.getDateStorage().toDatabaseValue((Date) value);
+            }
+
+            // Types not supported by content values are not stored either.
         }
+
+        return values;
     }
 
     /**
-     * Check is given field annotated with one of {@link ManyToMany}, {@link OneToMany} or {@link OneToOne}
-     * with mapped by value empty.
+     * Bind column value to given compiled statement with typed bind method. Value must be one
+     * returned by {@link #entityToColumnValues(Object)} or an id.
      *
-     * <p>If field is annotated with one of these annotations the join to other table is made from
-     * primary key of field's owning class. This means that field with annotation {@link javax.persistence.Id}
-     * is being used to make the join.</p>
+     * @param program {@link SQLiteProgram} to bind value to.
+     * @param index Int index of the parameter starting from 1.
+     * @param value Object value to bind.
      *
-     * @param field {@link Field} of class to check primary key join for.
-     * @return Returns boolean value; true if field has primary key join; false otherwise.
+     * @since 2.1.4
+     */
+    public static void bindValue(SQLiteProgram program, int index, Object value) {
+        if (value == null) {
+            program.bindNull(index);
+
+        } else if (value instanceof Double || value instanceof Float) {
+            program.bindDouble(index, ((Number) value).doubleValue());
+
+        } else if (value instanceof Number) {
+            program.bindLong(index, ((Number) value).longValue());
+
+        } else if (value instanceof byte[]) {
+            program.bindBlob(index, (byte[]) value);
+
+        } else {
+            program.bindString(index, value.toString());
+        }
+    }
+
+    /**
+     * Get snapshot of column values of given entity. Snapshot is taken when entity is loaded from
+     * database and when it has been stored to database.
      *
-     * @since 1.0.2
+     * @param entity Object entity to get snapshot for.
+     * @return Array of column values in order of {@link EntityMapping#getColumns()} or null if
+     * entity is not known to be persisted.
      *
-     * @hide
+     * @since 2.1.4
      */
-    private static boolean hasPrimaryKeyJoin(Field field) {
-        return field.isAnnotationPresent(ManyToMany.class) || field.isAnnotationPresent(OneToMany.class)
-                || (field.isAnnotationPresent(OneToOne.class) && !StringUtils.isBlank(field.getAnnotation(OneToOne.class).mappedBy()));
+    public Object[] getSnapshot(Object entity) {
+        return snapshots.get(entity);
     }
 
     /**
-     * Get's count of declared fields in in given class.
+     * Take snapshot of column values of given entity after entity has been stored to database.
      *
-     * @param type Instance of {@link Class} type of object which declared fields will be counted.
+     * @param entity Object entity to take snapshot for.
+     * @param values Array of stored column values of the entity.
      *
-     * @return count of declared fields or 0 if class does not have declared fields.
+     * @since 2.1.4
+     */
+    public void takeSnapshot(Object entity, Object[] values) {
+        snapshots.put(entity, values);
+    }
+
+    /**
+     * Get id fields value of associated entity behind given field in object.
+     * @param object Object to query fields value from.
+     * @param item {@link FieldMapping} that has type of database entity whose id field values is returned.
+     * @return Object the value of id field. Typically is either Long or Integer.
      *
-     * @since 2.0.1
+     * @since 1.0.2
      *
      * @hide
      */
-    private static final int countDeclaredFields(Class<?> type) {
-        int count = 0;
-        for (Field field : type.getDeclaredFields()) {
-            field.setAccessible(true);
+    private Object getIdFieldValue(Object object, FieldMapping item) {
+        Object val = item.getValue(object);
 
-            if (field.isAnnotationPresent(Transient.class) || hasPrimaryKeyJoin(field)) {
-                continue;
-            }
+        if (val != null) {
 
-            count++;
+            return mappings.getMapping(item.getType()).getIdValue(val);
+        } else {
 
-            field.setAccessible(false); // return the normal state
+            return null;
         }
-
-        return count;
     }
 }
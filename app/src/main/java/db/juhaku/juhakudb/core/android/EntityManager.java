@@ -23,19 +23,30 @@ SOFTWARE.
 */
 package db.juhaku.juhakudb.core.android;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
+import db.juhaku.juhakudb.core.android.transaction.AggregateTransactionTemplate;
 import db.juhaku.juhakudb.core.android.transaction.DeleteTransactionTemplate;
 import db.juhaku.juhakudb.core.android.transaction.QueryTransactionTemplate;
 import db.juhaku.juhakudb.core.android.transaction.StoreTransactionTemplate;
 import db.juhaku.juhakudb.core.android.transaction.TransactionTemplate;
 import db.juhaku.juhakudb.core.android.transaction.TransactionTemplateFactory;
 import db.juhaku.juhakudb.core.android.transaction.TransactionTemplateFactory.Type;
+import db.juhaku.juhakudb.core.mapping.EntityMapping;
+import db.juhaku.juhakudb.core.mapping.FieldMapping;
+import db.juhaku.juhakudb.core.mapping.MappingRegistry;
+import db.juhaku.juhakudb.exception.MappingException;
+import db.juhaku.juhakudb.filter.Aggregate;
 import db.juhaku.juhakudb.filter.Filter;
+import db.juhaku.juhakudb.filter.Order;
+import db.juhaku.juhakudb.filter.PredicateBuilder;
 import db.juhaku.juhakudb.filter.Query;
 import db.juhaku.juhakudb.filter.QueryProcessor;
+import db.juhaku.juhakudb.filter.Root;
+import db.juhaku.juhakudb.filter.Slice;
 
 /**
  * Created by juha on 12/05/16.
@@ -46,8 +57,9 @@ import db.juhaku.juhakudb.filter.QueryProcessor;
 public class EntityManager {
 
     private DatabaseHelper databaseHelper;
-    private EntityConverter converter = new EntityConverter();
+    private EntityConverter converter;
     private QueryProcessor processor;
+    private MappingRegistry mappings;
 
     private static TransactionTemplateFactory factory;
 
@@ -56,7 +68,21 @@ public class EntityManager {
     }
 
     public EntityManager(DatabaseHelper databaseHelper) {
+        this(databaseHelper, new MappingRegistry());
+    }
+
+    /**
+     * Initialize new entity manager with precompiled entity mappings.
+     *
+     * @param databaseHelper {@link DatabaseHelper} to provide access to database and schema.
+     * @param mappings {@link MappingRegistry} of entity mappings.
+     *
+     * @since 2.1.4
+     */
+    public EntityManager(DatabaseHelper databaseHelper, MappingRegistry mappings) {
         this.databaseHelper = databaseHelper;
+        this.mappings = mappings;
+        this.converter = new EntityConverter(mappings);
         this.processor = new QueryProcessor(databaseHelper.getSchema());
     }
 
@@ -81,15 +107,42 @@ public class EntityManager {
     }
 
     public <T> T store(T object) {
-        return (T) ((List) fireStore(Type.STORE, object)).get(0);
+        return store(object, StoreStrategy.REPLACE);
     }
 
     public <T> List<T> store(Collection<T> objects) {
-        return (List<T>) fireStore(Type.STORE_MULTIPLE, objects);
+        return store(objects, StoreStrategy.REPLACE);
+    }
+
+    /**
+     * Store given entity with given strategy.
+     *
+     * @param object Entity to store.
+     * @param strategy {@link StoreStrategy} for entities that are not known to be persisted.
+     * @return Stored entity.
+     *
+     * @since 2.1.4
+     */
+    public <T> T store(T object, StoreStrategy strategy) {
+        return (T) ((List) fireStore(Type.STORE, object, strategy)).get(0);
+    }
+
+    /**
+     * Store given entities with given strategy.
+     *
+     * @param objects Collection of entities to store.
+     * @param strategy {@link StoreStrategy} for entities that are not known to be persisted.
+     * @return List of stored entities.
+     *
+     * @since 2.1.4
+     */
+    public <T> List<T> store(Collection<T> objects, StoreStrategy strategy) {
+        return (List<T>) fireStore(Type.STORE_MULTIPLE, objects, strategy);
     }
 
-    private <T> Object fireStore(Type type, T object) {
+    private <T> Object fireStore(Type type, T object, StoreStrategy strategy) {
         StoreTransactionTemplate<T> template = (StoreTransactionTemplate<T>) factory.getTransactionTemplate(type);
+        template.setStrategy(strategy);
         if (type == Type.STORE) {
             template.setItems(Arrays.asList(object));
             template.setRootClass(object.getClass());
@@ -109,6 +162,162 @@ public class EntityManager {
         return (T) fireQuery(rootClass, processor.createQuery(rootClass, filter), null);
     }
 
+    /**
+     * Count distinct root entities matching given filter.
+     *
+     * @param rootClass {@link Class} of root entity of query.
+     * @param filter {@link Filter} to create query from.
+     * @return long number of root entities.
+     *
+     * @since 2.1.4
+     */
+    public long count(Class<?> rootClass, Filter filter) {
+        return (long) fireAggregate(rootClass, processor.createCountQuery(rootClass, filter), true);
+    }
+
+    /**
+     * Check whether any root entity matches given filter.
+     *
+     * @param rootClass {@link Class} of root entity of query.
+     * @param filter {@link Filter} to create query from.
+     * @return boolean true if at least one root entity matches; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    public boolean exists(Class<?> rootClass, Filter filter) {
+        return (long) fireAggregate(rootClass, processor.createExistsQuery(rootClass, filter), true) != 0;
+    }
+
+    /**
+     * Query aggregate of rows matching given filter. See {@link Aggregate}.
+     *
+     * @param rootClass {@link Class} of root entity of query.
+     * @param filter {@link Filter} to create query from.
+     * @param aggregate {@link Aggregate} describing aggregate functions and grouping.
+     * @return List of rows containing values of group by fields followed by values of aggregate
+     * functions.
+     *
+     * @since 2.1.4
+     */
+    public List<Object[]> aggregate(Class<?> rootClass, Filter filter, Aggregate aggregate) {
+        return (List<Object[]>) fireAggregate(rootClass, processor.createAggregateQuery(rootClass, filter, aggregate), false);
+    }
+
+    /**
+     * Query slice of root entities with keyset pagination. Query created from given filter is
+     * restricted to entities after given values of given columns in given order. See
+     * {@link PredicateBuilder#seekAfter(Order, String[], Object[])}.
+     *
+     * <p>One entity more than size of the slice is queried to know whether there is next slice.
+     * Continuation of the slice is read from fields of the last entity thus columns must be
+     * columns of the root entity.</p>
+     *
+     * @param rootClass {@link Class} of root entity of query.
+     * @param filter {@link Filter} to create query from.
+     * @param order {@link Order} of the keyset columns.
+     * @param size int maximum number of entities in the slice.
+     * @param after Object array of continuation of previous slice or null for the first slice.
+     * @param columns String array of keyset columns.
+     * @return {@link Slice} of root entities.
+     *
+     * @since 2.1.4
+     */
+    public <T> Slice<T> querySlice(Class<?> rootClass, final Filter filter, final Order order, final int size,
+                                   final Object[] after, final String... columns) {
+        EntityMapping mapping = mappings.getMapping(rootClass);
+        FieldMapping[] keyset = new FieldMapping[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            keyset[i] = resolveKeysetField(mapping, columns[i]);
+        }
+
+        List<T> result = query(rootClass, new Filter() {
+            @Override
+            public void filter(Root root, PredicateBuilder builder) {
+                filter.filter(root, builder);
+                builder.seekAfter(order, columns, after).setPageSize(size + 1);
+            }
+        });
+
+        if (result.size() <= size) {
+            return new Slice<>(result, null);
+        }
+
+        List<T> content = new ArrayList<>(result.subList(0, size));
+        T last = content.get(size - 1);
+        Object[] next = new Object[keyset.length];
+        for (int i = 0; i < keyset.length; i++) {
+            next[i] = keyset[i].getValue(last);
+        }
+
+        return new Slice<>(content, next);
+    }
+
+    /**
+     * Resolve field of root entity for keyset column. Column can be prefixed with "this".
+     *
+     * @hide
+     */
+    private static FieldMapping resolveKeysetField(EntityMapping mapping, String column) {
+        int index = column.lastIndexOf(".");
+        if (index > -1 && !column.substring(0, index).equals("this")) {
+            throw new MappingException("Keyset column: " + column + " is not a column of root entity: "
+                    + mapping.getModel().getName());
+        }
+
+        String name = column.substring(index + 1);
+        FieldMapping field = name.equals("id") ? mapping.getId() : mapping.getColumn(name);
+        if (field == null) {
+            field = mapping.getField(name);
+        }
+        if (field == null) {
+            throw new MappingException("Keyset column: " + column + " not found from entity: "
+                    + mapping.getModel().getName());
+        }
+
+        return field;
+    }
+
+    /**
+     * Get number of queries created from filters with cached query template.
+     *
+     * @return long number of query template cache hits.
+     *
+     * @since 2.1.4
+     */
+    public long getQueryCacheHits() {
+        return processor.getTemplateCacheHits();
+    }
+
+    /**
+     * Get number of queries created from filters that needed query template to be compiled.
+     *
+     * @return long number of query template cache misses.
+     *
+     * @since 2.1.4
+     */
+    public long getQueryCacheMisses() {
+        return processor.getTemplateCacheMisses();
+    }
+
+    /**
+     * Stream root entities of query created from given filter to given callback one at a time.
+     *
+     * @param rootClass {@link Class} of root entity of query.
+     * @param filter {@link Filter} to create query from.
+     * @param callback {@link RowCallback} to pass entities to.
+     * @return Int number of root entities streamed.
+     *
+     * @since 2.1.4
+     */
+    public <T> int stream(Class<?> rootClass, Filter filter, RowCallback<T> callback) {
+        QueryTransactionTemplate<T> template = (QueryTransactionTemplate<T>) factory.getTransactionTemplate(Type.QUERY);
+        template.setQuery(processor.createQuery(rootClass, filter));
+        template.setCallback(callback);
+        template.setRootClass(rootClass);
+
+        return (int) executeTemplate(template);
+    }
+
     private Object fireQuery(Class<?> rootClass, Query query, ResultTransformer transformer) {
         QueryTransactionTemplate template = (QueryTransactionTemplate) factory.getTransactionTemplate(Type.QUERY);
         template.setQuery(query);
@@ -118,11 +327,22 @@ public class EntityManager {
         return executeTemplate(template);
     }
 
+    private Object fireAggregate(Class<?> rootClass, Query query, boolean scalar) {
+        AggregateTransactionTemplate template = (AggregateTransactionTemplate) factory.getTransactionTemplate(Type.AGGREGATE);
+        template.setQuery(query);
+        template.setScalar(scalar);
+        template.setRootClass(rootClass);
+
+        return executeTemplate(template);
+    }
+
     private Object executeTemplate(TransactionTemplate template) {
         template.setSchema(databaseHelper.getSchema());
         template.setDb(databaseHelper.getDb());
         template.setProcessor(processor);
         template.setConverter(converter);
+        template.setMappings(mappings);
+        template.setTrackCursors(databaseHelper.getConfiguration().isTrackCursors());
         template.execute();
 
         return template.getResult();
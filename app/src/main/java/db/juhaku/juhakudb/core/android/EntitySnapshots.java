@@ -0,0 +1,155 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.android;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Entity snapshots hold column values of entities as they were when entities were loaded from
+ * or stored to database. Snapshots are used to detect changed columns of already persisted entities
+ * so that only those columns need to be updated.</p>
+ *
+ * <p>Entities are held by weak references and by identity so snapshots do not prevent entities
+ * from being garbage collected and entities do not need to implement equals. Snapshots are thread
+ * safe. Entities are spread to segments by their identity hash and each segment is locked
+ * separately so concurrent conversions rarely wait for each other.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+class EntitySnapshots {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    EntitySnapshots() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Get snapshot of given entity.
+     *
+     * @param entity Object entity to get snapshot for.
+     * @return Array of column values or null if entity does not have snapshot.
+     *
+     * @since 2.1.4
+     */
+    Object[] get(Object entity) {
+        return segmentFor(entity).get(entity);
+    }
+
+    /**
+     * Put snapshot of given entity replacing previous snapshot if any.
+     *
+     * @param entity Object entity to put snapshot for.
+     * @param values Array of column values of the entity.
+     *
+     * @since 2.1.4
+     */
+    void put(Object entity, Object[] values) {
+        segmentFor(entity).put(entity, values);
+    }
+
+    /**
+     * Get segment of given entity by its identity hash.
+     *
+     * @hide
+     */
+    private Segment segmentFor(Object entity) {
+        int hash = System.identityHashCode(entity);
+
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Separately locked part of snapshots.
+     *
+     * @hide
+     */
+    private static class Segment {
+        private final Map<Key, Object[]> snapshots = new HashMap<>();
+        private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+        synchronized Object[] get(Object entity) {
+            expunge();
+
+            return snapshots.get(new Key(entity, null));
+        }
+
+        synchronized void put(Object entity, Object[] values) {
+            expunge();
+
+            snapshots.put(new Key(entity, queue), values);
+        }
+
+        /**
+         * Remove snapshots of garbage collected entities.
+         */
+        private void expunge() {
+            Reference<?> reference;
+            while ((reference = queue.poll()) != null) {
+                snapshots.remove(reference);
+            }
+        }
+    }
+
+    /**
+     * Weak identity key of entity.
+     *
+     * @hide
+     */
+    private static class Key extends WeakReference<Object> {
+        private final int hash;
+
+        Key(Object entity, ReferenceQueue<Object> queue) {
+            super(entity, queue);
+            this.hash = System.identityHashCode(entity);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Object entity = get();
+
+            return entity != null && entity == ((Key) o).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.android;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Identity map holds entities converted within one query by entity class and id. Map keeps
+ * the insertion order of entities and makes sure that all the references to one id share the same
+ * instance of entity.</p>
+ *
+ * <p>Entity can be in the map before it is loaded. This happens when entity is only referenced
+ * by foreign key column of another entity and only its id is known. Such entity is loaded when
+ * it is later on converted from its own columns.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+class IdentityMap {
+
+    private final Map<Key, Object> entities = new LinkedHashMap<>();
+    private final Set<Key> loaded = new HashSet<>();
+
+    /**
+     * Get entity from identity map.
+     *
+     * @param model {@link Class} of entity.
+     * @param id Object id of entity.
+     * @return Found entity or null if not found.
+     *
+     * @since 2.1.4
+     */
+    <T> T get(Class<?> model, Object id) {
+        return (T) entities.get(new Key(model, id));
+    }
+
+    /**
+     * Put entity to identity map. If entity is marked loaded it will not be converted again from
+     * database columns.
+     *
+     * @param model {@link Class} of entity.
+     * @param id Object id of entity.
+     * @param entity Object entity.
+     * @param load boolean true if entity is loaded from its own columns; false if only id is known.
+     *
+     * @since 2.1.4
+     */
+    void put(Class<?> model, Object id, Object entity, boolean load) {
+        Key key = new Key(model, id);
+        entities.put(key, entity);
+
+        if (load) {
+            loaded.add(key);
+        }
+    }
+
+    /**
+     * Check whether entity is loaded from its own columns.
+     *
+     * @param model {@link Class} of entity.
+     * @param id Object id of entity.
+     * @return boolean true if entity is loaded; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    boolean isLoaded(Class<?> model, Object id) {
+        return loaded.contains(new Key(model, id));
+    }
+
+    /**
+     * Remove all entities from identity map.
+     *
+     * @since 2.1.4
+     */
+    void clear() {
+        entities.clear();
+        loaded.clear();
+    }
+
+    /**
+     * Get all entities of identity map in insertion order.
+     *
+     * @return Unmodifiable collection of entities.
+     *
+     * @since 2.1.4
+     */
+    Collection<Object> values() {
+        return Collections.unmodifiableCollection(entities.values());
+    }
+
+    /**
+     * Key of the entity in identity map.
+     *
+     * @hide
+     */
+    private static class Key {
+        private final Class<?> model;
+        private final Object id;
+
+        Key(Class<?> model, Object id) {
+            this.model = model;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return model.equals(key.model) && id.equals(key.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * model.hashCode() + id.hashCode();
+        }
+    }
+}
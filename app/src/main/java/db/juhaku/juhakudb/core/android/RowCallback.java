@@ -0,0 +1,45 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.android;
+
+/**
+ * Created by juha on 17/10/26.
+ * <p>Implement this interface to receive entities of streamed database query one by one. Entities
+ * are not collected to a list so memory usage stays flat regardless of size of the result.</p>
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public interface RowCallback<T> {
+
+    /**
+     * Called for each distinct root entity of the query in order they are returned from
+     * database. Entity is fully converted including its fetch joins when this is called.
+     *
+     * @param entity converted root entity.
+     *
+     * @since 2.1.4
+     */
+    void onRow(T entity);
+}
@@ -0,0 +1,51 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.android;
+
+/**
+ * Created by juha on 17/10/26.
+ * <p>Strategy of storing entities that are not known to be persisted already. Persisted entities
+ * which have been loaded from or stored to database are always updated by changed columns.</p>
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public enum StoreStrategy {
+
+    /**
+     * Store with INSERT OR REPLACE. On conflict existing row is deleted and new row is inserted.
+     * This is the default strategy.
+     */
+    REPLACE,
+
+    /**
+     * Store with INSERT ... ON CONFLICT(id) DO UPDATE. On conflict of primary key existing row is
+     * updated in place thus indexes are not rewritten and no ON DELETE actions are fired. Conflicts
+     * of other unique constraints fail the store of the item.
+     *
+     * <p>Upsert requires SQLite version 3.24.0 or later. On older versions {@link #REPLACE} is
+     * used instead.</p>
+     */
+    UPSERT
+}
@@ -0,0 +1,153 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.android.transaction;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import db.juhaku.juhakudb.core.android.EntityConverter;
+import db.juhaku.juhakudb.filter.Query;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Transaction template for count, exists and aggregate queries. Result is read straight from
+ * database without materializing entities.</p>
+ *
+ * <p>Scalar query is executed as compiled statement and its result is single long value. Other
+ * queries return list of rows where each row is an array of values of its columns.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public class AggregateTransactionTemplate extends TransactionTemplate {
+
+    private Query query;
+    private boolean scalar;
+
+    public void setQuery(Query query) {
+        this.query = query;
+    }
+
+    /**
+     * Set whether query returns single integer value. See {@link SQLiteStatement#simpleQueryForLong()}.
+     * Values of chunks of scalar query are summed. See {@link Query#getChunks()}.
+     *
+     * @param scalar boolean true if query is scalar query; false otherwise.
+     */
+    public void setScalar(boolean scalar) {
+        this.scalar = scalar;
+    }
+
+    @Override
+    void onTransaction() {
+        fillIdTables(query);
+        if (scalar) {
+            setResult(queryForLong());
+        } else {
+            setResult(queryForRows());
+        }
+        clearIdTables(query);
+        commit();
+    }
+
+    /**
+     * @hide
+     */
+    private long queryForLong() {
+        if (query.getChunks().isEmpty()) {
+            return queryForLong(query);
+        }
+
+        long sum = 0;
+        for (Query chunk : query.getChunks()) {
+            sum += queryForLong(chunk);
+        }
+
+        return sum;
+    }
+
+    /**
+     * @hide
+     */
+    private long queryForLong(Query query) {
+        SQLiteStatement statement = getDb().compileStatement(query.getSql());
+        try {
+            Object[] values = query.getValues();
+            for (int i = 0; values != null && i < values.length; i++) {
+                EntityConverter.bindValue(statement, i + 1, values[i]);
+            }
+
+            return statement.simpleQueryForLong();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @hide
+     */
+    private List<Object[]> queryForRows() {
+        List<Object[]> rows = new ArrayList<>();
+        Cursor cursor = rawQuery(query);
+        try {
+            int columns = cursor.getColumnCount();
+            while (cursor.moveToNext()) {
+                Object[] row = new Object[columns];
+                for (int i = 0; i < columns; i++) {
+                    row[i] = getValue(cursor, i);
+                }
+                rows.add(row);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return rows;
+    }
+
+    /**
+     * Get value of column with its type. Integers are returned as Long and reals as Double.
+     *
+     * @hide
+     */
+    private static Object getValue(Cursor cursor, int index) {
+        switch (cursor.getType(index)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(index);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(index);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(index);
+            default:
+                return cursor.getString(index);
+        }
+    }
+}
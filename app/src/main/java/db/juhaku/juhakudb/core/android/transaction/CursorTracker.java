@@ -0,0 +1,120 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.android.transaction;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Debug tracker of cursors opened by transaction templates. Tracker records allocation site of
+ * each cursor opened in current thread while it is active. Cursors that are still open when
+ * tracker is finished are reported to log with their allocation sites and closed.</p>
+ *
+ * <p>Tracker is enabled with {@link db.juhaku.juhakudb.core.DatabaseConfiguration#setTrackCursors(boolean)}.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+final class CursorTracker {
+
+    private static final ThreadLocal<CursorTracker> CURRENT = new ThreadLocal<>();
+
+    private final Map<Cursor, Throwable> openCursors = new IdentityHashMap<>();
+    private final CursorTracker previous;
+
+    private CursorTracker(CursorTracker previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Start tracking cursors opened in current thread. Tracker must be finished with
+     * {@link #finish()} in same thread.
+     *
+     * @return new instance of {@link CursorTracker} that is active in current thread.
+     */
+    static CursorTracker begin() {
+        CursorTracker tracker = new CursorTracker(CURRENT.get());
+        CURRENT.set(tracker);
+
+        return tracker;
+    }
+
+    /**
+     * Record allocation site of given cursor to the tracker active in current thread. If there is
+     * no active tracker this method does nothing.
+     *
+     * @param cursor Cursor that was opened.
+     */
+    static void opened(Cursor cursor) {
+        CursorTracker tracker = CURRENT.get();
+        if (tracker != null) {
+            tracker.openCursors.put(cursor, new Throwable("Cursor allocated here"));
+        }
+    }
+
+    /**
+     * Remove given cursor from the tracker active in current thread.
+     *
+     * @param cursor Cursor that was closed.
+     */
+    static void closed(Cursor cursor) {
+        for (CursorTracker tracker = CURRENT.get(); tracker != null; tracker = tracker.previous) {
+            if (tracker.openCursors.remove(cursor) != null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Report and close cursors opened while this tracker was active and that are still open.
+     * Previously active tracker is restored to current thread.
+     *
+     * @return Number of cursors that were left open.
+     */
+    int finish() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+
+        List<Map.Entry<Cursor, Throwable>> leaked = new ArrayList<>(openCursors.entrySet());
+        openCursors.clear();
+        for (Map.Entry<Cursor, Throwable> entry : leaked) {
+            Log.w(CursorTracker.class.getName(), "Cursor was not closed before end of transaction: "
+                    + entry.getKey(), entry.getValue());
+            entry.getKey().close();
+        }
+
+        return leaked.size();
+    }
+}
@@ -0,0 +1,435 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.android.transaction;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import db.juhaku.juhakudb.core.NameResolver;
+import db.juhaku.juhakudb.core.android.EntityConverter;
+import db.juhaku.juhakudb.core.schema.Reference;
+import db.juhaku.juhakudb.core.schema.ReferenceAction;
+import db.juhaku.juhakudb.core.schema.Schema;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Delete plan contains set based delete statements for deleting rows of a table together with
+ * all rows referencing them. Plan is created by walking the reference graph of schema once and it is
+ * cached per schema and table. Each level of references is deleted with one statement in form of
+ * {@code DELETE FROM child WHERE fk IN (SELECT ...)} where the innermost select is restricted by
+ * ids being deleted. Ids are bound in chunks of {@value QueryTransactionTemplate#MAX_IN_ARGS} at most.</p>
+ *
+ * <p>Rows of middle tables referencing deleted rows are deleted as well. Rows on the other side of
+ * a many to many relation are deleted only if they are not referenced from middle table anymore.
+ * If a table references itself directly or through other tables only one level of the referencing
+ * rows is deleted.</p>
+ *
+ * <p>References with {@link ReferenceAction#CASCADE} or {@link ReferenceAction#SET_NULL} action are
+ * left for database to handle. Only rows further down the graph referencing them without action are
+ * deleted by the plan. Rows of middle tables are always deleted by the plan regardless of the action
+ * so that rows becoming orphans are found.</p>
+ *
+ * <p>Plans used for deleting are created with actions of foreign keys read from database. Actions of
+ * existing tables are not altered on upgrade thus they may differ from actions configured for schema.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public class DeletePlan {
+
+    private static final String IDS = "{ids}";
+
+    private static final Map<Schema, Map<String, DeletePlan>> plans = new WeakHashMap<>();
+    private static final Map<Schema, Map<String, DeletePlan>> databasePlans = new WeakHashMap<>();
+
+    private final List<Step> steps = new ArrayList<>();
+
+    private DeletePlan() {
+    }
+
+    /**
+     * Get delete plan for given table of schema using actions of foreign keys configured for schema.
+     * Plan is created on first use and cached for later use.
+     *
+     * @param schema root {@link Schema} of database.
+     * @param tableName String name of table to get delete plan for.
+     * @return instance of {@link DeletePlan}.
+     *
+     * @since 2.1.4
+     */
+    public static DeletePlan forTable(Schema schema, String tableName) {
+        return forTable(plans, new Actions(null), schema, tableName);
+    }
+
+    /**
+     * Get delete plan for given table of schema using actions of foreign keys in given database.
+     * Plan is created on first use and cached for later use.
+     *
+     * @param db {@link SQLiteDatabase} to read actions of foreign keys from.
+     * @param schema root {@link Schema} of database.
+     * @param tableName String name of table to get delete plan for.
+     * @return instance of {@link DeletePlan}.
+     *
+     * @since 2.1.4
+     */
+    public static DeletePlan forTable(SQLiteDatabase db, Schema schema, String tableName) {
+        return forTable(databasePlans, new Actions(db), schema, tableName);
+    }
+
+    /**
+     * @hide
+     */
+    private static DeletePlan forTable(Map<Schema, Map<String, DeletePlan>> plans, Actions actions,
+                                       Schema schema, String tableName) {
+        synchronized (plans) {
+            Map<String, DeletePlan> tablePlans = plans.get(schema);
+            if (tablePlans == null) {
+                tablePlans = new HashMap<>();
+                plans.put(schema, tablePlans);
+            }
+
+            DeletePlan plan = tablePlans.get(tableName);
+            if (plan == null) {
+                plan = new DeletePlan();
+                plan.plan(schema, tableName, NameResolver.ID_FIELD_SUFFIX.concat(" IN (").concat(IDS).concat(")"),
+                        IDS, new HashSet<String>(), true, actions);
+                tablePlans.put(tableName, plan);
+            }
+
+            return plan;
+        }
+    }
+
+    /**
+     * Get SQL statements of the plan in execution order. Ids are presented with {@value #IDS}.
+     *
+     * @return List of SQL statements.
+     *
+     * @since 2.1.4
+     */
+    public List<String> getStatements() {
+        List<String> statements = new ArrayList<>();
+        for (Step step : steps) {
+            step.addStatements(statements);
+        }
+
+        return Collections.unmodifiableList(statements);
+    }
+
+    /**
+     * Execute plan for given ids. Plan should be executed within a transaction.
+     *
+     * @param db {@link SQLiteDatabase} to execute plan against.
+     * @param ids Collection of ids of rows to delete.
+     * @return int number of deleted rows from the table of the plan.
+     *
+     * @since 2.1.4
+     */
+    public int execute(SQLiteDatabase db, Collection<?> ids) {
+        List<Object> args = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            // Bind integral ids as integers so that they match integer primary keys by index.
+            args.add(id instanceof Number && !(id instanceof Double || id instanceof Float)
+                    ? (Object) ((Number) id).longValue() : id.toString());
+        }
+
+        int deleted = 0;
+        for (int i = 0; i < args.size(); i += QueryTransactionTemplate.MAX_IN_ARGS) {
+            List<Object> chunk = args.subList(i, Math.min(i + QueryTransactionTemplate.MAX_IN_ARGS, args.size()));
+            Object[] chunkArgs = chunk.toArray();
+            String placeholders = toPlaceholders(chunkArgs.length);
+
+            int rows = 0;
+            for (Step step : steps) {
+                rows = step.execute(db, placeholders, chunkArgs);
+            }
+            deleted += rows; // last step deletes rows of the table of the plan
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Plan deletion of rows of table restricted by where clause. Referencing rows are planned to be
+     * deleted before the rows of the table.
+     *
+     * @param schema root {@link Schema} of database.
+     * @param tableName String name of table to delete rows from.
+     * @param where String where clause restricting the rows to delete.
+     * @param selector String select returning ids of the rows to delete.
+     * @param path Set of table names being planned currently including middle tables whose orphans
+     *             are being planned.
+     * @param delete boolean whether rows of the table are deleted or left for database to delete.
+     * @param actions {@link Actions} of foreign keys.
+     *
+     * @hide
+     */
+    private void plan(Schema schema, String tableName, String where, String selector, Set<String> path,
+                      boolean delete, Actions actions) {
+        path.add(tableName);
+
+        for (Schema table : schema.getReferencingTables(tableName)) {
+            for (Reference reference : table.getReferences()) {
+                if (!reference.getReferenceTableName().equals(tableName)) {
+                    continue;
+                }
+
+                String referenceWhere = reference.getColumnName().concat(" IN (").concat(selector).concat(")");
+                ReferenceAction onDelete = actions.getOnDelete(table, reference);
+                boolean cascade = onDelete == ReferenceAction.CASCADE;
+
+                if (table.getElement(NameResolver.ID_FIELD_SUFFIX) == null) {
+                    if (path.contains(table.getName())) {
+                        continue; // orphans of the middle table have no rows left in it
+                    }
+
+                    Reference other = getOtherReference(table, reference);
+                    if (other == null || path.contains(other.getReferenceTableName())) {
+                        steps.add(new DeleteStep(table.getName(), referenceWhere));
+                    } else {
+                        DeletePlan orphans = new DeletePlan();
+                        String orphanWhere = new StringBuilder(NameResolver.ID_FIELD_SUFFIX).append(" IN (").append(IDS)
+                                .append(") AND ").append(NameResolver.ID_FIELD_SUFFIX).append(" NOT IN (SELECT ")
+                                .append(other.getColumnName()).append(" FROM ").append(table.getName()).append(" WHERE ")
+                                .append(other.getColumnName()).append(" IS NOT NULL)").toString();
+                        path.add(table.getName());
+                        orphans.plan(schema, other.getReferenceTableName(), orphanWhere,
+                                toSelector(other.getReferenceTableName(), orphanWhere), path, true, actions);
+                        path.remove(table.getName());
+
+                        steps.add(new MiddleTableStep(table.getName(), referenceWhere, other.getColumnName(), orphans));
+                    }
+                } else if (onDelete == ReferenceAction.SET_NULL) {
+                    continue; // database nulls the foreign keys
+                } else if (path.contains(table.getName())) {
+                    if (!cascade) {
+                        steps.add(new DeleteStep(table.getName(), referenceWhere));
+                    }
+                } else {
+                    plan(schema, table.getName(), referenceWhere, toSelector(table.getName(), referenceWhere), path,
+                            !cascade, actions);
+                }
+            }
+        }
+
+        if (delete) {
+            steps.add(new DeleteStep(tableName, where));
+        }
+        path.remove(tableName);
+    }
+
+    /**
+     * Get reference of middle table to the other side of many to many relation.
+     *
+     * @hide
+     */
+    private static Reference getOtherReference(Schema table, Reference reference) {
+        for (Reference other : table.getReferences()) {
+            if (!other.getColumnName().equals(reference.getColumnName())) {
+                return other;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @hide
+     */
+    private static String toSelector(String tableName, String where) {
+        return new StringBuilder("SELECT ").append(NameResolver.ID_FIELD_SUFFIX).append(" FROM ").append(tableName)
+                .append(" WHERE ").append(where).toString();
+    }
+
+    /**
+     * @hide
+     */
+    private static String toPlaceholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i > 0 ? ", ?" : "?");
+        }
+
+        return placeholders.toString();
+    }
+
+    /**
+     * Actions of foreign keys used while planning. Without database actions configured for schema
+     * are used. Otherwise actions are read from database once per table.
+     *
+     * @hide
+     */
+    private static class Actions {
+
+        private final SQLiteDatabase db;
+        private final Map<String, Map<String, ReferenceAction>> tables = new HashMap<>();
+
+        Actions(SQLiteDatabase db) {
+            this.db = db;
+        }
+
+        ReferenceAction getOnDelete(Schema table, Reference reference) {
+            if (db == null) {
+                return reference.getOnDelete();
+            }
+
+            Map<String, ReferenceAction> columns = tables.get(table.getName());
+            if (columns == null) {
+                columns = new HashMap<>();
+                Cursor cursor = TransactionTemplate.rawQuery(db, "PRAGMA foreign_key_list(".concat(table.getName())
+                        .concat(")"), new Object[0]);
+                try {
+                    int from = cursor.getColumnIndexOrThrow("from");
+                    int onDelete = cursor.getColumnIndexOrThrow("on_delete");
+                    while (cursor.moveToNext()) {
+                        columns.put(cursor.getString(from), ReferenceAction.fromSql(cursor.getString(onDelete)));
+                    }
+                } finally {
+                    cursor.close();
+                }
+                tables.put(table.getName(), columns);
+            }
+
+            // Foreign key missing from database takes no action either.
+            ReferenceAction onDelete = columns.get(reference.getColumnName());
+
+            return onDelete == null ? ReferenceAction.NO_ACTION : onDelete;
+        }
+    }
+
+    /**
+     * Single step of delete plan. Statements of step contain {@value #IDS} exactly once so ids of
+     * a chunk are bound once per statement.
+     *
+     * @hide
+     */
+    private abstract static class Step {
+
+        abstract void addStatements(List<String> statements);
+
+        abstract int execute(SQLiteDatabase db, String placeholders, Object[] ids);
+    }
+
+    /**
+     * Step deleting rows of table by where clause.
+     *
+     * @hide
+     */
+    private static class DeleteStep extends Step {
+
+        private final String tableName;
+        private final String sql;
+
+        DeleteStep(String tableName, String where) {
+            this.tableName = tableName;
+            this.sql = new StringBuilder("DELETE FROM ").append(tableName).append(" WHERE ").append(where).toString();
+        }
+
+        @Override
+        void addStatements(List<String> statements) {
+            statements.add(sql);
+        }
+
+        @Override
+        int execute(SQLiteDatabase db, String placeholders, Object[] ids) {
+            SQLiteStatement statement = db.compileStatement(sql.replace(IDS, placeholders));
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    EntityConverter.bindValue(statement, i + 1, ids[i]);
+                }
+                int deleted = statement.executeUpdateDelete();
+                Log.v(getClass().getName(), "executed delete for: " + tableName + ", affected rows: " + deleted);
+
+                return deleted;
+            } finally {
+                statement.close();
+            }
+        }
+    }
+
+    /**
+     * Step deleting rows of middle table. Ids of the other side of relation are read before
+     * deleting and rows that became orphans are deleted with their own plan afterwards.
+     *
+     * @hide
+     */
+    private static class MiddleTableStep extends Step {
+
+        private final String select;
+        private final DeleteStep delete;
+        private final DeletePlan orphans;
+
+        MiddleTableStep(String tableName, String where, String otherColumn, DeletePlan orphans) {
+            this.select = new StringBuilder("SELECT DISTINCT ").append(otherColumn).append(" FROM ")
+                    .append(tableName).append(" WHERE ").append(where).toString();
+            this.delete = new DeleteStep(tableName, where);
+            this.orphans = orphans;
+        }
+
+        @Override
+        void addStatements(List<String> statements) {
+            statements.add(select);
+            delete.addStatements(statements);
+            statements.addAll(orphans.getStatements());
+        }
+
+        @Override
+        int execute(SQLiteDatabase db, String placeholders, Object[] ids) {
+            Set<Object> candidates = new LinkedHashSet<>();
+            Cursor cursor = TransactionTemplate.rawQuery(db, select.replace(IDS, placeholders), ids);
+            try {
+                while (cursor.moveToNext()) {
+                    if (!cursor.isNull(0)) {
+                        candidates.add(cursor.getType(0) == Cursor.FIELD_TYPE_INTEGER
+                                ? (Object) cursor.getLong(0) : cursor.getString(0));
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+
+            int deleted = delete.execute(db, placeholders, ids);
+            if (!candidates.isEmpty()) {
+                orphans.execute(db, candidates);
+            }
+
+            return deleted;
+        }
+    }
+}
@@ -25,34 +25,35 @@ package db.juhaku.juhakudb.core.android.transaction;
 
 import android.database.Cursor;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
 
-import javax.persistence.Entity;
 import javax.persistence.FetchType;
-import javax.persistence.ManyToMany;
-import javax.persistence.ManyToOne;
-import javax.persistence.OneToMany;
-import javax.persistence.OneToOne;
 
 import db.juhaku.juhakudb.core.android.ResultSet;
 import db.juhaku.juhakudb.core.android.ResultTransformer;
+import db.juhaku.juhakudb.core.android.RowCallback;
+import db.juhaku.juhakudb.core.mapping.EntityMapping;
+import db.juhaku.juhakudb.core.mapping.FieldMapping;
 import db.juhaku.juhakudb.exception.MappingException;
 import db.juhaku.juhakudb.filter.Filter;
 import db.juhaku.juhakudb.filter.JoinMode;
 import db.juhaku.juhakudb.filter.PredicateBuilder;
 import db.juhaku.juhakudb.filter.Query;
-import db.juhaku.juhakudb.filter.QueryProcessor.Alias;
+import db.juhaku.juhakudb.filter.QueryProcessor;
 import db.juhaku.juhakudb.filter.Root;
-import db.juhaku.juhakudb.util.ReflectionUtils;
-import db.juhaku.juhakudb.util.StringUtils;
 
 /**
  * Created by juha on 24/05/16.
@@ -64,8 +65,27 @@ import db.juhaku.juhakudb.util.StringUtils;
  */
 public class QueryTransactionTemplate<T> extends TransactionTemplate {
 
+    /**
+     * Maximum number of ids in single IN clause of batched eager fetch. This is the default
+     * maximum number of host parameters in SQLite.
+     */
+    static final int MAX_IN_ARGS = QueryProcessor.MAX_HOST_PARAMETERS;
+
+    /**
+     * Alias of parent in batched reverse join fetch. Generated aliases always end with a number
+     * so this does not collide with them.
+     */
+    private static final String PARENT_ALIAS = "parent";
+
+    /**
+     * Number of streamed root entities whose eager fetches are cascaded together. Bounds memory
+     * of streaming while eager fetches stay batched.
+     */
+    static final int STREAM_BATCH_SIZE = 100;
+
     private Query query;
     private ResultTransformer transformer;
+    private RowCallback<T> callback;
 
     public void setQuery(Query query) {
         this.query = query;
@@ -75,26 +95,159 @@ public class QueryTransactionTemplate<T> extends TransactionTemplate {
         this.transformer = transformer;
     }
 
+    /**
+     * Set callback for streaming query. If callback is set the root entities are passed to it one
+     * by one instead of returning them as a list. Result of the template will be the number of
+     * root entities streamed.
+     *
+     * @param callback {@link RowCallback} to pass root entities to.
+     *
+     * @since 2.1.4
+     */
+    public void setCallback(RowCallback<T> callback) {
+        this.callback = callback;
+    }
+
     @Override
     void onTransaction() {
-        query(query, getRootClass(), null, null);
+        fillIdTables(this.query);
+        query(this.query);
+        clearIdTables(this.query);
         commit();
     }
 
     /**
-     * Perform given query.
+     * Perform given query. Two phase paged query selects ids of root entities of the page first.
+     *
+     * @hide
+     */
+    private void query(Query query) {
+        List<Object> pageIds = null;
+        if (query.getPageQuery() != null) {
+            pageIds = queryPageIds(query.getPageQuery(), getRootClass());
+
+            // Page is past the last root entity thus there is nothing to fetch.
+            if (pageIds.isEmpty()) {
+                if (callback != null) {
+                    setResult(0);
+                } else if (transformer != null) {
+                    setResult(transformer.transformResult(new ArrayList<ResultSet>()));
+                } else {
+                    setResult(new ArrayList<>());
+                }
+
+                return;
+            }
+            query = query.withPageIds(pageIds);
+        }
+
+        if (callback != null) {
+            stream(query, getRootClass());
+        } else {
+            query(query, getRootClass(), pageIds);
+        }
+    }
+
+    /**
+     * Perform first phase of two phase paged query. Ids of root entities of the page are selected
+     * in requested order.
+     *
+     * @param pageQuery {@link Query} selecting ids of root entities of the page.
+     * @param rootClass Root class of the queried entity.
+     * @return List of ids of root entities of the page in order.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private List<Object> queryPageIds(Query pageQuery, Class<?> rootClass) {
+        FieldMapping id = getMappings().getMapping(rootClass).getId();
+        List<Object> ids = new ArrayList<>();
+
+        Cursor cursor = rawQuery(pageQuery);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(id.read(cursor, 0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return ids;
+    }
+
+    /**
+     * Perform given query as streaming query. Root entities are converted one at a time and
+     * buffered to batches of {@value #STREAM_BATCH_SIZE} entities. Eager fetches are cascaded for
+     * each batch at once before passing its entities to the callback. Cursor is always closed
+     * after the query.
+     *
+     * @param query Instance of {@link Query} to be performed.
+     * @param rootClass Root class of the queried entity.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private void stream(Query query, final Class<?> rootClass) {
+        final List<T> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+        RowCallback<T> rowCallback = new RowCallback<T>() {
+            @Override
+            public void onRow(T entity) {
+                batch.add(entity);
+                if (batch.size() == STREAM_BATCH_SIZE) {
+                    flush(batch, rootClass);
+                }
+            }
+        };
+
+        int count = 0;
+        for (Query chunk : query.getChunks().isEmpty() ? Collections.singletonList(query) : query.getChunks()) {
+            Cursor cursor = rawQuery(chunk);
+            try {
+                count += getConverter().convertCursorToEntities(cursor, query.getRoot(), rowCallback);
+            } finally {
+                cursor.close();
+            }
+        }
+        flush(batch, rootClass);
+        setResult(count);
+    }
+
+    /**
+     * Cascade eager fetches of given batch of streamed entities and pass them to the callback.
+     * Batch is cleared afterwards.
+     *
+     * @hide
+     */
+    private void flush(List<T> batch, Class<?> rootClass) {
+        cascadeQuery(batch, rootClass);
+        for (T entity : batch) {
+            callback.onRow(entity);
+        }
+        batch.clear();
+    }
+
+    /**
+     * Perform given query. If ids of root entities of page are given root entities are returned
+     * in order of the ids.
      *
      * @param query Instance of {@link Query} to be performed.
      * @param rootClass Root class of the queried entity.
-     * @param parentEntity Cascading query parent entity.
-     * @param parentField Cascading query field.
+     * @param pageIds List of ids of root entities of two phase paged query or null.
      *
      * @since 2.0.0
      *
      * @hide
      */
-    private void query(Query query, Class<?> rootClass, Object parentEntity, Field parentField) {
-        Cursor retVal = getDb().rawQuery(query.getSql(), query.getArgs());
+    private void query(Query query, Class<?> rootClass, List<Object> pageIds) {
+        if (!query.getChunks().isEmpty()) {
+            queryChunks(query, rootClass);
+
+            return;
+        }
+
+        Cursor retVal = rawQuery(query);
 
         if (transformer != null) {
 
@@ -102,34 +255,82 @@ public class QueryTransactionTemplate<T> extends TransactionTemplate {
             List<ResultSet> result = getConverter().convertCursorToCustomResultSetList(retVal);
             setResult(transformer.transformResult(result));
 
-            return;
         } else {
 
+            // Converter closes the cursor also when conversion fails
             List<?> result = getConverter().convertCursorToEntityList(retVal, query.getRoot());
 
+            if (pageIds != null) {
+                result = sortByIds(result, rootClass, pageIds);
+            }
+
             // Cascade the query for fetches & provide root always.
             cascadeQuery(result, rootClass);
 
-            /*
-             * If query is performed for the root object set the final result. Otherwise add result
-             * to the parent entity.
-             */
-            if (parentEntity != null) {
-                if (parentField.isAnnotationPresent(ManyToMany.class) || parentField.isAnnotationPresent(OneToMany.class)) {
+            setResult(result);
+        }
+    }
 
-                    ReflectionUtils.setFieldValue(parentField, parentEntity, resultsToCollection(result, parentField.getType()));
-                } else {
+    /**
+     * Sort given entities to order of given ids. Joins of second phase of paged query may order
+     * root entities differently than the page was selected.
+     *
+     * @hide
+     */
+    private List<Object> sortByIds(List<?> result, Class<?> rootClass, List<Object> ids) {
+        EntityMapping mapping = getMappings().getMapping(rootClass);
+        Map<Object, Object> entities = new HashMap<>();
+        for (Object entity : result) {
+            entities.put(mapping.getIdValue(entity), entity);
+        }
 
-                    // Otherwise it will be one to one primary key association
-                    // Add only if has results
-                    if (!result.isEmpty()) {
-                        ReflectionUtils.setFieldValue(parentField, parentEntity, result.get(0));
-                    }
+        List<Object> sorted = new ArrayList<>(result.size());
+        for (Object id : ids) {
+            Object entity = entities.get(id);
+            if (entity != null) {
+                sorted.add(entity);
+            }
+        }
+
+        return sorted;
+    }
+
+    /**
+     * Perform given query split to chunks. Rows of all the chunks are converted together so root
+     * entities are merged and distinct across the chunks. Cursors of chunks are closed after the
+     * query.
+     *
+     * @param query Instance of {@link Query} containing chunks to be performed.
+     * @param rootClass Root class of the queried entity.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private void queryChunks(Query query, Class<?> rootClass) {
+        List<Cursor> cursors = new ArrayList<>(query.getChunks().size());
+        try {
+            for (Query chunk : query.getChunks()) {
+                cursors.add(rawQuery(chunk));
+            }
+
+            if (transformer != null) {
+                List<ResultSet> result = new ArrayList<>();
+                for (Cursor cursor : cursors) {
+                    result.addAll(getConverter().convertCursorToCustomResultSetList(cursor));
                 }
+                setResult(transformer.transformResult(result));
 
             } else {
+                List<?> result = getConverter().convertCursorsToEntityList(cursors, query.getRoot());
+                cascadeQuery(result, rootClass);
+
                 setResult(result);
             }
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.close();
+            }
         }
     }
 
@@ -137,6 +338,10 @@ public class QueryTransactionTemplate<T> extends TransactionTemplate {
      * Cascade query for given query result of objects. Cascading will be done if fields of the
      * returned entities has EAGER loading allowed.
      *
+     * <p>Cascading is made in batches. Each eager relation is fetched for all the given entities
+     * at once with {@value #MAX_IN_ARGS} ids at most per query. So there is one query per relation
+     * per level instead of one query per entity.</p>
+     *
      * @param result List of query result objects to cascade query for.
      * @param rootClass Root class of the queried entity.
      *
@@ -144,81 +349,248 @@ public class QueryTransactionTemplate<T> extends TransactionTemplate {
      *
      * @hide
      */
-    private <E> void cascadeQuery(List<E> result, final Class<?> rootClass) {
-        for (final E entity : result) {
+    private <E> void cascadeQuery(List<E> result, Class<?> rootClass) {
+        if (result.isEmpty()) {
+            return;
+        }
 
-            // set primary key associations if available
-            for (Field field : rootClass.getDeclaredFields()) {
-                field.setAccessible(true);
+        EntityMapping mapping = getMappings().getMapping(rootClass);
 
-                final Object fieldValue = ReflectionUtils.getFieldValue(entity, field);
-                final Class<?> type = ReflectionUtils.getFieldType(field);
+        for (FieldMapping field : mapping.getRelations()) {
+            Class<?> type = field.getType();
 
-                // If field references to a foreign key in another table fetch items if necessary
-                if (isPrimaryKeyReverseJoinEagerFetchAllowed(field) && !isCached(new FetchHistory(field.getName(), entity.getClass()))) {
+            // Values from fetch joins need to be cascaded as well.
+            List<Object> joined = getCascadableValues(result, field);
 
-                    Query primaryKeySubQuery = getProcessor().createQuery(type, new Filter() {
-                        @Override
-                        public void filter(Root root, PredicateBuilder builder) {
-                            String alias = Alias.forModel(rootClass);
-                            Object id = ReflectionUtils.getIdFieldValue(entity);
+            // If field references to a foreign key in another table fetch items if necessary
+            if (isPrimaryKeyReverseJoinEagerFetchAllowed(field) && !isCached(new FetchHistory(field.getName(), rootClass))) {
 
-                            // TODO may break the functionality if multiple joins occurs to same table with same type.
-                            root.join(getAssociatedRootClassFieldNameByType(type, rootClass),
-                                    alias, JoinMode.INNER_JOIN);
+                cache(new FetchHistory(field.getName(), rootClass));
+                cascadeQuery(fetchReverseJoin(result, mapping, field), type);
 
-                            builder.eq(String.valueOf(alias)
-                                    .concat(".").concat(resolveIdColumn(rootClass)), id);
-                        }
-                    });
+                /*
+                 * After cascading query is made remove it from cache in case next entities want
+                 * to make same cascading query.
+                 */
+                removeFromCache(new FetchHistory(field.getName(), rootClass));
 
-                    cache(new FetchHistory(field.getName(), entity.getClass()));
-                    query(primaryKeySubQuery, type, entity, field);
+            } else if (isForeignKeyJoinEagerFetchAllowed(field)) {
+                cascadeQuery(fetchForeignKeyJoin(result, field), type);
+            }
 
-                    /*
-                     * After cascading query is made remove it from cache in case next entity wants
-                     * to make same cascading query.
-                     */
-                    removeFromCache(new FetchHistory(field.getName(), entity.getClass()));
+            cascadeQuery(joined, type);
+        }
+    }
 
-                } else {
+    /**
+     * Fetch entities of primary key join field for all given entities. Entities are queried by
+     * ids of given entities with the reverse join fetched. Then entities are distributed to given
+     * entities by the reverse join.
+     *
+     * @param result List of entities to fetch field for.
+     * @param mapping {@link EntityMapping} of the entities.
+     * @param field {@link FieldMapping} of primary key join to fetch.
+     * @return List of fetched entities.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private <E> List<Object> fetchReverseJoin(List<E> result, EntityMapping mapping, FieldMapping field) {
+        final Class<?> rootClass = mapping.getModel();
+        final Class<?> type = field.getType();
+        final String reverseName = getAssociatedRootClassFieldNameByType(type, rootClass);
+        final String idColumn = mapping.getId().getColumnName();
+
+        Map<Object, List<Object>> parents = new LinkedHashMap<>();
+        for (E entity : result) {
+            Object id = mapping.getIdValue(entity);
+            if (id != null) {
+                List<Object> sameId = parents.get(id);
+                if (sameId == null) {
+                    sameId = new ArrayList<>(1);
+                    parents.put(id, sameId);
+                }
+                sameId.add(entity);
+            }
+        }
 
-                    if (isForeignKeyJoinEagerFetchAllowed(field) && fieldValue != null) {
+        List<Object> fetched = fetchByIds(new ArrayList<>(parents.keySet()), type, new IdFilter() {
+            @Override
+            public void filter(Root root, PredicateBuilder builder, List<Object> ids) {
+                // TODO may break the functionality if multiple joins occurs to same table with same type.
+                root.fetch(reverseName, PARENT_ALIAS, JoinMode.INNER_JOIN);
 
-                        Query associatedSubQuery = getProcessor().createQuery(type, new Filter() {
-                            @Override
-                            public void filter(Root root, PredicateBuilder builder) {
-                                String alias = Alias.forModel(type);
-                                Object id = ReflectionUtils.getFieldValue(fieldValue, ReflectionUtils.findIdField(fieldValue.getClass()));
+                builder.in(PARENT_ALIAS.concat(".").concat(idColumn), ids);
+            }
+        });
+
+        // Distribute the fetched entities to their parents by the reverse join.
+        FieldMapping reverse = getMappings().getMapping(type).getField(reverseName);
+        Map<Object, List<Object>> children = new HashMap<>();
+        for (Object child : fetched) {
+            Object value = reverse.getValue(child);
+            Collection<?> values = value instanceof Collection ? (Collection<?>) value
+                    : value == null ? Collections.emptyList() : Collections.singletonList(value);
+
+            for (Object parent : values) {
+                Object parentId = mapping.getIdValue(parent);
+                List<Object> parentChildren = children.get(parentId);
+                if (parentChildren == null) {
+                    parentChildren = new ArrayList<>();
+                    children.put(parentId, parentChildren);
+                }
+                parentChildren.add(child);
 
-                                builder.eq(alias.concat(".").concat(resolveIdColumn(type)), id);
-                            }
-                        });
-                        query(associatedSubQuery, type, entity, field);
-                    }
+                // Refer to the actual parent instead of a copy from the fetch join.
+                if (!reverse.isCollection()) {
+                    reverse.setValue(child, parents.get(parentId).get(0));
                 }
+            }
 
-                // Cascade query for fetched elements.
-                if (fieldValue != null && type.isAnnotationPresent(Entity.class)) {
+            // Reverse collection only contains parents of current query thus it is left empty.
+            if (reverse.isCollection()) {
+                reverse.setValue(child, null);
+            }
+        }
 
-                    // Check cascading for first element in the list as rest of element's are from same template.
-                    if (Collection.class.isAssignableFrom(fieldValue.getClass())) {
+        for (Entry<Object, List<Object>> entry : parents.entrySet()) {
+            List<Object> parentChildren = children.get(entry.getKey());
 
-                        Object next;
-                        if ((next = ((Collection) fieldValue).iterator().hasNext()
-                                ? ((Collection) fieldValue).iterator().next() : null) != null) {
+            for (Object parent : entry.getValue()) {
+                if (field.isCollection()) {
+                    field.setValue(parent, resultsToCollection(parentChildren == null
+                            ? Collections.emptyList() : parentChildren, field.getField().getType()));
 
-                            if (allowCascadingToFetchElements(next)) {
-                                cascadeQuery((List<Object>) fieldValue, type);
-                            }
-                        }
+                } else if (parentChildren != null) {
 
-                    } else if (allowCascadingToFetchElements(fieldValue)) {
-                        cascadeQuery(Arrays.asList(fieldValue), type);
-                    }
+                    // Otherwise it will be one to one primary key association
+                    field.setValue(parent, parentChildren.get(0));
                 }
             }
         }
+
+        return fetched;
+    }
+
+    /**
+     * Fetch entities of foreign key join field for all given entities. Entities are queried by
+     * the ids of the currently referenced entities and replaced to the field of given entities.
+     *
+     * @param result List of entities to fetch field for.
+     * @param field {@link FieldMapping} of foreign key join to fetch.
+     * @return List of fetched entities.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private <E> List<Object> fetchForeignKeyJoin(List<E> result, FieldMapping field) {
+        final EntityMapping fieldMapping = getMappings().getMapping(field.getType());
+
+        Set<Object> ids = new LinkedHashSet<>();
+        for (E entity : result) {
+            Object value = field.getValue(entity);
+            if (value != null) {
+                ids.add(fieldMapping.getIdValue(value));
+            }
+        }
+
+        List<Object> fetched = fetchByIds(new ArrayList<>(ids), fieldMapping.getModel(), new IdFilter() {
+            @Override
+            public void filter(Root root, PredicateBuilder builder, List<Object> ids) {
+                builder.in("this.".concat(fieldMapping.getId().getColumnName()), ids);
+            }
+        });
+
+        Map<Object, Object> byId = new HashMap<>();
+        for (Object entity : fetched) {
+            byId.put(fieldMapping.getIdValue(entity), entity);
+        }
+
+        for (E entity : result) {
+            Object value = field.getValue(entity);
+            Object loaded;
+            if (value != null && (loaded = byId.get(fieldMapping.getIdValue(value))) != null) {
+                field.setValue(entity, loaded);
+            }
+        }
+
+        return fetched;
+    }
+
+    /**
+     * Query entities of given type in chunks of given ids. Each chunk contains
+     * {@value #MAX_IN_ARGS} ids at most.
+     *
+     * @param ids List of ids to query by.
+     * @param type {@link Class} of entities to query.
+     * @param filter {@link IdFilter} to restrict query with chunk of ids.
+     * @return List of all queried entities.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private List<Object> fetchByIds(List<Object> ids, Class<?> type, final IdFilter filter) {
+        List<Object> fetched = new ArrayList<>();
+
+        for (int i = 0; i < ids.size(); i += MAX_IN_ARGS) {
+            final List<Object> chunk = ids.subList(i, Math.min(i + MAX_IN_ARGS, ids.size()));
+
+            Query query = getProcessor().createQuery(type, new Filter() {
+                @Override
+                public void filter(Root root, PredicateBuilder builder) {
+                    filter.filter(root, builder, chunk);
+                }
+            });
+
+            Cursor cursor = rawQuery(query);
+            try {
+                fetched.addAll(getConverter().convertCursorToEntityList(cursor, query.getRoot()));
+            } finally {
+                cursor.close();
+            }
+        }
+
+        return fetched;
+    }
+
+    /**
+     * Get values of given relation field of entities that are loaded and can be cascaded.
+     *
+     * @param result List of entities to get values from.
+     * @param field {@link FieldMapping} of relation.
+     * @return List of distinct values.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private <E> List<Object> getCascadableValues(List<E> result, FieldMapping field) {
+        if (!field.isEntity()) {
+            return Collections.emptyList();
+        }
+
+        EntityMapping mapping = getMappings().getMapping(field.getType());
+        Set<Object> values = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (E entity : result) {
+            Object value = field.getValue(entity);
+            if (value instanceof Collection) {
+                values.addAll((Collection<?>) value);
+            } else if (value != null) {
+                values.add(value);
+            }
+        }
+
+        List<Object> cascadable = new ArrayList<>();
+        for (Object value : values) {
+            if (allowCascadingToFetchElements(mapping, value)) {
+                cascadable.add(value);
+            }
+        }
+
+        return cascadable;
     }
 
     /**
@@ -226,6 +598,7 @@ public class QueryTransactionTemplate<T> extends TransactionTemplate {
      * in the entity. Currently this is only way to know that because id for entity might be filled
      * without it being fetched from database.
      *
+     * @param mapping {@link EntityMapping} of the entity.
      * @param entity Object entity to check whether cascading is allowed for it.
      * @return Boolean value true if cascading is allowed for the entity; false otherwise.
      *
@@ -233,11 +606,11 @@ public class QueryTransactionTemplate<T> extends TransactionTemplate {
      *
      * @hide
      */
-    private static <T> boolean allowCascadingToFetchElements(T entity) {
+    private static <T> boolean allowCascadingToFetchElements(EntityMapping mapping, T entity) {
         int hasValue = 0;
-        for (Field field : entity.getClass().getDeclaredFields()) {
+        for (FieldMapping field : mapping.getFields()) {
 
-            Object value = ReflectionUtils.getFieldValue(field.getName(), entity);
+            Object value = field.getValue(entity);
             if (value != null) {
                 hasValue++;
                 if (hasValue == 2) {
@@ -261,10 +634,9 @@ public class QueryTransactionTemplate<T> extends TransactionTemplate {
      *
      * @hide
      */
-    private static String getAssociatedRootClassFieldNameByType(Class<?> clazz, Class<?> type) {
-        for (Field field : clazz.getDeclaredFields()) {
-            field.setAccessible(true);
-            if (ReflectionUtils.getFieldType(field).isAssignableFrom(type)) {
+    private String getAssociatedRootClassFieldNameByType(Class<?> clazz, Class<?> type) {
+        for (FieldMapping field : getMappings().getMapping(clazz).getFields()) {
+            if (field.getType().isAssignableFrom(type)) {
                 return field.getName();
             }
         }
@@ -307,33 +679,39 @@ public class QueryTransactionTemplate<T> extends TransactionTemplate {
 
     /**
      * Checks whether foreign key join has {@link FetchType} set to EAGER.
-     * @param field Instance of {@link Field}.
+     * @param field Instance of {@link FieldMapping}.
      * @return returns true if eager fetch is allowed; false otherwise.
      *
      * @since 2.0.0
      *
      * @hide
      */
-    private static boolean isForeignKeyJoinEagerFetchAllowed(Field field) {
-        return (field.isAnnotationPresent(ManyToOne.class) && field.getAnnotation(ManyToOne.class).fetch() == FetchType.EAGER)
-                || (field.isAnnotationPresent(OneToOne.class) && field.getAnnotation(OneToOne.class).fetch() == FetchType.EAGER)
-                && StringUtils.isBlank(field.getAnnotation(OneToOne.class).mappedBy());
+    private static boolean isForeignKeyJoinEagerFetchAllowed(FieldMapping field) {
+        return field.getRelation().isForeignKeyJoin() && field.isEager();
     }
 
     /**
      * Checks whether primary key join has {@link FetchType} set to EAGER.
-     * @param field Instance of {@link Field}.
+     * @param field Instance of {@link FieldMapping}.
      * @return returns true if eager fetch is allowed; false otherwise.
      *
      * @since 2.0.0
      *
      * @hide
      */
-    private static boolean isPrimaryKeyReverseJoinEagerFetchAllowed(Field field) {
-        return ((field.isAnnotationPresent(ManyToMany.class) && field.getAnnotation(ManyToMany.class).fetch() == FetchType.EAGER))
-                || (field.isAnnotationPresent(OneToOne.class) && field.getAnnotation(OneToOne.class).fetch() == FetchType.EAGER
-                && !StringUtils.isBlank(field.getAnnotation(OneToOne.class).mappedBy())
-                || (field.isAnnotationPresent(OneToMany.class) && field.getAnnotation(OneToMany.class).fetch() == FetchType.EAGER));
+    private static boolean isPrimaryKeyReverseJoinEagerFetchAllowed(FieldMapping field) {
+        return field.getRelation().isPrimaryKeyJoin() && field.isEager();
+    }
+
+    /**
+     * Filter restricting batched eager fetch query with chunk of ids.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private interface IdFilter {
+        void filter(Root root, PredicateBuilder builder, List<Object> ids);
     }
 
     /**
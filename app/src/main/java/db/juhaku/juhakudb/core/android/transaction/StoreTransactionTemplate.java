@@ -24,27 +24,31 @@ SOFTWARE.
 
 package db.juhaku.juhakudb.core.android.transaction;
 
-import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-
-import javax.persistence.ManyToMany;
-import javax.persistence.ManyToOne;
-import javax.persistence.OneToMany;
-import javax.persistence.OneToOne;
-
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import db.juhaku.juhakudb.core.android.EntityConverter;
+import db.juhaku.juhakudb.core.android.StoreStrategy;
+import db.juhaku.juhakudb.core.mapping.EntityMapping;
+import db.juhaku.juhakudb.core.mapping.FieldMapping;
+import db.juhaku.juhakudb.core.mapping.Relation;
 import db.juhaku.juhakudb.core.schema.Reference;
 import db.juhaku.juhakudb.core.schema.Schema;
-import db.juhaku.juhakudb.filter.Filter;
-import db.juhaku.juhakudb.filter.PredicateBuilder;
-import db.juhaku.juhakudb.filter.Query;
-import db.juhaku.juhakudb.filter.Root;
-import db.juhaku.juhakudb.util.ReflectionUtils;
-import db.juhaku.juhakudb.util.StringUtils;
 
 /**
  * Created by juha on 20/05/16.
@@ -58,17 +62,49 @@ import db.juhaku.juhakudb.util.StringUtils;
  */
 public class StoreTransactionTemplate<T> extends TransactionTemplate {
 
+    /**
+     * First SQLite version supporting upsert syntax.
+     */
+    private static final int[] UPSERT_VERSION = {3, 24, 0};
+
+    private static volatile Boolean upsertSupported;
+
     private Collection<T> items;
+    private StoreStrategy strategy = StoreStrategy.REPLACE;
+    private Map<String, SQLiteStatement> statements;
+    private Map<Object, Object[]> snapshots;
 
     public void setItems(Collection<T> items) {
         this.items = new ArrayList<>(items); // transform collection of items to a list.
     }
 
+    /**
+     * Set strategy for storing items that are not known to be persisted.
+     *
+     * @param strategy {@link StoreStrategy} to use. Default is {@link StoreStrategy#REPLACE}.
+     *
+     * @since 2.1.4
+     */
+    public void setStrategy(StoreStrategy strategy) {
+        this.strategy = strategy;
+    }
+
     @Override
     void onTransaction() {
-        store(items, null);
-        setResult(items);
-        commit();
+        statements = new HashMap<>();
+        snapshots = new IdentityHashMap<>();
+        try {
+            store(items, null);
+            setResult(items);
+
+            // Snapshots of stored state are only published once everything is stored.
+            for (Entry<Object, Object[]> entry : snapshots.entrySet()) {
+                getConverter().takeSnapshot(entry.getKey(), entry.getValue());
+            }
+            commit();
+        } finally {
+            closeStatements();
+        }
     }
 
     /**
@@ -84,26 +120,27 @@ public class StoreTransactionTemplate<T> extends TransactionTemplate {
      */
     private void store(Collection<T> items, Object parent) {
         for (T item : items) {
+            EntityMapping mapping = getMappings().getMapping(item.getClass());
 
-            cascadeStoreBefore(item);
-
-            ContentValues values = getConverter().entityToContentValues(item);
+            cascadeStoreBefore(item, mapping);
 
-            // If parent is specified add parent id to content values as it references to child.
+            // If parent is specified parent id is stored as it references to child.
+            String parentColumn = null;
+            Object parentId = null;
             if (parent != null) {
-                values.put(resolveReverseJoinColumnName(item.getClass(), parent.getClass()),
-                        ReflectionUtils.getIdFieldValue(parent).toString());
+                parentColumn = resolveReverseJoinColumnName(item.getClass(), parent.getClass());
+                parentId = getMappings().getMapping(parent.getClass()).getIdValue(parent);
             }
 
-            Long id = insertOrReplace(resolveTableName(item.getClass()), values);
+            Long id = insertOrReplace(mapping, item, parentColumn, parentId);
 
 
             // If storing was successful populate object with the database row id.
             if (id > -1) {
 
-                ReflectionUtils.setFieldValue(ReflectionUtils.findIdField(item.getClass()), item, id);
+                mapping.setIdValue(item, id);
 
-                cascadeStoreAfter(item);
+                cascadeStoreAfter(item, mapping);
 
             } else {
                 // Some general logging if storing fails.
@@ -117,22 +154,21 @@ public class StoreTransactionTemplate<T> extends TransactionTemplate {
      * should refer to when being stored.
      *
      * @param item T item that is being cascade stored.
+     * @param mapping {@link EntityMapping} of the item.
      *
      * @since 1.2.0
      *
      * @hide
      */
-    private void cascadeStoreBefore(T item) {
-        for (Field field : item.getClass().getDeclaredFields()) {
-
-            Object value = ReflectionUtils.getFieldValue(item, field);
+    private void cascadeStoreBefore(T item, EntityMapping mapping) {
+        for (FieldMapping field : mapping.getRelations()) {
 
             /*
              * If field has foreign key relation it should be stored before the actual item is being
              * stored.
              */
-            if (field.isAnnotationPresent(ManyToOne.class) ||
-                    (field.isAnnotationPresent(OneToOne.class) && StringUtils.isBlank(field.getAnnotation(OneToOne.class).mappedBy()))) {
+            if (field.getRelation().isForeignKeyJoin()) {
+                Object value = field.getValue(item);
 
                 // Check that there is actually something to store.
                 if (value != null) {
@@ -147,32 +183,31 @@ public class StoreTransactionTemplate<T> extends TransactionTemplate {
      * by the item itself.
      *
      * @param item T item that is being cascade stored.
+     * @param mapping {@link EntityMapping} of the item.
      *
      * @since 1.2.0
      *
      * @hide
      */
-    private void cascadeStoreAfter(T item) {
-        for (Field field : item.getClass().getDeclaredFields()) {
-
-            Object value = ReflectionUtils.getFieldValue(item, field);
+    private void cascadeStoreAfter(T item, EntityMapping mapping) {
+        for (FieldMapping field : mapping.getRelations()) {
 
             /*
              * If field has primary key relation referenced item will be stored after the actual item
              * is being stored.
              */
-            if (field.isAnnotationPresent(ManyToMany.class) || field.isAnnotationPresent(OneToMany.class)
-                    || (field.isAnnotationPresent(OneToOne.class) && !StringUtils.isBlank(field.getAnnotation(OneToOne.class).mappedBy()))) {
+            if (field.getRelation().isPrimaryKeyJoin()) {
+                Object value = field.getValue(item);
 
                 // Check that there is actually something to store.
                 if (value != null) {
 
-                    if (field.isAnnotationPresent(ManyToMany.class)) {
+                    if (field.getRelation() == Relation.MANY_TO_MANY) {
 
                         store((Collection<T>) toCollection(value), null);
 
                         // Update middle table reference for many to many relations.
-                        storeMiddleTable(item, (Collection<T>) value);
+                        storeMiddleTable(item, field.getType(), (Collection<T>) value);
 
                     } else {
 
@@ -186,70 +221,126 @@ public class StoreTransactionTemplate<T> extends TransactionTemplate {
 
     /**
      * Store middle table joins for given item. This is special processing that is being
-     * executed after both join parties are stored to database. First existing references is being
-     * deleted and then newly coming references is being stored to database for the item.
+     * executed after both join parties are stored to database. Existing references of the item
+     * are read once and compared to given items. Only removed references are deleted and only
+     * added references are inserted.
      *
      * <p>References is being created for given item from given collection of items.</p>
      *
      * @param item T item from table item.
+     * @param joinModel {@link Class} of to table items.
      * @param items {@link Collection} of to table items.
      *
      * @since 1.2.0
      *
      * @hide
      */
-    private void storeMiddleTable(final T item, Collection<T> items) {
-        final Schema middleTable = findMiddleTable(item.getClass(), items.iterator().next().getClass());
+    private void storeMiddleTable(T item, Class<?> joinModel, Collection<T> items) {
+        Schema middleTable = findMiddleTable(item.getClass(), joinModel);
+
+        EntityMapping mapping = getMappings().getMapping(item.getClass());
+        EntityMapping joinMapping = getMappings().getMapping(joinModel);
+        String fromTable = mapping.getTableName();
 
         /*
-         * Delete existing references by id.
+         * Determine which reference column refers to which table. If reference table equals
+         * from table it is used for the id of the from item otherwise for the ids of to items.
          */
-        Query where = getProcessor().createWhere(null, new Filter() {
-            @Override
-            public void filter(Root root, PredicateBuilder builder) {
-                String middleTableJoinColumn = null;
-                for (Reference reference : middleTable.getReferences()) {
-                    if (reference.getReferenceTableName().equals(resolveTableName(item.getClass()))) {
-                        middleTableJoinColumn = reference.getColumnName();
-                    }
-                }
-
-                builder.eq(middleTableJoinColumn, ReflectionUtils.getIdFieldValue(item));
+        String fromColumn = null;
+        String toColumn = null;
+        for (Reference reference : middleTable.getReferences()) {
+            if (fromColumn == null && reference.getReferenceTableName().equals(fromTable)) {
+                fromColumn = reference.getColumnName();
+            } else {
+                toColumn = reference.getColumnName();
             }
-        });
-        getDb().delete(middleTable.getName(), where.getSql(), where.getArgs());
+        }
 
+        Long id = ((Number) mapping.getIdValue(item)).longValue();
 
-        String fromTable = resolveTableName(item.getClass());
+        Set<Long> existing = new HashSet<>();
+        Cursor cursor = rawQuery(getDb(), "SELECT " + toColumn + " FROM " + middleTable.getName()
+                + " WHERE " + fromColumn + " = ?", new Object[]{id});
+        try {
+            while (cursor.moveToNext()) {
+                existing.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
 
-        /*
-         * Store middle table references.
-         */
+        Set<Long> added = new LinkedHashSet<>();
         for (T joinItem : items) {
+            Object joinId = joinMapping.getIdValue(joinItem);
+            if (joinId != null) {
+                Long value = ((Number) joinId).longValue();
+                if (!existing.remove(value)) {
+                    added.add(value);
+                }
+            }
+        }
 
-            // Create content value for each join item as each item represents one row in database.
-            ContentValues values = new ContentValues();
+        // What is left of existing references are removed.
+        deleteMiddleTableReferences(middleTable.getName(), fromColumn, toColumn, id, new ArrayList<>(existing));
 
-            for (Reference reference : middleTable.getReferences()) {
+        if (added.isEmpty()) {
+            return;
+        }
 
-                Object value;
+        /*
+         * Store added middle table references.
+         */
+        SQLiteStatement statement = statements.get(middleTable.getName());
+        if (statement == null) {
+            statement = compileStatement(middleTable.getName(), middleTable.getName(),
+                    Arrays.asList(fromColumn, toColumn), null);
+        }
 
-                /*
-                 * Determine which id is being used to to which reference. If reference table equals
-                 * from table get id of the from item otherwise use to id.
-                 */
-                if (reference.getReferenceTableName().equals(fromTable)) {
-                    value = ReflectionUtils.getIdFieldValue(item).toString();
+        for (Long joinId : added) {
+            statement.bindLong(1, id);
+            statement.bindLong(2, joinId);
+            statement.executeInsert();
+        }
+    }
 
-                } else {
+    /**
+     * Delete given references of item from middle table. References are deleted in batches of
+     * {@value QueryTransactionTemplate#MAX_IN_ARGS} at most.
+     *
+     * @param tableName String name of middle table.
+     * @param fromColumn String name of column referencing to the item.
+     * @param toColumn String name of column referencing to the joined items.
+     * @param id Long id of the item.
+     * @param joinIds List of ids of joined items whose references are removed.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private void deleteMiddleTableReferences(String tableName, String fromColumn, String toColumn,
+                                             Long id, List<Long> joinIds) {
+        int chunkSize = QueryTransactionTemplate.MAX_IN_ARGS - 1;
 
-                    value = ReflectionUtils.getIdFieldValue(joinItem);
-                }
+        for (int i = 0; i < joinIds.size(); i += chunkSize) {
+            List<Long> chunk = joinIds.subList(i, Math.min(i + chunkSize, joinIds.size()));
 
-                values.put(reference.getColumnName(), value.toString());
+            StringBuilder sql = new StringBuilder("DELETE FROM ").append(tableName).append(" WHERE ")
+                    .append(fromColumn).append(" = ? AND ").append(toColumn).append(" IN (");
+            for (int j = 0; j < chunk.size(); j++) {
+                sql.append(j > 0 ? ", ?" : "?");
             }
+            sql.append(")");
 
-            insertOrReplace(middleTable.getName(), values);
+            SQLiteStatement statement = getDb().compileStatement(sql.toString());
+            try {
+                statement.bindLong(1, id);
+                for (int j = 0; j < chunk.size(); j++) {
+                    statement.bindLong(j + 2, chunk.get(j));
+                }
+                statement.executeUpdateDelete();
+            } finally {
+                statement.close();
+            }
         }
     }
 
@@ -265,32 +356,299 @@ public class StoreTransactionTemplate<T> extends TransactionTemplate {
      * @hide
      */
     private Schema findMiddleTable(Class<?> model, Class<?> joinModel) {
-        String tableName = resolveTableName(model);
-        String joinTable = resolveTableName(joinModel);
+        return getSchema().getMiddleTable(resolveTableName(model), resolveTableName(joinModel));
+    }
+
+    /**
+     * Inserts or replaces given item in its table. If SQL was executed successfully the
+     * id of database row will be returned. If execution fails -1 will be returned.
+     *
+     * <p>Item is stored with compiled statement which is compiled once per table and column set
+     * within the transaction. Values are bound straight from the entity mapping.</p>
+     *
+     * <p>If item is already persisted and has snapshot of its stored state only the changed
+     * columns will be updated. If nothing has been changed only existence of the row is checked.
+     * Otherwise or if row does not exist item is stored according the {@link StoreStrategy} of
+     * this template.</p>
+     *
+     * @param mapping {@link EntityMapping} of the item.
+     * @param item T item that is being stored.
+     * @param parentColumn String name of column referencing to parent or null if there is no parent.
+     * @param parentId Object id of the parent.
+     * @return Long id of stored row in database table or -1 if storing will fail.
+     *
+     * @since 1.2.0
+     *
+     * @hide
+     */
+    private Long insertOrReplace(EntityMapping mapping, T item, String parentColumn, Object parentId) {
+        Object[] values = getConverter().entityToColumnValues(item);
+
+        // If parent column is mapped column of the item the parent id is stored to the column.
+        int parentIndex = parentColumn == null ? -1 : mapping.getColumns().indexOf(mapping.getColumn(parentColumn));
+        if (parentIndex > -1) {
+            values[parentIndex] = parentId instanceof Number ? ((Number) parentId).longValue() : parentId;
+            parentColumn = null;
+        }
+
+        Object[] snapshot = snapshots.containsKey(item) ? snapshots.get(item) : getConverter().getSnapshot(item);
+        Object id = mapping.getIdValue(item);
+
+        try {
+            Long rowId = -1L;
+            if (snapshot != null && id != null) {
+                rowId = update(mapping, id, values, snapshot, parentColumn, parentId);
+            }
+
+            // Not persisted or row no longer exists.
+            if (rowId == -1) {
+                boolean upsert = id != null && strategy == StoreStrategy.UPSERT && isUpsertSupported();
 
-        Schema middleTable;
+                SQLiteStatement statement = getStatement(mapping, parentColumn, upsert);
+                for (int i = 0; i < values.length; i++) {
+                    EntityConverter.bindValue(statement, i + 1, values[i]);
+                }
+                if (parentColumn != null) {
+                    EntityConverter.bindValue(statement, values.length + 1, parentId);
+                }
+
+                rowId = statement.executeInsert();
 
-        if ((middleTable = getSchema().getElement(tableName.concat("_").concat(joinTable))) == null) {
-            middleTable = getSchema().getElement(joinTable.concat("_").concat(tableName));
+                // Last inserted row id is not changed when upsert updates the row, failures throw.
+                if (upsert) {
+                    rowId = ((Number) id).longValue();
+                }
+            }
+
+            if (rowId > -1) {
+                values[mapping.getIdColumn()] = rowId;
+                snapshots.put(item, values);
+            }
+
+            return rowId;
+        } catch (SQLException e) {
+            // Keep the behaviour of SQLiteDatabase.replace which does not throw on failure.
+            Log.e(getClass().getName(), "Error inserting to: " + mapping.getTableName(), e);
+
+            return -1L;
         }
+    }
 
-        return middleTable;
+    /**
+     * Update changed columns of persisted item. Columns are compared against snapshot of the
+     * item taken when it was loaded or last stored.
+     *
+     * @param mapping {@link EntityMapping} of the item.
+     * @param id Object id of the item.
+     * @param values Array of current column values of the item.
+     * @param snapshot Array of column values of snapshot.
+     * @param parentColumn String name of unmapped column referencing to parent or null.
+     * @param parentId Object id of the parent.
+     * @return Long id of updated row or -1 if row was not found. If nothing has changed existence
+     * of the row is checked so that deleted row will be inserted again.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private Long update(EntityMapping mapping, Object id, Object[] values, Object[] snapshot,
+                        String parentColumn, Object parentId) {
+        List<Integer> changed = new ArrayList<>();
+        StringBuilder key = new StringBuilder("UPDATE ").append(mapping.getTableName());
+        for (int i = 0; i < values.length; i++) {
+            if (i != mapping.getIdColumn() && !isEqual(values[i], snapshot[i])) {
+                changed.add(i);
+                key.append(" ").append(i);
+            }
+        }
+        if (parentColumn != null) {
+            key.append(" ").append(parentColumn);
+        }
+
+        Long rowId = ((Number) id).longValue();
+        if (changed.isEmpty() && parentColumn == null) {
+
+            // Row may have been deleted after snapshot was taken e.g. by cascade in database.
+            return exists(mapping, rowId) ? rowId : -1L;
+        }
+
+        SQLiteStatement statement = statements.get(key.toString());
+        if (statement == null) {
+            StringBuilder sql = new StringBuilder("UPDATE ").append(mapping.getTableName()).append(" SET ");
+            for (Integer index : changed) {
+                sql.append(mapping.getColumns().get(index).getColumnName()).append(" = ?, ");
+            }
+            if (parentColumn != null) {
+                sql.append(parentColumn).append(" = ?, ");
+            }
+            sql.replace(sql.length() - 2, sql.length(), "");
+            sql.append(" WHERE ").append(mapping.getId().getColumnName()).append(" = ?");
+
+            statement = getDb().compileStatement(sql.toString());
+            statements.put(key.toString(), statement);
+        }
+
+        int index = 1;
+        for (Integer column : changed) {
+            EntityConverter.bindValue(statement, index++, values[column]);
+        }
+        if (parentColumn != null) {
+            EntityConverter.bindValue(statement, index++, parentId);
+        }
+        statement.bindLong(index, rowId);
+
+        return statement.executeUpdateDelete() > 0 ? rowId : -1L;
     }
 
     /**
-     * Inserts or replaces given content values in given table. If SQL was executed successfully the
-     * id of database row will be returned. If execution fails -1 will be returned.
+     * Check whether row with given id exists in table of given entity mapping.
      *
-     * @param tableName String name of the table to store content values to.
-     * @param values {@link ContentValues} that is being stored to given table.
-     * @return Long id of stored row in database table or -1 if storing will fail.
+     * @hide
+     */
+    private boolean exists(EntityMapping mapping, Long rowId) {
+        String key = "EXISTS ".concat(mapping.getTableName());
+        SQLiteStatement statement = statements.get(key);
+        if (statement == null) {
+            statement = getDb().compileStatement(new StringBuilder("SELECT EXISTS(SELECT 1 FROM ")
+                    .append(mapping.getTableName()).append(" WHERE ").append(mapping.getId().getColumnName())
+                    .append(" = ?)").toString());
+            statements.put(key, statement);
+        }
+        statement.bindLong(1, rowId);
+
+        return statement.simpleQueryForLong() == 1;
+    }
+
+    /**
+     * Check whether given column values are equal.
      *
-     * @since 1.2.0
+     * @hide
+     */
+    private static boolean isEqual(Object value, Object other) {
+        if (value instanceof byte[] && other instanceof byte[]) {
+            return Arrays.equals((byte[]) value, (byte[]) other);
+        }
+
+        return value == null ? other == null : value.equals(other);
+    }
+
+    /**
+     * Get compiled insert statement for columns of given entity mapping and optional parent
+     * reference column. Statement is compiled only once per transaction.
+     *
+     * @hide
+     */
+    private SQLiteStatement getStatement(EntityMapping mapping, String parentColumn, boolean upsert) {
+        String key = (upsert ? "UPSERT " : "").concat(mapping.getTableName())
+                .concat(parentColumn == null ? "" : ".".concat(parentColumn));
+
+        SQLiteStatement statement = statements.get(key);
+        if (statement == null) {
+            List<String> columns = new ArrayList<>();
+            for (FieldMapping field : mapping.getColumns()) {
+                columns.add(field.getColumnName());
+            }
+            if (parentColumn != null) {
+                columns.add(parentColumn);
+            }
+
+            statement = compileStatement(key, mapping.getTableName(), columns,
+                    upsert ? mapping.getId().getColumnName() : null);
+        }
+
+        return statement;
+    }
+
+    /**
+     * Compile INSERT OR REPLACE statement for given table and columns. If conflict column is given
+     * upsert statement updating the row on conflict of that column is compiled instead. Compiled
+     * statement is kept by given key until the end of transaction.
+     *
+     * @param key String key of the statement.
+     * @param tableName String name of table.
+     * @param columns List of column names in binding order.
+     * @param conflictColumn String name of column for upsert conflict target or null.
+     * @return Compiled {@link SQLiteStatement}.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private SQLiteStatement compileStatement(String key, String tableName, List<String> columns, String conflictColumn) {
+        StringBuilder sql = new StringBuilder(conflictColumn == null ? "INSERT OR REPLACE INTO " : "INSERT INTO ")
+                .append(tableName).append(" (");
+        StringBuilder params = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+                params.append(", ");
+            }
+            sql.append(columns.get(i));
+            params.append("?");
+        }
+        sql.append(") VALUES (").append(params).append(")");
+
+        if (conflictColumn != null) {
+            StringBuilder set = new StringBuilder();
+            for (String column : columns) {
+                if (!column.equals(conflictColumn)) {
+                    set.append(set.length() > 0 ? ", " : "").append(column).append(" = excluded.").append(column);
+                }
+            }
+            sql.append(" ON CONFLICT(").append(conflictColumn).append(")")
+                    .append(set.length() > 0 ? " DO UPDATE SET ".concat(set.toString()) : " DO NOTHING");
+        }
+
+        SQLiteStatement statement = getDb().compileStatement(sql.toString());
+        statements.put(key, statement);
+
+        return statement;
+    }
+
+    /**
+     * Check whether SQLite of the runtime supports upsert syntax. Version is queried once.
+     *
+     * @return boolean true if upsert is supported; false otherwise.
+     *
+     * @since 2.1.4
      *
      * @hide
      */
-    private Long insertOrReplace(String tableName, ContentValues values) {
-        return getDb().replace(tableName, null, values);
+    private boolean isUpsertSupported() {
+        if (upsertSupported == null) {
+            String version = DatabaseUtils.stringForQuery(getDb(), "SELECT sqlite_version()", null);
+            String[] parts = version.split("\\.");
+
+            boolean supported = true;
+            for (int i = 0; i < UPSERT_VERSION.length; i++) {
+                int part = i < parts.length ? Integer.parseInt(parts[i]) : 0;
+                if (part != UPSERT_VERSION[i]) {
+                    supported = part > UPSERT_VERSION[i];
+                    break;
+                }
+            }
+
+            if (!supported) {
+                Log.w(getClass().getName(), "SQLite version: " + version + " does not support upsert, "
+                        + StoreStrategy.REPLACE + " is used instead");
+            }
+            upsertSupported = supported;
+        }
+
+        return upsertSupported;
+    }
+
+    /**
+     * Close all compiled statements of this transaction and release pending snapshots.
+     *
+     * @hide
+     */
+    private void closeStatements() {
+        for (SQLiteStatement statement : statements.values()) {
+            statement.close();
+        }
+        statements = null;
+        snapshots = null;
     }
 
     /**
@@ -23,16 +23,26 @@ SOFTWARE.
 */
 package db.juhaku.juhakudb.core.android.transaction;
 
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDatabase.CursorFactory;
+import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteStatement;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map.Entry;
 
 import db.juhaku.juhakudb.core.NameResolver;
 import db.juhaku.juhakudb.core.android.EntityConverter;
+import db.juhaku.juhakudb.core.mapping.MappingRegistry;
 import db.juhaku.juhakudb.core.schema.Schema;
 import db.juhaku.juhakudb.exception.MappingException;
 import db.juhaku.juhakudb.exception.NameResolveException;
+import db.juhaku.juhakudb.filter.Predicate;
+import db.juhaku.juhakudb.filter.Query;
 import db.juhaku.juhakudb.filter.QueryProcessor;
 
 /**
@@ -49,7 +59,9 @@ public abstract class TransactionTemplate<T> {
     private Class<?> rootClass;
     private QueryProcessor processor;
     private EntityConverter converter;
+    private MappingRegistry mappings;
     private boolean successful = false;
+    private boolean trackCursors;
     private List<Object> resultCache;
 
     /**
@@ -59,9 +71,13 @@ public abstract class TransactionTemplate<T> {
      * that should be implemented by child transaction template to provide action that is performed
      * against database.
      *
+     * <p>If cursor tracking is enabled cursors left open by transaction are reported and closed
+     * before transaction ends. See {@link #setTrackCursors(boolean)}.</p>
+     *
      * @since 1.0.2
      */
     public final void execute() {
+        CursorTracker tracker = trackCursors ? CursorTracker.begin() : null;
         db.beginTransactionNonExclusive();
         try {
             onTransaction();
@@ -70,10 +86,29 @@ public abstract class TransactionTemplate<T> {
                 db.setTransactionSuccessful();
             }
         } finally {
-            db.endTransaction();
+            try {
+                if (tracker != null) {
+                    tracker.finish();
+                }
+            } finally {
+                db.endTransaction();
+            }
         }
     }
 
+    /**
+     * Set tracking of cursors opened by this template enabled. When enabled allocation sites
+     * of cursors are recorded and cursors still open at the end of transaction are logged with
+     * their allocation sites and closed.
+     *
+     * @param trackCursors boolean value to define whether cursors are tracked.
+     *
+     * @since 2.1.4
+     */
+    public final void setTrackCursors(boolean trackCursors) {
+        this.trackCursors = trackCursors;
+    }
+
     /**
      * Set result for the query available for later usage.
      *
@@ -129,6 +164,113 @@ public abstract class TransactionTemplate<T> {
         return schema;
     }
 
+    /**
+     * Perform given query against database. Values of query are bound with their types. See
+     * {@link #rawQuery(SQLiteDatabase, String, Object[])}.
+     *
+     * @param query {@link Query} to perform.
+     * @return Cursor of query results.
+     *
+     * @since 2.1.4
+     */
+    Cursor rawQuery(Query query) {
+        return rawQuery(db, query.getSql(), query.getValues());
+    }
+
+    /**
+     * Fill temporary tables of given query with their values. Tables are created on first use on
+     * the connection of the transaction and cleared before filling. See {@link Query#getIdTables()}.
+     *
+     * @param query {@link Query} to fill temporary tables for.
+     *
+     * @since 2.1.4
+     */
+    void fillIdTables(Query query) {
+        for (Entry<String, Object[]> idTable : query.getIdTables().entrySet()) {
+            String table = "temp.".concat(idTable.getKey());
+            db.execSQL(new StringBuilder("CREATE TEMP TABLE IF NOT EXISTS ").append(idTable.getKey()).append(" (")
+                    .append(Predicate.ID_TABLE_COLUMN).append(")").toString());
+            db.execSQL("DELETE FROM ".concat(table));
+
+            SQLiteStatement insert = db.compileStatement(new StringBuilder("INSERT INTO ").append(table)
+                    .append(" (").append(Predicate.ID_TABLE_COLUMN).append(") VALUES (?)").toString());
+            try {
+                for (Object value : idTable.getValue()) {
+                    EntityConverter.bindValue(insert, 1, value);
+                    insert.executeInsert();
+                }
+            } finally {
+                insert.close();
+            }
+        }
+    }
+
+    /**
+     * Clear temporary tables of given query after query is performed so values are not kept in
+     * memory of the connection. If query fails values are discarded with rollback of the
+     * transaction. See {@link #fillIdTables(Query)}.
+     *
+     * @param query {@link Query} to clear temporary tables for.
+     *
+     * @since 2.1.4
+     */
+    void clearIdTables(Query query) {
+        for (String idTable : query.getIdTables().keySet()) {
+            db.execSQL("DELETE FROM temp.".concat(idTable));
+        }
+    }
+
+    /**
+     * Perform given sql against given database binding given values with their types. Long values
+     * are bound as integers, Double values as reals, byte arrays as blobs and null values as nulls.
+     * Other values are bound as text.
+     *
+     * <p>Returned cursor must be closed by caller. Cursor is registered to {@link CursorTracker}
+     * if tracking is enabled for current transaction.</p>
+     *
+     * @param db {@link SQLiteDatabase} to perform query against.
+     * @param sql String sql of query.
+     * @param values Object[] array of values in order of parameters in sql or null.
+     * @return Cursor of query results.
+     *
+     * @since 2.1.4
+     */
+    static Cursor rawQuery(SQLiteDatabase db, String sql, final Object[] values) {
+        return db.rawQueryWithFactory(new CursorFactory() {
+            @Override
+            public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable,
+                                    SQLiteQuery query) {
+                if (values != null) {
+                    for (int i = 0; i < values.length; i++) {
+                        EntityConverter.bindValue(query, i + 1, values[i]);
+                    }
+                }
+
+                return new TrackedCursor(masterQuery, editTable, query);
+            }
+        }, sql, null, null);
+    }
+
+    /**
+     * Cursor that is registered to {@link CursorTracker} of current thread when opened and
+     * removed from it when closed.
+     *
+     * @hide
+     */
+    private static class TrackedCursor extends SQLiteCursor {
+
+        TrackedCursor(SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+            super(driver, editTable, query);
+            CursorTracker.opened(this);
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            CursorTracker.closed(this);
+        }
+    }
+
     /**
      * Set root class for the query.
      * @param rootClass Class of the root table in database.
@@ -179,6 +321,26 @@ public abstract class TransactionTemplate<T> {
         this.converter = converter;
     }
 
+    /**
+     * Get registry of precompiled entity mappings.
+     * @return instance of {@link MappingRegistry}.
+     *
+     * @since 2.1.4
+     */
+    MappingRegistry getMappings() {
+        return mappings;
+    }
+
+    /**
+     * Set registry of precompiled entity mappings that is used to access entities without reflection lookups.
+     * @param mappings instance of {@link MappingRegistry}.
+     *
+     * @since 2.1.4
+     */
+    public final void setMappings(MappingRegistry mappings) {
+        this.mappings = mappings;
+    }
+
     /**
      * Get the previously put query processor.
      * @return instance of {@link QueryProcessor}.
@@ -34,7 +34,7 @@ import android.util.Log;
 public class TransactionTemplateFactory {
 
     public enum Type {
-        DELETE, DELETE_MULTIPLE, STORE, STORE_MULTIPLE, QUERY
+        DELETE, DELETE_MULTIPLE, STORE, STORE_MULTIPLE, QUERY, AGGREGATE
     }
 
     public TransactionTemplate getTransactionTemplate(Type type) {
@@ -49,6 +49,8 @@ public class TransactionTemplateFactory {
                 return new StoreTransactionTemplate<>();
             case QUERY:
                 return new QueryTransactionTemplate();
+            case AGGREGATE:
+                return new AggregateTransactionTemplate();
             default:
                 Log.w(getClass().getName(), "Transaction template type was not recognized: " + type + ", returning null");
                 return null;
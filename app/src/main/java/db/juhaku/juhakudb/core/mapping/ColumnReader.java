@@ -0,0 +1,374 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.mapping;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import db.juhaku.juhakudb.core.schema.DateStorage;
+import db.juhaku.juhakudb.exception.ConversionException;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Column reader reads value of one column from cursor with cursor's typed getter. Reader is
+ * chosen once per field by the Java type of the field when entity is being mapped so that no type
+ * resolving or reflective construction is needed when rows are being read.</p>
+ *
+ * <p>Readers of primitive types set value directly to primitive field without boxing.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public abstract class ColumnReader {
+
+    private static final Map<Class<?>, ColumnReader> READERS;
+
+    static {
+        Map<Class<?>, ColumnReader> readers = new HashMap<>();
+
+        readers.put(Long.class, new LongReader());
+        readers.put(Long.TYPE, new LongReader());
+        readers.put(Integer.class, new IntegerReader());
+        readers.put(Integer.TYPE, new IntegerReader());
+        readers.put(Short.class, new ShortReader());
+        readers.put(Short.TYPE, new ShortReader());
+        readers.put(Byte.class, new ByteReader());
+        readers.put(Byte.TYPE, new ByteReader());
+        readers.put(Double.class, new DoubleReader());
+        readers.put(Double.TYPE, new DoubleReader());
+        readers.put(Float.class, new FloatReader());
+        readers.put(Float.TYPE, new FloatReader());
+        readers.put(Boolean.class, new BooleanReader());
+        readers.put(Boolean.TYPE, new BooleanReader());
+        readers.put(String.class, new StringReader());
+        readers.put(byte[].class, new BlobReader());
+        readers.put(Date.class, new DateReader());
+        readers.put(BigDecimal.class, new BigDecimalReader());
+        readers.put(BigInteger.class, new BigIntegerReader());
+
+        READERS = Collections.unmodifiableMap(readers);
+    }
+
+    /**
+     * Get column reader for given Java type. For types not known by readers table, reader that
+     * constructs value via String constructor of the type is returned.
+     *
+     * @param type {@link Class} Java type of the value.
+     * @return {@link ColumnReader} for the type.
+     *
+     * @since 2.1.4
+     */
+    public static ColumnReader forType(Class<?> type) {
+        ColumnReader reader = READERS.get(type);
+
+        if (reader == null) {
+            if (Enum.class.isAssignableFrom(type)) {
+                reader = new EnumReader(type);
+            } else {
+                reader = new ConstructorReader(type);
+            }
+        }
+
+        return reader;
+    }
+
+    /**
+     * Get column reader for {@link Date} values stored with given storage.
+     *
+     * @param dateStorage {@link DateStorage} of the date column.
+     * @return {@link ColumnReader} for the dates.
+     *
+     * @since 2.1.4
+     */
+    public static ColumnReader forDate(DateStorage dateStorage) {
+        return dateStorage == DateStorage.EPOCH_MILLIS ? new EpochMillisDateReader() : READERS.get(Date.class);
+    }
+
+    /**
+     * Read value of column from cursor's current row.
+     *
+     * @param cursor {@link Cursor} to read from.
+     * @param index Int index of the column.
+     * @return Value of the column or null if column is null.
+     *
+     * @since 2.1.4
+     */
+    public abstract Object read(Cursor cursor, int index);
+
+    /**
+     * Read value of column from cursor's current row and set it to given field of entity. Null
+     * values are not set to primitive fields.
+     *
+     * @param cursor {@link Cursor} to read from.
+     * @param index Int index of the column.
+     * @param field {@link Field} to set value to. Field must be accessible.
+     * @param entity Object entity to set the value to.
+     * @throws IllegalAccessException if field cannot be accessed.
+     *
+     * @since 2.1.4
+     */
+    public void readTo(Cursor cursor, int index, Field field, Object entity) throws IllegalAccessException {
+        Object value = read(cursor, index);
+
+        if (value != null || !field.getType().isPrimitive()) {
+            field.set(entity, value);
+        }
+    }
+
+    private static class LongReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.isNull(index) ? null : cursor.getLong(index);
+        }
+
+        @Override
+        public void readTo(Cursor cursor, int index, Field field, Object entity) throws IllegalAccessException {
+            if (field.getType().isPrimitive()) {
+                field.setLong(entity, cursor.getLong(index));
+            } else {
+                super.readTo(cursor, index, field, entity);
+            }
+        }
+    }
+
+    private static class IntegerReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.isNull(index) ? null : cursor.getInt(index);
+        }
+
+        @Override
+        public void readTo(Cursor cursor, int index, Field field, Object entity) throws IllegalAccessException {
+            if (field.getType().isPrimitive()) {
+                field.setInt(entity, cursor.getInt(index));
+            } else {
+                super.readTo(cursor, index, field, entity);
+            }
+        }
+    }
+
+    private static class ShortReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.isNull(index) ? null : cursor.getShort(index);
+        }
+
+        @Override
+        public void readTo(Cursor cursor, int index, Field field, Object entity) throws IllegalAccessException {
+            if (field.getType().isPrimitive()) {
+                field.setShort(entity, cursor.getShort(index));
+            } else {
+                super.readTo(cursor, index, field, entity);
+            }
+        }
+    }
+
+    private static class ByteReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.isNull(index) ? null : (byte) cursor.getInt(index);
+        }
+
+        @Override
+        public void readTo(Cursor cursor, int index, Field field, Object entity) throws IllegalAccessException {
+            if (field.getType().isPrimitive()) {
+                field.setByte(entity, (byte) cursor.getInt(index));
+            } else {
+                super.readTo(cursor, index, field, entity);
+            }
+        }
+    }
+
+    private static class DoubleReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.isNull(index) ? null : cursor.getDouble(index);
+        }
+
+        @Override
+        public void readTo(Cursor cursor, int index, Field field, Object entity) throws IllegalAccessException {
+            if (field.getType().isPrimitive()) {
+                field.setDouble(entity, cursor.getDouble(index));
+            } else {
+                super.readTo(cursor, index, field, entity);
+            }
+        }
+    }
+
+    private static class FloatReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.isNull(index) ? null : cursor.getFloat(index);
+        }
+
+        @Override
+        public void readTo(Cursor cursor, int index, Field field, Object entity) throws IllegalAccessException {
+            if (field.getType().isPrimitive()) {
+                field.setFloat(entity, cursor.getFloat(index));
+            } else {
+                super.readTo(cursor, index, field, entity);
+            }
+        }
+    }
+
+    private static class BooleanReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.isNull(index) ? null : (cursor.getInt(index) == 0 ? Boolean.FALSE : Boolean.TRUE);
+        }
+
+        @Override
+        public void readTo(Cursor cursor, int index, Field field, Object entity) throws IllegalAccessException {
+            if (field.getType().isPrimitive()) {
+                field.setBoolean(entity, cursor.getInt(index) != 0);
+            } else {
+                super.readTo(cursor, index, field, entity);
+            }
+        }
+    }
+
+    private static class StringReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.getString(index);
+        }
+    }
+
+    private static class BlobReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.isNull(index) ? null : cursor.getBlob(index);
+        }
+    }
+
+    private static class DateReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            String val = cursor.getString(index);
+
+            if (val == null) {
+                return null;
+            }
+
+            try {
+                return DateStorage.parse(val);
+            } catch (ParseException e) {
+                Log.w(getClass().getName(), "incompatible date: " + val + " returning null");
+                return null;
+            }
+        }
+    }
+
+    private static class EpochMillisDateReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.isNull(index) ? null : new Date(cursor.getLong(index));
+        }
+    }
+
+    private static class BigDecimalReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.isNull(index) ? null : new BigDecimal(cursor.getString(index));
+        }
+    }
+
+    private static class BigIntegerReader extends ColumnReader {
+        @Override
+        public Object read(Cursor cursor, int index) {
+            return cursor.isNull(index) ? null : new BigInteger(cursor.getString(index));
+        }
+    }
+
+    private static class EnumReader extends ColumnReader {
+        private final Class<? extends Enum> type;
+
+        EnumReader(Class<?> type) {
+            this.type = (Class<? extends Enum>) type;
+        }
+
+        @Override
+        public Object read(Cursor cursor, int index) {
+            String val = cursor.getString(index);
+
+            return val == null ? null : Enum.valueOf(type, val);
+        }
+    }
+
+    /**
+     * Reader for types that are not known by the readers table. Value is constructed from String
+     * value of the column via String constructor of the type that is looked up only once.
+     */
+    private static class ConstructorReader extends ColumnReader {
+        private final Class<?> type;
+        private final Constructor<?> constructor;
+
+        ConstructorReader(Class<?> type) {
+            this.type = type;
+
+            Constructor<?> constructor = null;
+            for (Constructor c : type.getDeclaredConstructors()) {
+                if (c.getParameterTypes().length == 1 && String.class.isAssignableFrom(c.getParameterTypes()[0])) {
+                    constructor = c;
+                    constructor.setAccessible(true);
+                    break;
+                }
+            }
+            this.constructor = constructor;
+        }
+
+        @Override
+        public Object read(Cursor cursor, int index) {
+            String val = cursor.getString(index);
+
+            if (val == null) {
+                return null;
+            }
+
+            if (constructor == null) {
+                Log.w(getClass().getName(), "incompatible type: " + type + " with value: " + val + ", returning null");
+
+                return null;
+            }
+
+            try {
+                return constructor.newInstance(val);
+            } catch (Exception e) {
+                throw new ConversionException("Failed to construct type: " + type + " with value: " + val, e);
+            }
+        }
+    }
+}
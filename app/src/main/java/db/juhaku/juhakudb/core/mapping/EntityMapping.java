@@ -0,0 +1,316 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.mapping;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Entity;
+import javax.persistence.Transient;
+
+import db.juhaku.juhakudb.core.NameResolver;
+import db.juhaku.juhakudb.core.schema.DateStorage;
+import db.juhaku.juhakudb.exception.MappingException;
+import db.juhaku.juhakudb.exception.NameResolveException;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Entity mapping is precompiled mapping of entity class to database table. It holds ordered
+ * column bindings, id field, relations and default constructor of an entity so that conversion
+ * and transaction templates do not need to reflect the entity class over and over again.</p>
+ *
+ * <p>Column bindings are ordered by column name which is the same order columns are created to
+ * the database table by {@link db.juhaku.juhakudb.core.schema.SchemaFactory}.</p>
+ *
+ * <p>Entity mappings are immutable and thus safe to share between threads.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public class EntityMapping {
+
+    private final Class<?> model;
+    private final String tableName;
+    private final Constructor<?> constructor;
+    private final FieldMapping id;
+    private final int idColumn;
+    private final List<FieldMapping> fields;
+    private final List<FieldMapping> columns;
+    private final List<FieldMapping> relations;
+    private final Map<String, FieldMapping> fieldsByName;
+    private final Map<String, FieldMapping> fieldsByColumn;
+
+    /**
+     * Compile new entity mapping for given entity class.
+     *
+     * @param model {@link Class} of entity annotated with {@link Entity}.
+     * @param dateStorage {@link DateStorage} default storage of date fields.
+     * @throws MappingException if class is not entity, it does not have id field or default
+     * constructor.
+     *
+     * @since 2.1.4
+     */
+    EntityMapping(Class<?> model, DateStorage dateStorage) {
+        if (!model.isAnnotationPresent(Entity.class)) {
+            throw new MappingException(Entity.class.getName() + " annotation is missing from: " + model.getName());
+        }
+
+        this.model = model;
+
+        try {
+            this.tableName = NameResolver.resolveName(model);
+        } catch (NameResolveException e) {
+            throw new MappingException("Failed to resolve table name for entity: " + model.getName(), e);
+        }
+
+        try {
+            this.constructor = model.getDeclaredConstructor();
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new MappingException("Entity: " + model.getName() + " is missing default constructor", e);
+        }
+
+        List<FieldMapping> fields = new ArrayList<>();
+        List<FieldMapping> columns = new ArrayList<>();
+        List<FieldMapping> relations = new ArrayList<>();
+        Map<String, FieldMapping> fieldsByName = new HashMap<>();
+        Map<String, FieldMapping> fieldsByColumn = new HashMap<>();
+        FieldMapping id = null;
+
+        for (Field field : model.getDeclaredFields()) {
+            if (!isMappable(field)) {
+                continue;
+            }
+
+            FieldMapping mapping = new FieldMapping(field, dateStorage);
+            fields.add(mapping);
+            fieldsByName.put(mapping.getName(), mapping);
+
+            if (mapping.isId()) {
+                id = mapping;
+            }
+
+            if (mapping.getColumnName() != null) {
+                columns.add(mapping);
+                fieldsByColumn.put(mapping.getColumnName(), mapping);
+            }
+
+            if (mapping.getRelation() != Relation.NONE) {
+                relations.add(mapping);
+            }
+        }
+
+        if (id == null) {
+            throw new MappingException("Entity: " + model.getName() + " does not have id field");
+        }
+
+        // Order columns same way as they are in the database table.
+        Collections.sort(columns, new Comparator<FieldMapping>() {
+            @Override
+            public int compare(FieldMapping o1, FieldMapping o2) {
+                return o1.getColumnName().compareTo(o2.getColumnName());
+            }
+        });
+
+        this.id = id;
+        this.idColumn = columns.indexOf(id);
+        this.fields = Collections.unmodifiableList(fields);
+        this.columns = Collections.unmodifiableList(columns);
+        this.relations = Collections.unmodifiableList(relations);
+        this.fieldsByName = Collections.unmodifiableMap(fieldsByName);
+        this.fieldsByColumn = Collections.unmodifiableMap(fieldsByColumn);
+    }
+
+    /**
+     * Check whether field should be mapped. Transient, static and synthetic fields are not
+     * mapped to database.
+     *
+     * @param field {@link Field} to check.
+     * @return boolean true if field is mappable; false otherwise.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    static boolean isMappable(Field field) {
+        return !field.isAnnotationPresent(Transient.class) && !Modifier.isStatic(field.getModifiers())
+                && !field.isSynthetic();
+    }
+
+    /**
+     * Get entity class of this mapping.
+     *
+     * @return {@link Class} of entity.
+     *
+     * @since 2.1.4
+     */
+    public Class<?> getModel() {
+        return model;
+    }
+
+    /**
+     * Get name of the database table of the entity.
+     *
+     * @return String table name.
+     *
+     * @since 2.1.4
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Get id field mapping of the entity.
+     *
+     * @return {@link FieldMapping} of id field.
+     *
+     * @since 2.1.4
+     */
+    public FieldMapping getId() {
+        return id;
+    }
+
+    /**
+     * Get index of id field in {@link #getColumns()}.
+     *
+     * @return Int index of id column.
+     *
+     * @since 2.1.4
+     */
+    public int getIdColumn() {
+        return idColumn;
+    }
+
+    /**
+     * Get all mapped fields of the entity in declaration order.
+     *
+     * @return Unmodifiable list of {@link FieldMapping}s.
+     *
+     * @since 2.1.4
+     */
+    public List<FieldMapping> getFields() {
+        return fields;
+    }
+
+    /**
+     * Get fields that have column in the database table. Fields are ordered by column name
+     * which is the order of columns in the table.
+     *
+     * @return Unmodifiable list of {@link FieldMapping}s.
+     *
+     * @since 2.1.4
+     */
+    public List<FieldMapping> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Get fields that have relation to another entity.
+     *
+     * @return Unmodifiable list of {@link FieldMapping}s.
+     *
+     * @since 2.1.4
+     */
+    public List<FieldMapping> getRelations() {
+        return relations;
+    }
+
+    /**
+     * Get field mapping by name of the field.
+     *
+     * @param name String name of the field.
+     * @return Found {@link FieldMapping} or null if not found.
+     *
+     * @since 2.1.4
+     */
+    public FieldMapping getField(String name) {
+        return fieldsByName.get(name);
+    }
+
+    /**
+     * Get field mapping by column name of the field.
+     *
+     * @param columnName String name of the column.
+     * @return Found {@link FieldMapping} or null if not found.
+     *
+     * @since 2.1.4
+     */
+    public FieldMapping getColumn(String columnName) {
+        return fieldsByColumn.get(columnName);
+    }
+
+    /**
+     * Initialize new instance of the entity by its default constructor.
+     *
+     * @return Newly created entity.
+     * @throws MappingException if entity cannot be instantiated.
+     *
+     * @since 2.1.4
+     */
+    public <T> T newInstance() {
+        try {
+            return (T) constructor.newInstance();
+        } catch (Exception e) {
+            throw new MappingException("Failed to initialize entity: " + model.getName(), e);
+        }
+    }
+
+    /**
+     * Get id value of given entity.
+     *
+     * @param entity Object entity of this mapping.
+     * @return Value of id field.
+     *
+     * @since 2.1.4
+     */
+    public <T> T getIdValue(Object entity) {
+        return id.getValue(entity);
+    }
+
+    /**
+     * Set id value for given entity.
+     *
+     * @param entity Object entity of this mapping.
+     * @param value Object id value.
+     *
+     * @since 2.1.4
+     */
+    public void setIdValue(Object entity, Object value) {
+        id.setValue(entity, value);
+    }
+
+    @Override
+    public String toString() {
+        return "EntityMapping{" + model.getName() + " -> " + tableName + "}";
+    }
+}
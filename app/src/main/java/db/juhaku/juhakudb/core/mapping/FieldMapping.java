@@ -0,0 +1,335 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.mapping;
+
+import android.database.Cursor;
+
+import java.lang.reflect.Field;
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.ManyToMany;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.OneToOne;
+
+import db.juhaku.juhakudb.core.NameResolver;
+import db.juhaku.juhakudb.core.schema.DateStorage;
+import db.juhaku.juhakudb.exception.ConversionException;
+import db.juhaku.juhakudb.exception.MappingException;
+import db.juhaku.juhakudb.exception.NameResolveException;
+import db.juhaku.juhakudb.util.ReflectionUtils;
+import db.juhaku.juhakudb.util.StringUtils;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Field mapping is precompiled binding between field of an entity and column of database
+ * table. Mapping holds resolved column name, type and relation of the field so that they do not
+ * need to be resolved again by reflection when entities are being converted.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public class FieldMapping {
+
+    private final Field field;
+    private final String columnName;
+    private final Class<?> type;
+    private final Relation relation;
+    private final FetchType fetch;
+    private final String mappedBy;
+    private final boolean id;
+    private final ColumnReader reader;
+    private final DateStorage dateStorage;
+
+    /**
+     * Compile new field mapping for given field of an entity. Field will be made accessible.
+     *
+     * @param field {@link Field} of an entity.
+     * @param dateStorage {@link DateStorage} default storage of date fields.
+     * @throws MappingException if column name of the field cannot be resolved.
+     *
+     * @since 2.1.4
+     */
+    FieldMapping(Field field, DateStorage dateStorage) {
+        field.setAccessible(true);
+
+        this.field = field;
+        this.type = ReflectionUtils.getFieldType(field);
+        this.id = field.isAnnotationPresent(Id.class);
+        this.dateStorage = Date.class.isAssignableFrom(field.getType()) ? DateStorage.resolve(field, dateStorage) : null;
+
+        if (field.isAnnotationPresent(ManyToMany.class)) {
+            this.relation = Relation.MANY_TO_MANY;
+            this.fetch = field.getAnnotation(ManyToMany.class).fetch();
+            this.mappedBy = field.getAnnotation(ManyToMany.class).mappedBy();
+
+        } else if (field.isAnnotationPresent(OneToMany.class)) {
+            this.relation = Relation.ONE_TO_MANY;
+            this.fetch = field.getAnnotation(OneToMany.class).fetch();
+            this.mappedBy = field.getAnnotation(OneToMany.class).mappedBy();
+
+        } else if (field.isAnnotationPresent(ManyToOne.class)) {
+            this.relation = Relation.MANY_TO_ONE;
+            this.fetch = field.getAnnotation(ManyToOne.class).fetch();
+            this.mappedBy = null;
+
+        } else if (field.isAnnotationPresent(OneToOne.class)) {
+            String mappedBy = field.getAnnotation(OneToOne.class).mappedBy();
+            this.relation = StringUtils.isBlank(mappedBy) ? Relation.ONE_TO_ONE : Relation.ONE_TO_ONE_MAPPED_BY;
+            this.fetch = field.getAnnotation(OneToOne.class).fetch();
+            this.mappedBy = mappedBy;
+
+        } else {
+            this.relation = Relation.NONE;
+            this.fetch = null;
+            this.mappedBy = null;
+        }
+
+        // Primary key joins do not have a column in the table of the owning entity.
+        if (relation.isPrimaryKeyJoin()) {
+            this.columnName = null;
+        } else {
+            try {
+                this.columnName = NameResolver.resolveName(field);
+            } catch (NameResolveException e) {
+                throw new MappingException("Failed to resolve column name for field: " + field, e);
+            }
+        }
+
+        // Choose the reader once by the type of the value stored to the column.
+        if (columnName == null) {
+            this.reader = null;
+        } else if (isEntity()) {
+            Field idField = ReflectionUtils.findIdField(type);
+
+            if (idField == null) {
+                throw new MappingException("Referenced entity: " + type.getName() + " of field: " + field + " does not have id field");
+            }
+            this.reader = ColumnReader.forType(idField.getType());
+        } else if (this.dateStorage != null) {
+            this.reader = ColumnReader.forDate(this.dateStorage);
+        } else {
+            this.reader = ColumnReader.forType(field.getType());
+        }
+    }
+
+    /**
+     * Get the mapped field. Field is already accessible.
+     *
+     * @return {@link Field} of the entity.
+     *
+     * @since 2.1.4
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Get name of the mapped field.
+     *
+     * @return String name of the field.
+     *
+     * @since 2.1.4
+     */
+    public String getName() {
+        return field.getName();
+    }
+
+    /**
+     * Get column name of the field in database table.
+     *
+     * @return String column name or null if field is primary key join and does not have a column.
+     *
+     * @since 2.1.4
+     */
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * Get type of the field. For collections the generic type of collection is returned.
+     *
+     * @return {@link Class} type of the field.
+     *
+     * @since 2.1.4
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Get relation of the field.
+     *
+     * @return {@link Relation} of the field.
+     *
+     * @since 2.1.4
+     */
+    public Relation getRelation() {
+        return relation;
+    }
+
+    /**
+     * Get fetch type of relation. For non relation fields this will be null.
+     *
+     * @return {@link FetchType} of relation or null if field is not relation.
+     *
+     * @since 2.1.4
+     */
+    public FetchType getFetch() {
+        return fetch;
+    }
+
+    /**
+     * Get mapped by value of the relation.
+     *
+     * @return String mapped by value or null if not provided.
+     *
+     * @since 2.1.4
+     */
+    public String getMappedBy() {
+        return mappedBy;
+    }
+
+    /**
+     * Get storage of date field.
+     *
+     * @return {@link DateStorage} of the field or null if field is not date.
+     *
+     * @since 2.1.4
+     */
+    public DateStorage getDateStorage() {
+        return dateStorage;
+    }
+
+    /**
+     * Check whether field is the id field of the entity.
+     *
+     * @return boolean true if field is annotated with {@link Id}; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    public boolean isId() {
+        return id;
+    }
+
+    /**
+     * Check whether field's type is collection.
+     *
+     * @return boolean true if field is collection; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    public boolean isCollection() {
+        return java.util.Collection.class.isAssignableFrom(field.getType());
+    }
+
+    /**
+     * Check whether field's type is an entity.
+     *
+     * @return boolean true if type of the field is annotated with {@link Entity}; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    public boolean isEntity() {
+        return type.isAnnotationPresent(Entity.class);
+    }
+
+    /**
+     * Check whether field has eager fetch relation.
+     *
+     * @return boolean true if field has relation with {@link FetchType#EAGER}; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    public boolean isEager() {
+        return fetch == FetchType.EAGER;
+    }
+
+    /**
+     * Read value of the column of this field from cursor's current row. For foreign key joins
+     * the id of referenced entity is returned.
+     *
+     * @param cursor {@link Cursor} to read from.
+     * @param index Int index of the column in cursor.
+     * @return Value of the column or null if column is null.
+     *
+     * @since 2.1.4
+     */
+    public Object read(Cursor cursor, int index) {
+        return reader.read(cursor, index);
+    }
+
+    /**
+     * Read value of the column of this field from cursor's current row directly to the field of
+     * given entity.
+     *
+     * @param cursor {@link Cursor} to read from.
+     * @param index Int index of the column in cursor.
+     * @param entity Object entity to set the value to.
+     * @throws ConversionException if value cannot be set to the field.
+     *
+     * @since 2.1.4
+     */
+    public void readTo(Cursor cursor, int index, Object entity) {
+        try {
+            reader.readTo(cursor, index, field, entity);
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            throw new ConversionException("Failed to read column: " + columnName + " to field: " + field, e);
+        }
+    }
+
+    /**
+     * Get value of this field from given entity.
+     *
+     * @param entity Object entity to get the value from.
+     * @return Value of the field or null if access fails.
+     *
+     * @since 2.1.4
+     */
+    public <T> T getValue(Object entity) {
+        return ReflectionUtils.getFieldValue(entity, field);
+    }
+
+    /**
+     * Set value of this field to given entity.
+     *
+     * @param entity Object entity to set the value to.
+     * @param value Object value to set.
+     *
+     * @since 2.1.4
+     */
+    public void setValue(Object entity, Object value) {
+        ReflectionUtils.setFieldValue(field, entity, value);
+    }
+
+    @Override
+    public String toString() {
+        return field.getDeclaringClass().getName().concat(".").concat(field.getName());
+    }
+}
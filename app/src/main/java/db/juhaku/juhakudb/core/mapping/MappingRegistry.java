@@ -0,0 +1,121 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.mapping;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.Entity;
+
+import db.juhaku.juhakudb.core.schema.DateStorage;
+import db.juhaku.juhakudb.exception.MappingException;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Mapping registry holds precompiled {@link EntityMapping}s of all entities of the database.
+ * Registry is populated at startup of database manager. Mappings for entities not registered at
+ * startup are compiled on demand at first use.</p>
+ *
+ * <p>Registry is thread safe.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public class MappingRegistry {
+
+    private final ConcurrentHashMap<Class<?>, EntityMapping> mappings = new ConcurrentHashMap<>();
+    private final DateStorage dateStorage;
+
+    /**
+     * Initialize new mapping registry with {@link DateStorage#TEXT} as default date storage.
+     *
+     * @since 2.1.4
+     */
+    public MappingRegistry() {
+        this(DateStorage.TEXT);
+    }
+
+    /**
+     * Initialize new mapping registry with given default date storage.
+     *
+     * @param dateStorage {@link DateStorage} that is used for date fields not overriding the storage.
+     *
+     * @since 2.1.4
+     */
+    public MappingRegistry(DateStorage dateStorage) {
+        this.dateStorage = dateStorage;
+    }
+
+    /**
+     * Register given entity classes to registry. Mapping is compiled for each entity class.
+     *
+     * @param entities Array of entity classes.
+     * @throws MappingException if any of the entity classes cannot be mapped.
+     *
+     * @since 2.1.4
+     */
+    public void register(Class<?>... entities) {
+        for (Class<?> entity : entities) {
+            getMapping(entity);
+        }
+    }
+
+    /**
+     * Get mapping for given entity class. If mapping is not yet compiled it will be compiled and
+     * registered for later use.
+     *
+     * @param model {@link Class} of entity annotated with {@link Entity}.
+     * @return {@link EntityMapping} for the entity class.
+     * @throws MappingException if entity class cannot be mapped.
+     *
+     * @since 2.1.4
+     */
+    public EntityMapping getMapping(Class<?> model) {
+        EntityMapping mapping = mappings.get(model);
+
+        if (mapping == null) {
+            mapping = new EntityMapping(model, dateStorage);
+            EntityMapping existing = mappings.putIfAbsent(model, mapping);
+
+            if (existing != null) {
+                mapping = existing;
+            }
+        }
+
+        return mapping;
+    }
+
+    /**
+     * Check whether given class is entity that can be mapped by this registry.
+     *
+     * @param type {@link Class} to check.
+     * @return boolean true if class is annotated with {@link Entity}; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    public boolean isEntity(Class<?> type) {
+        return type != null && type.isAnnotationPresent(Entity.class);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.mapping;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Relation kind of a mapped entity field. Relation defines whether field is a plain column,
+ * a foreign key column referring to another table or a primary key join where the other table
+ * refers to the table of the field's owning entity.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public enum Relation {
+
+    /**
+     * Field is a plain column without relation to other tables.
+     */
+    NONE,
+
+    /**
+     * Field is annotated with {@link javax.persistence.ManyToOne}.
+     */
+    MANY_TO_ONE,
+
+    /**
+     * Field is annotated with {@link javax.persistence.OneToOne} without mapped by value. The
+     * table of the field's owning entity has the foreign key column.
+     */
+    ONE_TO_ONE,
+
+    /**
+     * Field is annotated with {@link javax.persistence.OneToOne} with mapped by value. The referenced
+     * table has the foreign key column.
+     */
+    ONE_TO_ONE_MAPPED_BY,
+
+    /**
+     * Field is annotated with {@link javax.persistence.OneToMany}.
+     */
+    ONE_TO_MANY,
+
+    /**
+     * Field is annotated with {@link javax.persistence.ManyToMany}.
+     */
+    MANY_TO_MANY;
+
+    /**
+     * Check whether relation has foreign key column in the table of the field's owning entity.
+     *
+     * @return boolean true if relation is foreign key join; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    public boolean isForeignKeyJoin() {
+        return this == MANY_TO_ONE || this == ONE_TO_ONE;
+    }
+
+    /**
+     * Check whether relation is joined from primary key of the field's owning entity. These relations
+     * do not have column in the table of the owning entity.
+     *
+     * @return boolean true if relation is primary key join; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    public boolean isPrimaryKeyJoin() {
+        return this == ONE_TO_ONE_MAPPED_BY || this == ONE_TO_MANY || this == MANY_TO_MANY;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.schema;
+
+import java.lang.reflect.Field;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import db.juhaku.juhakudb.annotation.DateColumn;
+
+/**
+ * Created by juha on 17/10/26.
+ *<p>Storage format of {@link Date} fields in database.</p>
+ *
+ * <p>Default storage can be configured via {@link db.juhaku.juhakudb.core.DatabaseConfiguration}
+ * and it can be overridden per field with {@link DateColumn} annotation.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public enum DateStorage {
+
+    /**
+     * Dates are stored as TEXT in format of yyyy-MM-dd HH:mm:ss.SSS in local time. This is the
+     * default storage.
+     */
+    TEXT("TEXT"),
+
+    /**
+     * Dates are stored as INTEGER milliseconds since epoch. Range queries to dates are integer
+     * comparisons and they can use indexes.
+     */
+    EPOCH_MILLIS("INTEGER");
+
+    /**
+     * Format of dates stored as TEXT.
+     */
+    public static final String TEXT_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+
+    private static final ThreadLocal<SimpleDateFormat> FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(TEXT_FORMAT);
+        }
+    };
+
+    private String columnType;
+
+    DateStorage(String columnType) {
+        this.columnType = columnType;
+    }
+
+    /**
+     * Get database column type of this storage.
+     *
+     * @return String column type.
+     *
+     * @since 2.1.4
+     */
+    public String getColumnType() {
+        return columnType;
+    }
+
+    /**
+     * Convert given date to value that is stored to database with this storage.
+     *
+     * @param date {@link Date} to convert.
+     * @return String formatted date for {@link #TEXT} or Long epoch millis for {@link #EPOCH_MILLIS}.
+     * Null if date is null.
+     *
+     * @since 2.1.4
+     */
+    public Object toDatabaseValue(Date date) {
+        if (date == null) {
+            return null;
+        }
+
+        return this == EPOCH_MILLIS ? (Object) date.getTime() : FORMAT.get().format(date);
+    }
+
+    /**
+     * Parse date stored as {@link #TEXT}.
+     *
+     * @param value String date in format of {@link #TEXT_FORMAT}.
+     * @return Parsed {@link Date}.
+     * @throws ParseException if value is not in correct format.
+     *
+     * @since 2.1.4
+     */
+    public static Date parse(String value) throws ParseException {
+        return FORMAT.get().parse(value);
+    }
+
+    /**
+     * Resolve storage of given date field. Storage is taken from {@link DateColumn} annotation
+     * if present otherwise given default storage is used.
+     *
+     * @param field {@link Field} of date type.
+     * @param defaultStorage {@link DateStorage} to use if field does not override it.
+     * @return Resolved {@link DateStorage}.
+     *
+     * @since 2.1.4
+     */
+    public static DateStorage resolve(Field field, DateStorage defaultStorage) {
+        if (field.isAnnotationPresent(DateColumn.class)) {
+            return field.getAnnotation(DateColumn.class).value();
+        }
+
+        return defaultStorage == null ? TEXT : defaultStorage;
+    }
+}
@@ -41,9 +41,16 @@ import db.juhaku.juhakudb.util.ReflectionUtils;
  */
 public class Reference implements Serializable {
 
+    /*
+     * Pinned to the value computed for 1.x releases. References are persisted with schema and
+     * changing the value prevents restoring schemas of earlier versions.
+     */
+    private static final long serialVersionUID = 64451840807611772L;
+
     private String columnName;
     private String referenceTableName;
     private String referenceColumnName;
+    private transient ReferenceAction onDelete;
 
     /**
      * Initialize new reference by given parameters.
@@ -58,6 +65,21 @@ public class Reference implements Serializable {
         this.referenceColumnName = referenceColumnName;
     }
 
+    /**
+     * Initialize new reference by given parameters with given action on delete.
+     *
+     * @param columnName String value of current tables column name that refers to {@link #getReferenceColumnName()}
+     * @param referenceTableName String value of referenced table name.
+     * @param referenceColumnName String value ot referenced column name that is referred by {@link #getColumnName()}.
+     * @param onDelete {@link ReferenceAction} taken by database when referenced row is deleted.
+     *
+     * @since 2.1.4
+     */
+    public Reference(String columnName, String referenceTableName, String referenceColumnName, ReferenceAction onDelete) {
+        this(columnName, referenceTableName, referenceColumnName);
+        this.onDelete = onDelete;
+    }
+
     /**
      * Initialize new reference from given column name to given field. Field is used to resolve
      * referenced table name and referenced column name.
@@ -76,6 +98,21 @@ public class Reference implements Serializable {
         this.referenceColumnName = NameResolver.resolveIdName(resolveClass);
     }
 
+    /**
+     * Initialize new reference from given column name to given field with given action on delete.
+     *
+     * @param columnName String current tables column name to refer from.
+     * @param field Reflection objects field that is used to resolve referenced table and column.
+     * @param onDelete {@link ReferenceAction} taken by database when referenced row is deleted.
+     * @throws NameResolveException if exception occurs on resolving table and column name.
+     *
+     * @since 2.1.4
+     */
+    public Reference(String columnName, Field field, ReferenceAction onDelete) throws NameResolveException {
+        this(columnName, field);
+        this.onDelete = onDelete;
+    }
+
     /**
      * Get current tables column name that refers to another column ({@link #getReferenceColumnName()}).
      *
@@ -142,6 +179,18 @@ public class Reference implements Serializable {
         this.referenceColumnName = referenceColumnName;
     }
 
+    /**
+     * Get action taken by database for referencing rows when referenced row is deleted. Action is
+     * only available for schema created in current runtime and it is not persisted with the schema.
+     *
+     * @return {@link ReferenceAction} of the reference. Never null.
+     *
+     * @since 2.1.4
+     */
+    public ReferenceAction getOnDelete() {
+        return onDelete == null ? ReferenceAction.NO_ACTION : onDelete;
+    }
+
     /**
      * Transform reference to DDL SQL.
      *
@@ -150,8 +199,13 @@ public class Reference implements Serializable {
      * @since 1.0.2
      */
     String toDDL() {
-        return new StringBuilder("FOREIGN KEY(").append(columnName)
+        StringBuilder ddl = new StringBuilder("FOREIGN KEY(").append(columnName)
                 .append(") REFERENCES ").append(referenceTableName).append("(")
-                .append(referenceColumnName).append(")").toString();
+                .append(referenceColumnName).append(")");
+        if (getOnDelete().isNative()) {
+            ddl.append(" ON DELETE ").append(getOnDelete().getSql());
+        }
+
+        return ddl.toString();
     }
 }
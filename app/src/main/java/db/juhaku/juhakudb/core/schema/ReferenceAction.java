@@ -0,0 +1,124 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.core.schema;
+
+import java.lang.reflect.Field;
+
+import db.juhaku.juhakudb.annotation.OnDelete;
+
+/**
+ * Created by juha on 17/10/26.
+ *<p>Action taken by database for referencing rows when referenced row is deleted.</p>
+ *
+ * <p>Default action can be configured via {@link db.juhaku.juhakudb.core.DatabaseConfiguration}
+ * and it can be overridden per relation with {@link OnDelete} annotation.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public enum ReferenceAction {
+
+    /**
+     * Database takes no action. Referencing rows are deleted by the library before deleting the
+     * referenced row. This is the default action.
+     */
+    NO_ACTION(null),
+
+    /**
+     * Referencing rows are deleted by database when referenced row is deleted.
+     */
+    CASCADE("CASCADE"),
+
+    /**
+     * Foreign key columns of referencing rows are set to null by database when referenced row is
+     * deleted.
+     */
+    SET_NULL("SET NULL");
+
+    private String sql;
+
+    ReferenceAction(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Get SQL of this action used in foreign key clause.
+     *
+     * @return String SQL of action or null if database takes no action.
+     *
+     * @since 2.1.4
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Check whether deleting referencing rows is handled by database with this action.
+     *
+     * @return boolean true if database handles deleting; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    public boolean isNative() {
+        return this != NO_ACTION;
+    }
+
+    /**
+     * Get action by its SQL as reported by database e.g. in <code>PRAGMA foreign_key_list</code>.
+     * Actions not supported by the library are resolved as {@link #NO_ACTION}.
+     *
+     * @param sql String SQL of action.
+     * @return Matching {@link ReferenceAction}.
+     *
+     * @since 2.1.4
+     */
+    public static ReferenceAction fromSql(String sql) {
+        for (ReferenceAction action : values()) {
+            if (action.sql != null && action.sql.equalsIgnoreCase(sql)) {
+                return action;
+            }
+        }
+
+        return NO_ACTION;
+    }
+
+    /**
+     * Resolve action of given relation field. Action is taken from {@link OnDelete} annotation
+     * if present otherwise given default action is used.
+     *
+     * @param field {@link Field} of relation.
+     * @param defaultAction {@link ReferenceAction} to use if field does not override it.
+     * @return Resolved {@link ReferenceAction}.
+     *
+     * @since 2.1.4
+     */
+    public static ReferenceAction resolve(Field field, ReferenceAction defaultAction) {
+        if (field != null && field.isAnnotationPresent(OnDelete.class)) {
+            return field.getAnnotation(OnDelete.class).value();
+        }
+
+        return defaultAction == null ? NO_ACTION : defaultAction;
+    }
+}
@@ -26,7 +26,10 @@ package db.juhaku.juhakudb.core.schema;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -35,6 +38,7 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 
 import db.juhaku.juhakudb.core.DatabaseConfiguration;
+import db.juhaku.juhakudb.core.NameResolver;
 import db.juhaku.juhakudb.exception.SchemaInitializationException;
 
 /**
@@ -47,6 +51,12 @@ import db.juhaku.juhakudb.exception.SchemaInitializationException;
  */
 public class Schema implements Serializable {
 
+    /*
+     * Pinned to the value computed for 1.x releases. Schema is persisted to restore it on upgrade
+     * and changing the value prevents restoring schemas of earlier versions.
+     */
+    private static final long serialVersionUID = -8325135539846240154L;
+
     /**
      * Enum for different DDL types.
      */
@@ -71,6 +81,121 @@ public class Schema implements Serializable {
                     .append(" ADD COLUMN ").append(column.getName()).append(" ")
                     .append(column.getType()).append(" ").append(column.getExtensions()).toString();
         }
+
+        /**
+         * Check whether given table needs to be rebuilt in order to migrate it from old table.
+         * Table needs to be rebuilt when storage of any of its date columns has been changed since
+         * SQLite does not support altering column types.
+         *
+         * @param table Schema table of current schema.
+         * @param oldTable Schema table of previous schema.
+         * @return boolean true if table must be rebuilt; false otherwise.
+         *
+         * @since 2.1.4
+         */
+        public static boolean requiresRebuild(Schema table, Schema oldTable) {
+            for (Schema column : table.getElements().values()) {
+                Schema oldColumn = oldTable.getElement(column.getName());
+                if (column.getDateStorage() != null && oldColumn != null
+                        && !column.getType().equals(oldColumn.getType())) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Create table element describing columns of existing database table. Column types are
+         * the declared types of the table e.g. read with <code>PRAGMA table_info</code>. Returned
+         * table can be used as old table to check whether table needs to be rebuilt.
+         *
+         * @param name String name of the table.
+         * @param columnTypes Map of column names and their declared types.
+         * @return Schema table containing given columns.
+         *
+         * @since 2.1.4
+         */
+        public static Schema existingTable(String name, Map<String, String> columnTypes) {
+            Schema table = new Schema();
+            table.setName(name);
+            for (Entry<String, String> entry : columnTypes.entrySet()) {
+                Schema column = new Schema();
+                column.setName(entry.getKey());
+                column.setType(entry.getValue());
+                table.addColumn(column);
+            }
+
+            return table;
+        }
+
+        /**
+         * Generates DDL statements to rebuild given table from old table. Table is created with
+         * temporary name and all rows are copied to it converting date columns to new storage.
+         * Then old table is dropped and new table is renamed to its place. Constraints of the table
+         * need to be created after rebuild.
+         *
+         * <p>Statements must be executed within a single transaction with foreign keys disabled.</p>
+         *
+         * @param table Schema table of current schema.
+         * @param oldTable Schema table of previous schema.
+         * @return List of DDL statements in execution order.
+         *
+         * @since 2.1.4
+         */
+        public static List<String> rebuildTable(Schema table, Schema oldTable) {
+            String tempName = table.getName().concat("_rebuild");
+
+            StringBuilder create = new StringBuilder();
+            table.createDDL(create, tempName);
+
+            StringBuilder columns = new StringBuilder();
+            StringBuilder values = new StringBuilder();
+            for (Schema column : table.getElements().values()) {
+                Schema oldColumn = oldTable.getElement(column.getName());
+                if (oldColumn == null) {
+                    continue;
+                }
+                if (columns.length() > 0) {
+                    columns.append(", ");
+                    values.append(", ");
+                }
+                columns.append(column.getName());
+                values.append(convertColumn(column, oldColumn));
+            }
+
+            List<String> statements = new ArrayList<>();
+            statements.add(create.toString());
+            statements.add(new StringBuilder("INSERT INTO ").append(tempName).append(" (").append(columns)
+                    .append(") SELECT ").append(values).append(" FROM ").append(table.getName()).toString());
+            statements.add(table.toDDL(DROP));
+            statements.add(new StringBuilder("ALTER TABLE ").append(tempName).append(" RENAME TO ")
+                    .append(table.getName()).toString());
+
+            return statements;
+        }
+
+        /**
+         * Get select expression that converts old column value to storage of new column.
+         *
+         * @hide
+         */
+        private static String convertColumn(Schema column, Schema oldColumn) {
+            String name = column.getName();
+            if (column.getDateStorage() == null || column.getType().equals(oldColumn.getType())) {
+                return name;
+            }
+
+            if (column.getDateStorage() == DateStorage.EPOCH_MILLIS) {
+                return new StringBuilder("CASE WHEN ").append(name).append(" IS NULL THEN NULL ELSE CAST(strftime('%s', ")
+                        .append(name).append(", 'utc') AS INTEGER) * 1000 + CAST(substr(").append(name)
+                        .append(", 21, 3) AS INTEGER) END").toString();
+            }
+
+            return new StringBuilder("CASE WHEN ").append(name).append(" IS NULL THEN NULL ELSE strftime('%Y-%m-%d %H:%M:%S', ")
+                    .append(name).append(" / 1000, 'unixepoch', 'localtime') || '.' || substr('00' || (")
+                    .append(name).append(" % 1000), -3, 3) END").toString();
+        }
     }
 
     private static SchemaFactory factory;
@@ -84,6 +209,9 @@ public class Schema implements Serializable {
     private List<Reference> references;
     private Integer order;
     private List<Constraint> constraints;
+    private transient DateStorage dateStorage;
+    private transient ReferenceAction onDelete;
+    private transient volatile Index index;
 
     static {
         factory = new SchemaFactory();
@@ -102,7 +230,11 @@ public class Schema implements Serializable {
      */
     public static Schema newInstance(DatabaseConfiguration configuration, Class<?>[] entities)
             throws SchemaInitializationException {
-        return factory.getSchema(configuration.getName(), entities);
+        Schema schema = factory.getSchema(configuration.getName(), entities, configuration.getDateStorage(),
+                configuration.getOnDelete());
+        schema.getIndex();
+
+        return schema;
     }
 
     /**
@@ -149,6 +281,52 @@ public class Schema implements Serializable {
         this.type = type;
     }
 
+    /**
+     * Get storage of date column. For root of schema this is the default storage of dates. Storage
+     * is only available for schema created in current runtime and it is not persisted with the schema.
+     *
+     * @return {@link DateStorage} of date column or null if column is not date column.
+     *
+     * @since 2.1.4
+     */
+    public DateStorage getDateStorage() {
+        return dateStorage;
+    }
+
+    /**
+     * Set storage of date column.
+     *
+     * @param dateStorage {@link DateStorage} of date column.
+     *
+     * @since 2.1.4
+     */
+    void setDateStorage(DateStorage dateStorage) {
+        this.dateStorage = dateStorage;
+    }
+
+    /**
+     * Get default action of foreign keys on delete. This is only available for root of schema
+     * created in current runtime and it is not persisted with the schema.
+     *
+     * @return {@link ReferenceAction} default action or null if element is not root of schema.
+     *
+     * @since 2.1.4
+     */
+    public ReferenceAction getOnDelete() {
+        return onDelete;
+    }
+
+    /**
+     * Set default action of foreign keys on delete.
+     *
+     * @param onDelete {@link ReferenceAction} default action.
+     *
+     * @since 2.1.4
+     */
+    void setOnDelete(ReferenceAction onDelete) {
+        this.onDelete = onDelete;
+    }
+
     /**
      * Get extensions of database column. See {@link #setExtensions(String)}.
      *
@@ -323,6 +501,52 @@ public class Schema implements Serializable {
         return getElements().get(element);
     }
 
+    /**
+     * Get tables referencing given table. Tables are returned in same order as in
+     * {@link #toSet(Schema)}. This can only be called for root of schema.
+     *
+     * @param tableName String name of referenced table.
+     * @return Immutable list of tables having at least one reference to given table. If there are
+     * no referencing tables empty list is returned.
+     *
+     * @since 2.1.4
+     */
+    public List<Schema> getReferencingTables(String tableName) {
+        List<Schema> tables = getIndex().referencingTables.get(tableName);
+
+        return tables == null ? Collections.<Schema>emptyList() : tables;
+    }
+
+    /**
+     * Get middle table of many to many relation between given tables. Order of the tables does not
+     * matter. This can only be called for root of schema.
+     *
+     * @param tableName String name of table of the relation.
+     * @param otherTableName String name of other table of the relation.
+     * @return Found middle table or null if there is no middle table between the tables.
+     *
+     * @since 2.1.4
+     */
+    public Schema getMiddleTable(String tableName, String otherTableName) {
+        return getIndex().middleTables.get(tableName.concat("_").concat(otherTableName));
+    }
+
+    /**
+     * Get indexes of root of schema. Indexes are built on first call and they are not persisted
+     * with the schema.
+     *
+     * @hide
+     */
+    private Index getIndex() {
+        Index current = index;
+        if (current == null) {
+            current = new Index(this);
+            index = current;
+        }
+
+        return current;
+    }
+
     /**
      * Transforms current Schema element to DDL SQL according given
      * {@link Schema.DDL} enum.
@@ -337,7 +561,7 @@ public class Schema implements Serializable {
         StringBuilder ddlBuilder = new StringBuilder();
         switch (ddl) {
             case CREATE:
-                createDDL(ddlBuilder);
+                createDDL(ddlBuilder, getName());
                 break;
             case DROP:
                 dropDDL(ddlBuilder);
@@ -346,8 +570,8 @@ public class Schema implements Serializable {
         return ddlBuilder.toString();
     }
 
-    private void createDDL(StringBuilder ddlBuilder) {
-        ddlBuilder.append("CREATE TABLE IF NOT EXISTS " + this.getName() + " (");
+    private void createDDL(StringBuilder ddlBuilder, String tableName) {
+        ddlBuilder.append("CREATE TABLE IF NOT EXISTS " + tableName + " (");
         for (Entry<String, Schema> columnEntry : this.getElements().entrySet()) {
             Schema column = columnEntry.getValue();
             ddlBuilder.append(column.getName()).append(" ").append(column.getType());
@@ -385,6 +609,50 @@ public class Schema implements Serializable {
         }
     }
 
+    /**
+     * Prebuilt lookup indexes of tables of root schema. Indexes are immutable once built.
+     */
+    private static class Index {
+
+        private final Map<String, List<Schema>> referencingTables;
+        private final Map<String, Schema> middleTables;
+
+        Index(Schema root) {
+            Map<String, List<Schema>> referencingTables = new HashMap<>();
+            Map<String, Schema> middleTables = new HashMap<>();
+
+            for (Schema table : toSet(root)) {
+                Set<String> referencedTables = new LinkedHashSet<>();
+                for (Reference reference : table.getReferences()) {
+                    referencedTables.add(reference.getReferenceTableName());
+                }
+
+                for (String referencedTable : referencedTables) {
+                    List<Schema> tables = referencingTables.get(referencedTable);
+                    if (tables == null) {
+                        tables = new ArrayList<>();
+                        referencingTables.put(referencedTable, tables);
+                    }
+                    tables.add(table);
+                }
+
+                // Middle tables are the only tables without primary key
+                if (table.getElement(NameResolver.ID_FIELD_SUFFIX) == null && table.getReferences().size() == 2) {
+                    String first = table.getReferences().get(0).getReferenceTableName();
+                    String second = table.getReferences().get(1).getReferenceTableName();
+                    middleTables.put(first.concat("_").concat(second), table);
+                    middleTables.put(second.concat("_").concat(first), table);
+                }
+            }
+
+            for (Entry<String, List<Schema>> entry : referencingTables.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            this.referencingTables = Collections.unmodifiableMap(referencingTables);
+            this.middleTables = Collections.unmodifiableMap(middleTables);
+        }
+    }
+
     /**
      * Converts root Schema to set containing only ordered tables. This is convenient for
      * database creation. <br><br>If provided schema is not root empty set will be returned.
@@ -26,8 +26,10 @@ package db.juhaku.juhakudb.core.schema;
 import android.util.Log;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Date;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.Entity;
@@ -73,16 +75,54 @@ public class SchemaFactory {
      * @since 1.0.2
      */
     public Schema getSchema(String dbName, Class<?>[] tables) throws SchemaInitializationException {
+        return getSchema(dbName, tables, DateStorage.TEXT);
+    }
+
+    /**
+     * Generates new instance of database schema {@link Schema} by given database name and class array
+     * as tables of the database. Date columns are created with given default date storage unless
+     * overridden per field.
+     *
+     * @param dbName String value of database name.
+     * @param tables Class[] of classes as tables in database.
+     * @param dateStorage {@link DateStorage} default storage of date columns.
+     * @return Returns new instance of database {@link Schema} tree.
+     * @throws SchemaInitializationException if any initialization exception occurs.
+     *
+     * @since 2.1.4
+     */
+    public Schema getSchema(String dbName, Class<?>[] tables, DateStorage dateStorage) throws SchemaInitializationException {
+        return getSchema(dbName, tables, dateStorage, ReferenceAction.NO_ACTION);
+    }
+
+    /**
+     * Generates new instance of database schema {@link Schema} by given database name and class array
+     * as tables of the database. Date columns are created with given default date storage and foreign
+     * keys with given default action on delete unless overridden per field.
+     *
+     * @param dbName String value of database name.
+     * @param tables Class[] of classes as tables in database.
+     * @param dateStorage {@link DateStorage} default storage of date columns.
+     * @param onDelete {@link ReferenceAction} default action of foreign keys on delete.
+     * @return Returns new instance of database {@link Schema} tree.
+     * @throws SchemaInitializationException if any initialization exception occurs.
+     *
+     * @since 2.1.4
+     */
+    public Schema getSchema(String dbName, Class<?>[] tables, DateStorage dateStorage, ReferenceAction onDelete)
+            throws SchemaInitializationException {
         Schema schema = new Schema();
         schema.setName(dbName);
+        schema.setDateStorage(dateStorage);
+        schema.setOnDelete(onDelete);
         for (Class<?> table : tables) {
-            schema.addTable(createTable(table, schema, null));
+            schema.addTable(createTable(table, schema, null, dateStorage));
         }
 
         return schema;
     }
 
-    private Schema createTable(Class<?> table, Schema schema, String mappedBy) throws SchemaInitializationException {
+    private Schema createTable(Class<?> table, Schema schema, String mappedBy, DateStorage dateStorage) throws SchemaInitializationException {
         String tableName = resolveName(table);
 
         // check table name before it is created.
@@ -95,32 +135,35 @@ public class SchemaFactory {
             dbTable.setOrder(keys.incrementAndGet());
             for (Field column : table.getDeclaredFields()) {
                 column.setAccessible(true);
-                if (column.isAnnotationPresent(Transient.class)) {
+                // Static and synthetic fields are not part of the entity's state.
+                if (column.isAnnotationPresent(Transient.class) || Modifier.isStatic(column.getModifiers())
+                        || column.isSynthetic()) {
                     continue;
                 }
                 if (column.isAnnotationPresent(ManyToMany.class)) {
                     createJoinTable(table, tableName, column, schema);
                     continue;
                 } else if (column.isAnnotationPresent(ManyToOne.class)) {
-                    Schema col = createColumn(column);
+                    Schema col = createColumn(column, dateStorage);
                     dbTable.addColumn(col);
                     try {
-                        dbTable.getReferences().add(new Reference(col.getName(), column));
+                        dbTable.getReferences().add(new Reference(col.getName(), column,
+                                ReferenceAction.resolve(column, schema.getOnDelete())));
                     } catch (NameResolveException e) {
                         Log.e(getClass().getName(), "Failed to create schema", e);
                         throw new SchemaInitializationException("Schema initialization failed", e);
                     }
                     continue;
                 } else if (column.isAnnotationPresent(OneToMany.class)) {
-                    schema.addTable(createTable(ReflectionUtils.getFieldType(column), schema, null));
+                    schema.addTable(createTable(ReflectionUtils.getFieldType(column), schema, null, dateStorage));
                     continue;
                 } else if (column.isAnnotationPresent(OneToOne.class)) {
                     if (!StringUtils.isBlank(column.getAnnotation(OneToOne.class).mappedBy())) {
-                        schema.addTable(createTable(column.getType(), schema, column.getAnnotation(OneToOne.class).mappedBy()));
+                        schema.addTable(createTable(column.getType(), schema, column.getAnnotation(OneToOne.class).mappedBy(), dateStorage));
                     }
                     continue;
                 } else {
-                    dbTable.addColumn(createColumn(column));
+                    dbTable.addColumn(createColumn(column, dateStorage));
                 }
             }
 
@@ -146,7 +189,8 @@ public class SchemaFactory {
             dbTable.addColumn(col);
 
             try {
-                dbTable.getReferences().add(new Reference(referenceColumnName, referencedField));
+                dbTable.getReferences().add(new Reference(referenceColumnName, referencedField,
+                        ReferenceAction.resolve(referencedField, schema.getOnDelete())));
             } catch (NameResolveException e) {
                 Log.e(getClass().getName(), "Failed to create schema", e);
                 throw new SchemaInitializationException("Schema initialization failed", e);
@@ -166,7 +210,7 @@ public class SchemaFactory {
         }
     }
 
-    private Schema createColumn(Field column) throws SchemaInitializationException {
+    private Schema createColumn(Field column, DateStorage dateStorage) throws SchemaInitializationException {
         Schema dbColumn = new Schema();
         String columnName = resolveName(column);
 
@@ -174,7 +218,14 @@ public class SchemaFactory {
         checkReservedWords(columnName);
 
         dbColumn.setName(columnName);
-        dbColumn.setType(resolveType(column));
+        if (Date.class.isAssignableFrom(column.getType())) {
+            DateStorage storage = DateStorage.resolve(column, dateStorage);
+
+            dbColumn.setType(storage.getColumnType());
+            dbColumn.setDateStorage(storage);
+        } else {
+            dbColumn.setType(resolveType(column));
+        }
         if (column.isAnnotationPresent(Id.class)) {
             dbColumn.setExtensions("PRIMARY KEY");
         }
@@ -212,8 +263,13 @@ public class SchemaFactory {
 
         String secondJoinIdTable = resolveIdColumn(ReflectionUtils.getGenericFieldType(column));
 
-        joinTable.getReferences().add(new Reference(firstJoinColName, tableName, firstJoinIdTable));
-        joinTable.getReferences().add(new Reference(referenceColName, referenceTableName, secondJoinIdTable));
+        ReferenceAction onDelete = ReferenceAction.resolve(column, schema.getOnDelete());
+        if (onDelete == ReferenceAction.SET_NULL) {
+            // Link row with null key links nothing, remove it along with either side instead.
+            onDelete = ReferenceAction.CASCADE;
+        }
+        joinTable.getReferences().add(new Reference(firstJoinColName, tableName, firstJoinIdTable, onDelete));
+        joinTable.getReferences().add(new Reference(referenceColName, referenceTableName, secondJoinIdTable, onDelete));
 
         schema.addTable(joinTable);
     }
@@ -0,0 +1,191 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import db.juhaku.juhakudb.filter.Predicate.Column;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Aggregate describes aggregate functions and grouping of aggregate query. Fields are given
+ * like fields of predicates and they can be prefixed with alias of a join or "this". E.g.
+ * {@code new Aggregate().groupBy("g.name").count().max("this.id")}.</p>
+ *
+ * <p>Each row of aggregate query contains values of group by fields followed by values of
+ * aggregate functions in order they were added.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public class Aggregate {
+
+    private List<Column> groupBy = new ArrayList<>();
+    private List<Function> functions = new ArrayList<>();
+    private List<Column> columns = new ArrayList<>();
+
+    /**
+     * Add count of rows. Equal to COUNT(*).
+     *
+     * @return This aggregate.
+     */
+    public Aggregate count() {
+        return add(Function.COUNT, null);
+    }
+
+    /**
+     * Add count of non null values of given field.
+     *
+     * @param field String field to count.
+     * @return This aggregate.
+     */
+    public Aggregate count(String field) {
+        return add(Function.COUNT, field);
+    }
+
+    /**
+     * Add sum of values of given field.
+     *
+     * @param field String field to sum.
+     * @return This aggregate.
+     */
+    public Aggregate sum(String field) {
+        return add(Function.SUM, field);
+    }
+
+    /**
+     * Add minimum value of given field.
+     *
+     * @param field String field to get minimum of.
+     * @return This aggregate.
+     */
+    public Aggregate min(String field) {
+        return add(Function.MIN, field);
+    }
+
+    /**
+     * Add maximum value of given field.
+     *
+     * @param field String field to get maximum of.
+     * @return This aggregate.
+     */
+    public Aggregate max(String field) {
+        return add(Function.MAX, field);
+    }
+
+    /**
+     * Add average of values of given field.
+     *
+     * @param field String field to get average of.
+     * @return This aggregate.
+     */
+    public Aggregate avg(String field) {
+        return add(Function.AVG, field);
+    }
+
+    /**
+     * Group rows by given fields. Values of the fields are the first values of result rows.
+     *
+     * @param fields String array of fields to group by.
+     * @return This aggregate.
+     */
+    public Aggregate groupBy(String... fields) {
+        for (String field : fields) {
+            groupBy.add(new Column(field));
+        }
+
+        return this;
+    }
+
+    /**
+     * @hide
+     */
+    private Aggregate add(Function function, String field) {
+        functions.add(function);
+        columns.add(field == null ? null : new Column(field));
+
+        return this;
+    }
+
+    /**
+     * Check whether aggregate has group by fields.
+     *
+     * @return boolean true if rows are grouped; false otherwise.
+     */
+    boolean isGrouped() {
+        return !groupBy.isEmpty();
+    }
+
+    /**
+     * Render select list of this aggregate without "SELECT" to given sql.
+     *
+     * @param sql {@link StringBuilder} to render to.
+     * @param alias String alias of query root or null.
+     */
+    void renderSelect(StringBuilder sql, String alias) {
+        if (functions.isEmpty()) {
+            throw new IllegalStateException("Aggregate must contain at least one aggregate function");
+        }
+
+        for (Column column : groupBy) {
+            column.render(sql, alias);
+            sql.append(", ");
+        }
+        for (int i = 0; i < functions.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(functions.get(i).name()).append("(");
+            if (columns.get(i) == null) {
+                sql.append("*");
+            } else {
+                columns.get(i).render(sql, alias);
+            }
+            sql.append(")");
+        }
+    }
+
+    /**
+     * Render group by clause of this aggregate to given sql if aggregate is grouped.
+     *
+     * @param sql {@link StringBuilder} to render to.
+     * @param alias String alias of query root or null.
+     */
+    void renderGroupBy(StringBuilder sql, String alias) {
+        for (int i = 0; i < groupBy.size(); i++) {
+            sql.append(i > 0 ? ", " : " GROUP BY ");
+            groupBy.get(i).render(sql, alias);
+        }
+    }
+
+    /**
+     * Aggregate functions of SQLite.
+     */
+    enum Function {
+        COUNT, SUM, MIN, MAX, AVG
+    }
+}
@@ -23,30 +23,28 @@ SOFTWARE.
 */
 package db.juhaku.juhakudb.filter;
 
-import java.lang.reflect.Array;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.StringTokenizer;
 
+import db.juhaku.juhakudb.core.NameResolver;
+import db.juhaku.juhakudb.core.schema.DateStorage;
+import db.juhaku.juhakudb.util.ReservedWords;
 import db.juhaku.juhakudb.util.StringUtils;
 
 /**
  * Created by juha on 16/04/16.
  *
+ * <p>Predicate is a node of where clause of a query. Predicates restricting a field refer to
+ * its column structurally and render it with alias of the query in a single pass. Only predicates
+ * created from custom sql are formatted as text.</p>
+ *
  * @author juha
  */
-public class Predicate {
-
-    private String in;
-    private String eq;
-    private String is;
-    private String between;
-    private String like;
-    private String clause;
-
-    private Object[] args;
+public abstract class Predicate {
 
     /**
      * Describe parameter placeholder for SQL queries. Typically "?".
@@ -55,165 +53,174 @@ public class Predicate {
     static final String PARAM_EQUALS = " = ";
     static final String PARAM_NOT_EQUAL = " != ";
 
+    /**
+     * Prefix referring to root of query.
+     */
+    static final String THIS = "this";
+
+    /**
+     * Column of temporary table holding arguments of IN predicate. See {@link In#useIdTable(String)}.
+     */
+    public static final String ID_TABLE_COLUMN = "value";
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private Object[] args = NO_ARGS;
 
-    private Predicate() {
-        // Not instantiatable.
+    Predicate() {
+        // Only instantiable via factory methods.
     }
 
     private void addArgs(Object... args) {
-        this.args = args;
+        this.args = args == null ? NO_ARGS : args;
     }
 
-    String[] getArgs() {
-        if (args == null) {
-            args = new Object[0];
-        }
-
-        String[] stringArgs = new String[0];
-        for (Object arg : args) {
-            int len = stringArgs.length;
-            String[] newArgs = new String[len + 1];
-            System.arraycopy(stringArgs, 0, newArgs, 0, stringArgs.length);
-            stringArgs = newArgs;
-
-            // Add custom processing for date formats.
-            if (Date.class.isAssignableFrom(arg.getClass())) {
-                stringArgs[len] = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(arg);
+    /**
+     * Get field this predicate restricts. E.g. this.id.
+     *
+     * @return String field of predicate or null if predicate is not made for a field.
+     *
+     * @since 2.1.4
+     */
+    String getField() {
+        return null;
+    }
 
-            } else {
-                stringArgs[len] = arg.toString();
-            }
+    /**
+     * Get arguments of this predicate converted to values that can be bound with their SQLite
+     * types. Booleans are converted to 1 or 0, integral numbers to Long, decimal numbers to
+     * Double and dates according to given storage. Null values and byte arrays are kept as is
+     * and other values are converted to strings.
+     *
+     * @param dateStorage {@link DateStorage} to format date arguments with.
+     * @return Object array of arguments.
+     *
+     * @since 2.1.4
+     */
+    Object[] getValues(DateStorage dateStorage) {
+        Object[] values = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            values[i] = toValue(args[i], dateStorage);
         }
 
-        return stringArgs;
+        return values;
     }
 
     /**
-     * Get generated clause for this predicate. E.g. id = ?.
-     *
-     * @return String value of clause.
+     * @hide
      */
-    String getClause() {
-        if (!StringUtils.isBlank(in)) {
-            return in;
-
-        } else if (!StringUtils.isBlank(eq)) {
-            return eq;
+    private static Object toValue(Object arg, DateStorage dateStorage) {
+        if (arg == null || arg instanceof Long || arg instanceof Double || arg instanceof String
+                || arg instanceof byte[]) {
+            return arg;
 
-        } else if (!StringUtils.isBlank(is)) {
-            return is;
+        } else if (arg instanceof Boolean) {
+            return (Boolean) arg ? 1L : 0L;
 
-        } else if (!StringUtils.isBlank(between)) {
-            return between;
+        } else if (arg instanceof Float) {
+            return ((Float) arg).doubleValue();
 
-        } else if (!StringUtils.isBlank(like)) {
-            return like;
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            return ((Number) arg).longValue();
 
-        } else if (!StringUtils.isBlank(clause)) {
-            return clause;
+        } else if (arg instanceof Date) {
+            return dateStorage.toDatabaseValue((Date) arg);
         }
 
-        return null;
+        return arg.toString();
     }
 
+    /**
+     * Get number of arguments of this predicate.
+     *
+     * @return int number of arguments.
+     *
+     * @since 2.1.4
+     */
+    int getArgCount() {
+        return args.length;
+    }
+
+    /**
+     * Render this predicate to given sql. Columns without prefix and columns prefixed with
+     * {@value #THIS} are rendered with given alias of query root.
+     *
+     * @param sql {@link StringBuilder} to render the predicate to.
+     * @param alias String alias of query root or null if columns are rendered without alias.
+     *
+     * @since 2.1.4
+     */
+    abstract void render(StringBuilder sql, String alias);
+
+    /**
+     * Append structure of this predicate without its arguments to given key. Predicates with
+     * same key render to same sql.
+     *
+     * @param key {@link StringBuilder} to append key to.
+     *
+     * @since 2.1.4
+     */
+    void appendKey(StringBuilder key) {
+        render(key, null);
+    }
+
+    /**
+     * Negate this predicate.
+     *
+     * @since 2.1.4
+     */
+    abstract void negate();
+
     static Predicate in(String field, Object... args) {
-        Predicate predicate = new Predicate();
-        StringBuilder inBuilder = new StringBuilder(field);
-        inBuilder.append(" IN (");
-        for (Object arg : args) {
-            inBuilder.append(PARAM_PLACE_HOLDER);
-            if (arg != args[args.length - 1]) {
-                inBuilder.append(", ");
-            }
-        }
-        inBuilder.append(")");
-        predicate.in = inBuilder.toString();
+        Predicate predicate = new In(field);
         predicate.addArgs(args);
 
         return predicate;
     }
 
     static Predicate eq(String field, Object arg) {
-        return operatorPredicate(field, arg, PARAM_EQUALS);
+        return operatorPredicate(field, arg, Operator.EQ);
     }
 
     static Predicate not(Predicate predicate) {
-        if (!StringUtils.isBlank(predicate.in)) {
-            predicate.in = predicate.in.replace("IN", "NOT IN");
-
-            return predicate;
-        } else if (!StringUtils.isBlank(predicate.eq) && predicate.eq.contains(PARAM_EQUALS)) {
-            predicate.eq = predicate.eq.replace(PARAM_EQUALS, PARAM_NOT_EQUAL);
-
-            return predicate;
-        } else if (!StringUtils.isBlank(predicate.is)) {
-            predicate.is = predicate.is.replace("IS NULL", "IS NOT NULL");
-
-            return predicate;
-        } else if (!StringUtils.isBlank(predicate.between)) {
-            predicate.between = predicate.between.replace("BETWEEN", "NOT BETWEEN");
-
-            return predicate;
-        } else if (!StringUtils.isBlank(predicate.like)) {
-            predicate.like = " NOT".concat(predicate.like);
+        predicate.negate();
 
-            return predicate;
-        } else {
-            return null;
-        }
+        return predicate;
     }
 
     static Predicate isNull(String field) {
-        Predicate predicate = new Predicate();
-        predicate.is = field.concat(" IS NULL");
-
-        return predicate;
+        return new IsNull(field);
     }
 
     static Predicate between(String field, Object arg0, Object arg1) {
-        Predicate predicate = new Predicate();
-
-        StringBuilder between = new StringBuilder(field);
-        between.append(" BETWEEN ").append(PARAM_PLACE_HOLDER).append(" AND ")
-                .append(PARAM_PLACE_HOLDER);
-
-        predicate.between = between.toString();
+        Predicate predicate = new Between(field);
         predicate.addArgs(arg0, arg1);
 
         return predicate;
     }
 
     static Predicate gt(String field, Object arg) {
-        return operatorPredicate(field, arg, " > ");
+        return operatorPredicate(field, arg, Operator.GT);
     }
 
     static Predicate ge(String field, Object arg) {
-        return operatorPredicate(field, arg, " >= ");
+        return operatorPredicate(field, arg, Operator.GE);
     }
 
     static Predicate lt(String field, Object arg) {
-        return operatorPredicate(field, arg, " < ");
+        return operatorPredicate(field, arg, Operator.LT);
     }
 
     static Predicate le(String field, Object arg) {
-        return operatorPredicate(field, arg, " <= ");
+        return operatorPredicate(field, arg, Operator.LE);
     }
 
     static Predicate like(String field, Object arg) {
-        Predicate predicate = new Predicate();
-
-        StringBuilder like = new StringBuilder(field);
-        like.append(" LIKE ").append(PARAM_PLACE_HOLDER);
-
-        predicate.like = like.toString();
-        predicate.addArgs(arg);
-
-        return predicate;
+        return operatorPredicate(field, arg, Operator.LIKE);
     }
 
     static Predicate sqlPredicate(String sql, Object... args) {
-        Predicate predicate = new Predicate();
-        predicate.clause = sql;
+        Predicate predicate = new SqlPredicate(sql);
         predicate.addArgs(args);
 
         return predicate;
@@ -227,12 +234,8 @@ public class Predicate {
         return new Junction(BooleanOperator.AND);
     }
 
-    private static Predicate operatorPredicate(String field, Object arg, String operator) {
-        Predicate predicate = new Predicate();
-
-        StringBuilder eqBuilder = new StringBuilder();
-        eqBuilder.append(field).append(operator).append(PARAM_PLACE_HOLDER);
-        predicate.eq = eqBuilder.toString();
+    private static Predicate operatorPredicate(String field, Object arg, Operator operator) {
+        Predicate predicate = new Comparison(field, operator);
         predicate.addArgs(arg);
 
         return predicate;
@@ -252,6 +255,354 @@ public class Predicate {
                 || value.equals(PARAM_EQUALS.trim()) || value.equals("*");
     }
 
+    /**
+     * Reference to a column of a table in query. Column is parsed once from field given to
+     * predicate. Field can be prefixed with alias of join or {@value #THIS}. Field "id" refers to
+     * primary key column of the table.
+     *
+     * @since 2.1.4
+     */
+    static class Column {
+
+        private final String prefix;
+        private final String name;
+
+        Column(String field) {
+            int index = field.lastIndexOf(".");
+            String column = field.substring(index + 1);
+
+            this.prefix = index > -1 ? field.substring(0, index) : null;
+            this.name = column.equals("id") ? NameResolver.ID_FIELD_SUFFIX : column;
+        }
+
+        /**
+         * Check whether this column is column of query root.
+         *
+         * @return boolean true if column has no prefix or it is prefixed with {@value #THIS}.
+         *
+         * @since 2.1.4
+         */
+        boolean isRoot() {
+            return prefix == null || prefix.equals(THIS);
+        }
+
+        void render(StringBuilder sql, String alias) {
+            if (prefix != null && !prefix.equals(THIS)) {
+                sql.append(prefix).append(".");
+            } else if (alias != null) {
+                sql.append(alias).append(".");
+            } else if (prefix != null) {
+                sql.append(prefix).append(".");
+            }
+            sql.append(name);
+        }
+    }
+
+    /**
+     * Base of predicates restricting single field.
+     *
+     * @since 2.1.4
+     */
+    abstract static class FieldPredicate extends Predicate {
+
+        private final String field;
+        final Column column;
+        boolean negated;
+
+        FieldPredicate(String field) {
+            this.field = field;
+            this.column = new Column(field);
+        }
+
+        @Override
+        String getField() {
+            return field;
+        }
+
+        @Override
+        void negate() {
+            negated = !negated;
+        }
+    }
+
+    /**
+     * Comparison of field to single argument with {@link Operator}. E.g. id = ?.
+     *
+     * @since 2.1.4
+     */
+    static class Comparison extends FieldPredicate {
+
+        private Operator operator;
+
+        Comparison(String field, Operator operator) {
+            super(field);
+            this.operator = operator;
+        }
+
+        @Override
+        void render(StringBuilder sql, String alias) {
+            column.render(sql, alias);
+            sql.append(operator.getValue()).append(PARAM_PLACE_HOLDER);
+        }
+
+        @Override
+        void negate() {
+            operator = operator.negate();
+        }
+    }
+
+    /**
+     * Restriction of field to list of arguments. E.g. id IN (?, ?).
+     *
+     * @since 2.1.4
+     */
+    static class In extends FieldPredicate {
+
+        private String idTable;
+
+        In(String field) {
+            super(field);
+        }
+
+        /**
+         * Restrict field to values of given temporary table instead of binding arguments. Predicate
+         * has no host parameters after this and its arguments are inserted to the table before query.
+         * E.g. id IN (SELECT value FROM temp.ids).
+         *
+         * @param idTable String name of temporary table.
+         *
+         * @since 2.1.4
+         */
+        void useIdTable(String idTable) {
+            this.idTable = idTable;
+        }
+
+        /**
+         * Get name of temporary table of this predicate. See {@link #useIdTable(String)}.
+         *
+         * @return String name of temporary table or null if arguments are bound as host parameters.
+         *
+         * @since 2.1.4
+         */
+        String getIdTable() {
+            return idTable;
+        }
+
+        /**
+         * Get arguments to insert to temporary table of this predicate converted to values with
+         * their SQLite types. See {@link #getValues(DateStorage)}.
+         *
+         * @param dateStorage {@link DateStorage} to format date arguments with.
+         * @return Object array of arguments.
+         *
+         * @since 2.1.4
+         */
+        Object[] getIdTableValues(DateStorage dateStorage) {
+            return super.getValues(dateStorage);
+        }
+
+        @Override
+        Object[] getValues(DateStorage dateStorage) {
+            return idTable == null ? super.getValues(dateStorage) : NO_ARGS;
+        }
+
+        @Override
+        int getArgCount() {
+            return idTable == null ? super.getArgCount() : 0;
+        }
+
+        /**
+         * Split this predicate to predicates restricting the same field to chunks of distinct
+         * arguments of this predicate.
+         *
+         * @param size int maximum number of arguments per chunk.
+         * @return List of predicates in order of arguments.
+         *
+         * @since 2.1.4
+         */
+        List<Predicate> split(int size) {
+            List<Object> distinct = new ArrayList<>(new LinkedHashSet<>(Arrays.asList(((Predicate) this).args)));
+            List<Predicate> chunks = new ArrayList<>();
+            for (int i = 0; i < distinct.size() || i == 0; i += size) {
+                In chunk = new In(getField());
+                chunk.negated = negated;
+                ((Predicate) chunk).addArgs(distinct.subList(i, Math.min(i + size, distinct.size())).toArray());
+                chunks.add(chunk);
+            }
+
+            return chunks;
+        }
+
+        /**
+         * Pad arguments of this predicate to given size by repeating the last argument. Repeated
+         * arguments do not change the result of the predicate.
+         *
+         * @param size int number of arguments after padding.
+         *
+         * @since 2.1.4
+         */
+        void pad(int size) {
+            Object[] args = ((Predicate) this).args;
+            Object[] padded = Arrays.copyOf(args, size);
+            Arrays.fill(padded, args.length, size, args[args.length - 1]);
+            ((Predicate) this).addArgs(padded);
+        }
+
+        @Override
+        void render(StringBuilder sql, String alias) {
+            column.render(sql, alias);
+            sql.append(negated ? " NOT IN (" : " IN (");
+            if (idTable != null) {
+                sql.append("SELECT ").append(ID_TABLE_COLUMN).append(" FROM temp.").append(idTable).append(")");
+
+                return;
+            }
+            for (int i = 0; i < getArgCount(); i++) {
+                sql.append(i > 0 ? ", " : "").append(PARAM_PLACE_HOLDER);
+            }
+            sql.append(")");
+        }
+    }
+
+    /**
+     * Restriction of field between two arguments. E.g. id BETWEEN ? AND ?.
+     *
+     * @since 2.1.4
+     */
+    static class Between extends FieldPredicate {
+
+        Between(String field) {
+            super(field);
+        }
+
+        @Override
+        void render(StringBuilder sql, String alias) {
+            column.render(sql, alias);
+            sql.append(negated ? " NOT BETWEEN " : " BETWEEN ").append(PARAM_PLACE_HOLDER).append(" AND ")
+                    .append(PARAM_PLACE_HOLDER);
+        }
+    }
+
+    /**
+     * Restriction of field to be null. E.g. id IS NULL.
+     *
+     * @since 2.1.4
+     */
+    static class IsNull extends FieldPredicate {
+
+        IsNull(String field) {
+            super(field);
+        }
+
+        @Override
+        void render(StringBuilder sql, String alias) {
+            column.render(sql, alias);
+            sql.append(negated ? " IS NOT NULL" : " IS NULL");
+        }
+    }
+
+    /**
+     * Predicate of custom sql. Sql is formatted as text on rendering since its structure is
+     * unknown. See {@link #format(String, String)}.
+     *
+     * @since 2.1.4
+     */
+    static class SqlPredicate extends Predicate {
+
+        private final String sql;
+        private boolean negated;
+
+        SqlPredicate(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        void render(StringBuilder sql, String alias) {
+            if (negated) {
+                sql.append("NOT (");
+            }
+            sql.append(format(this.sql, alias));
+            if (negated) {
+                sql.append(")");
+            }
+        }
+
+        @Override
+        void appendKey(StringBuilder key) {
+            key.append(negated ? "NOT " : "").append(sql);
+        }
+
+        @Override
+        void negate() {
+            negated = !negated;
+        }
+
+        /**
+         * Formats custom sql clause to follow rules of database.
+         *
+         * <ul>
+         *     <li>Formats clause's "this" prefixes as alias provided.</li>
+         *     <li>Formats empty prefixed columns with alias provided.</li>
+         *     <li>Formats .id fields as ._id since Android primary key field is prefixed with "_" underscore.</li>
+         * </ul>
+         *
+         * @param clause String sql clause to format aliases.
+         * @param alias String value of alias to use. Can be null if no formatting is required.
+         * @return String value of clause formatted if table name was provided otherwise returns the original
+         * clause.
+         *
+         * @since 1.1.2
+         */
+        private static String format(String clause, String alias) {
+            String formatted = clause;
+
+            // format "this" prefixes to use correct alias alias
+            if (!StringUtils.isBlank(alias)) {
+                formatted = clause.replace(THIS, alias);
+            }
+
+            // format .id fields to match correct primary key by adding "_" underscore in front.
+            formatted = formatted.replace(".id", ".".concat(NameResolver.ID_FIELD_SUFFIX));
+
+            StringTokenizer tokens = new StringTokenizer(formatted, " ");
+            StringBuilder formattedBuilder = new StringBuilder();
+            while (tokens.hasMoreElements()) {
+                String token = tokens.nextToken();
+
+                // check that token is not a reserved word nor symbol
+                if (!isSymbol(token) && !ReservedWords.has(token)) {
+
+                    // if token really is column name in database and alias is provided
+                    if (!token.contains(".") && !token.startsWith("(") && !token.startsWith(PARAM_PLACE_HOLDER) && !StringUtils.isBlank(alias)) {
+                        if (token.equals("id")) {
+                            token = NameResolver.ID_FIELD_SUFFIX;
+                        }
+
+                        if (token.contains("(") && token.contains("?")) {
+                            formattedBuilder.append(token);
+
+                        } else {
+                            formattedBuilder.append(alias.concat(".").concat(token));
+                        }
+
+                    } else {
+                        formattedBuilder.append(token); // otherwise add token.
+                    }
+
+                } else {
+                    formattedBuilder.append(token); // just add token as it does not contain relative information
+                }
+
+                // lastly add " " space to text.
+                if (tokens.hasMoreElements()) {
+                    formattedBuilder.append(" ");
+                }
+            }
+
+            return formattedBuilder.toString();
+        }
+    }
+
     /**
      * Junction is parentheses grouped clause with one or more arguments. Junction can either
      * be disjunction or conjunction. This is handled via {@link BooleanOperator} what defines
@@ -265,6 +616,7 @@ public class Predicate {
 
         private List<Predicate> predicates;
         private BooleanOperator operator;
+        private boolean negated;
 
         Junction(BooleanOperator operator) {
             this.operator = operator;
@@ -293,6 +645,82 @@ public class Predicate {
         List<Predicate> getPredicates() {
             return predicates;
         }
+
+        @Override
+        void render(StringBuilder sql, String alias) {
+            sql.append(negated ? "NOT (" : "(");
+            for (int i = 0; i < predicates.size(); i++) {
+                if (i > 0) {
+                    sql.append(operator.getValue());
+                }
+                predicates.get(i).render(sql, alias);
+            }
+            sql.append(")");
+        }
+
+        @Override
+        void appendKey(StringBuilder key) {
+            key.append(negated ? "NOT (" : "(");
+            for (int i = 0; i < predicates.size(); i++) {
+                if (i > 0) {
+                    key.append(operator.getValue());
+                }
+                predicates.get(i).appendKey(key);
+            }
+            key.append(")");
+        }
+
+        @Override
+        void negate() {
+            negated = !negated;
+        }
+    }
+
+    /**
+     * Comparison operators of {@link Comparison} predicate.
+     *
+     * @since 2.1.4
+     */
+    enum Operator {
+
+        EQ(PARAM_EQUALS), NE(PARAM_NOT_EQUAL), GT(" > "), GE(" >= "), LT(" < "), LE(" <= "),
+        LIKE(" LIKE "), NOT_LIKE(" NOT LIKE ");
+
+        private String value;
+
+        Operator(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Get operator that matches exactly the values this operator does not match.
+         *
+         * @return Negated {@link Operator}.
+         */
+        Operator negate() {
+            switch (this) {
+                case EQ:
+                    return NE;
+                case NE:
+                    return EQ;
+                case GT:
+                    return LE;
+                case GE:
+                    return LT;
+                case LT:
+                    return GE;
+                case LE:
+                    return GT;
+                case LIKE:
+                    return NOT_LIKE;
+                default:
+                    return LIKE;
+            }
+        }
     }
 
     /**
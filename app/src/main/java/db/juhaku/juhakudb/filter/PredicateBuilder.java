@@ -29,6 +29,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
+import db.juhaku.juhakudb.filter.Predicate.Column;
 import db.juhaku.juhakudb.filter.Predicate.Junction;
 
 
@@ -45,6 +46,8 @@ public class PredicateBuilder {
 
     private List<Predicate> predicates;
     private List<Sort> orders;
+    private List<Column> seekColumns;
+    private Order seekOrder;
     private Integer pageSize;
     private Integer page;
     private boolean not;
@@ -78,7 +81,84 @@ public class PredicateBuilder {
      * @since 2.1.0
      */
     String getSort() {
-        return makeSort();
+        return getSort(null);
+    }
+
+    /**
+     * Get order by clause for SQL. Columns of keyset pagination are rendered with given alias of
+     * query root and they are sorted before other columns. See
+     * {@link #seekAfter(Order, String[], Object[])}.
+     *
+     * @param alias String alias of query root or null.
+     * @return String value of order by.
+     *
+     * @since 2.1.4
+     */
+    String getSort(String alias) {
+        String sort = makeSort();
+        if (seekColumns == null) {
+            return sort;
+        }
+
+        StringBuilder sortBuilder = new StringBuilder(" ORDER BY ");
+        for (int i = 0; i < seekColumns.size(); i++) {
+            if (i > 0) {
+                sortBuilder.append(", ");
+            }
+            seekColumns.get(i).render(sortBuilder, alias);
+            sortBuilder.append(" ").append(seekOrder.toString());
+        }
+        if (sort != null) {
+            sortBuilder.append(", ").append(sort.substring(" ORDER BY ".length()));
+        }
+
+        return sortBuilder.toString();
+    }
+
+    /**
+     * Get order by clause for SQL query grouped by root entities. Columns are aggregated with MIN
+     * in ascending order and with MAX in descending order. Thus root entity with many rows of
+     * joined column is ordered by its first row in the order instead of an arbitrary row of the
+     * group. Columns are in same order as in {@link #getSort(String)}.
+     *
+     * @param alias String alias of query root or null.
+     * @return String value of order by or null if there is no sort.
+     *
+     * @since 2.1.4
+     */
+    String getGroupedSort(String alias) {
+        if (seekColumns == null && orders.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder sortBuilder = new StringBuilder(" ORDER BY ");
+        if (seekColumns != null) {
+            for (Column column : seekColumns) {
+                appendGroupedSort(sortBuilder, seekOrder);
+                column.render(sortBuilder, alias);
+                sortBuilder.append(") ").append(seekOrder.toString());
+            }
+        }
+        for (Order order : new Order[]{Order.ASC, Order.DESC}) {
+            for (Sort sort : orders) {
+                if (sort.order == order) {
+                    appendGroupedSort(sortBuilder, order);
+                    sortBuilder.append(sort.sort).append(") ").append(order.toString());
+                }
+            }
+        }
+
+        return sortBuilder.toString();
+    }
+
+    /**
+     * @hide
+     */
+    private static void appendGroupedSort(StringBuilder sortBuilder, Order order) {
+        if (sortBuilder.length() > " ORDER BY ".length()) {
+            sortBuilder.append(", ");
+        }
+        sortBuilder.append(order == Order.ASC ? "MIN(" : "MAX(");
     }
 
     /**
@@ -92,6 +172,22 @@ public class PredicateBuilder {
         return makePage();
     }
 
+    /**
+     * Get values of parameters of limit clause in order of the clause. See {@link #getPage()}.
+     *
+     * @return Object array containing limit and optional offset or empty array if there is no page.
+     *
+     * @since 2.1.4
+     */
+    Object[] getPageValues() {
+        if (pageSize == null || pageSize <= 0) {
+            return new Object[0];
+        }
+
+        return page == null ? new Object[]{pageSize.longValue()}
+                : new Object[]{pageSize.longValue(), (long) page * pageSize};
+    }
+
 //    /**
 //     * Add AND to the SQL.
 //     *
@@ -133,6 +229,63 @@ public class PredicateBuilder {
         return this;
     }
 
+    /**
+     * Add keyset pagination for given columns. Results are sorted by given columns with given
+     * order and restricted to rows that come after given values of the columns in that order.
+     * E.g. for columns a, b in ascending order restriction is (a > ? OR (a = ? AND b > ?)).
+     *
+     * <p>Unlike page with offset each page is an index seek regardless of how deep the page is.
+     * Limit the results with page size without setting page. Columns should identify rows uniquely
+     * thus the last column is typically id. Values of the last row of previous page are the
+     * continuation of next page. See {@link Slice}.</p>
+     *
+     * <p>Columns can be prefixed with alias of a join or "this" like fields of predicates. Keyset
+     * columns are sorted before columns added with {@link #sort(Order, String...)}.</p>
+     *
+     * @param order {@link Order} of the columns.
+     * @param columns String array of columns to sort and seek by.
+     * @param lastValues Object array of values of the columns of the last row of previous page or
+     *                   null for the first page.
+     *
+     * @return Predicate builder for current WHERE clause.
+     *
+     * @since 2.1.4
+     */
+    public PredicateBuilder seekAfter(Order order, String[] columns, Object[] lastValues) {
+        this.seekOrder = order;
+        this.seekColumns = new ArrayList<>(columns.length);
+        for (String column : columns) {
+            seekColumns.add(new Column(column));
+        }
+
+        if (lastValues != null) {
+            if (lastValues.length != columns.length) {
+                throw new IllegalArgumentException("Number of last values: " + lastValues.length
+                        + " does not match number of columns: " + columns.length);
+            }
+
+            Junction keyset = Predicate.disjunction();
+            for (int i = 0; i < columns.length; i++) {
+                Predicate after = order == Order.ASC ? Predicate.gt(columns[i], lastValues[i])
+                        : Predicate.lt(columns[i], lastValues[i]);
+
+                if (i == 0) {
+                    keyset.getPredicates().add(after);
+                } else {
+                    Junction equal = Predicate.conjunction();
+                    for (int j = 0; j < i; j++) {
+                        equal.getPredicates().add(Predicate.eq(columns[j], lastValues[j]));
+                    }
+                    equal.getPredicates().add(after);
+                    keyset.getPredicates().add(equal);
+                }
+            }
+            getPredicates().add(keyset);
+        }
+
+        return this;
+    }
+
     /**
      * Set number of max results in one page. If this is filled then set page must be provided also.
      * See {@link #setPage(Integer)}.
@@ -295,7 +448,9 @@ public class PredicateBuilder {
      * @since 2.1.0
      */
     public PredicateBuilder gt(String field, Object arg) {
-        getPredicates().add(Predicate.ge(field, arg));
+        getPredicates().add(Predicate.gt(field, arg));
+
+        negateIfNecessary();
 
         return this;
     }
@@ -313,6 +468,8 @@ public class PredicateBuilder {
     public PredicateBuilder ge(String field, Object arg) {
         getPredicates().add(Predicate.ge(field, arg));
 
+        negateIfNecessary();
+
         return this;
     }
 
@@ -329,6 +486,8 @@ public class PredicateBuilder {
     public PredicateBuilder lt(String field, Object arg) {
         getPredicates().add(Predicate.lt(field, arg));
 
+        negateIfNecessary();
+
         return this;
     }
 
@@ -345,6 +504,8 @@ public class PredicateBuilder {
     public PredicateBuilder le(String field, Object arg) {
         getPredicates().add(Predicate.le(field, arg));
 
+        negateIfNecessary();
+
         return this;
     }
 
@@ -383,6 +544,8 @@ public class PredicateBuilder {
     public PredicateBuilder sqlPredicate(String sql, Object... args) {
         getPredicates().add(Predicate.sqlPredicate(sql, args));
 
+        negateIfNecessary();
+
         return this;
     }
 
@@ -490,7 +653,6 @@ public class PredicateBuilder {
         if (desc.length > 0) {
             sortBuilder.append(orderBy(Order.DESC, desc));
         }
-        orders.clear();
 
         return sortBuilder.toString();
     }
@@ -520,7 +682,8 @@ public class PredicateBuilder {
     }
 
     /**
-     * Generate limit statement for WHERE clause according page size and current page.
+     * Generate limit statement for WHERE clause according page size and current page. Limit and
+     * offset are parameters so that all pages share the same sql. See {@link #getPageValues()}.
      *
      * @return String containing limit clause.
      *
@@ -529,11 +692,10 @@ public class PredicateBuilder {
      * @hide
      */
     private String makePage() {
-        StringBuilder page = new StringBuilder(" LIMIT ");
+        StringBuilder page = new StringBuilder(" LIMIT ?");
         if (pageSize != null && pageSize > 0) {
-            page.append(String.valueOf(pageSize));
             if (this.page != null) {
-                page.append(" OFFSET ").append(String.valueOf((this.page * pageSize)));
+                page.append(" OFFSET ?");
             }
 
             return page.toString();
@@ -592,5 +754,10 @@ public class PredicateBuilder {
         public JunctionBuilder disjunction() {
             throw new UnsupportedOperationException("Unsupported operation to add disjunction in junction");
         }
+
+        @Override
+        public PredicateBuilder seekAfter(Order order, String[] columns, Object[] lastValues) {
+            throw new UnsupportedOperationException("Unsupported operation to add keyset in junction");
+        }
     }
 }
@@ -23,6 +23,10 @@ SOFTWARE.
 */
 package db.juhaku.juhakudb.filter;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Created by juha on 17/04/16.
  *
@@ -32,13 +36,38 @@ package db.juhaku.juhakudb.filter;
  */
 public class Query {
 
+    /**
+     * Marker in sql of two phase paged query that is replaced with parameters of ids of root
+     * entities of the page. See {@link #getPageQuery()}.
+     */
+    public static final String PAGE_IDS = "{ids}";
+
     private String sql;
     private String[] args;
+    private Object[] values;
     private Root<?> root;
+    private List<Query> chunks = Collections.emptyList();
+    private Query pageQuery;
+    private Map<String, Object[]> idTables = Collections.emptyMap();
 
     public Query(String sql, String[] args) {
         this.sql = sql;
         this.args = args;
+        this.values = args;
+    }
+
+    /**
+     * Initialize new query with typed bind values. Each value is either null, Long, Double,
+     * String or byte array and it is bound to sql with corresponding type.
+     *
+     * @param sql String sql of query.
+     * @param values Object[] array of bind values in order of parameters in sql.
+     *
+     * @since 2.1.4
+     */
+    public Query(String sql, Object[] values) {
+        this.sql = sql;
+        this.values = values;
     }
 
     /**
@@ -50,13 +79,34 @@ public class Query {
     }
 
     /**
-     * Get args for sql. If sql contains ? they will be replaced with these args.
+     * Get args for sql. If sql contains ? they will be replaced with these args. For query with
+     * typed values args are the values converted to strings. Byte array values cannot be presented
+     * as strings and they are null in args.
      * @return String[] array of args to be used in sql query.
      */
     public String[] getArgs() {
+        if (args == null && values != null) {
+            String[] stringArgs = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                stringArgs[i] = value == null || value instanceof byte[] ? null : value.toString();
+            }
+            args = stringArgs;
+        }
+
         return args;
     }
 
+    /**
+     * Get typed bind values of sql in order of parameters in sql. See {@link #Query(String, Object[])}.
+     * @return Object[] array of values to be bound to sql query.
+     *
+     * @since 2.1.4
+     */
+    public Object[] getValues() {
+        return values;
+    }
+
     /**
      * Get root of sql query. Root forms tree of join operations.
      * @return Instance of {@link Root}.
@@ -77,6 +127,89 @@ public class Query {
         this.root = root;
     }
 
+    /**
+     * Get queries this query is split to. Query is split when its IN clause has more arguments
+     * than fits to single sql statement. Results of the chunks together form the result of this
+     * query. Sql and values of this query are the ones of the first chunk.
+     *
+     * @return List of chunk queries or empty list if query is not split.
+     *
+     * @since 2.1.4
+     */
+    public List<Query> getChunks() {
+        return chunks;
+    }
+
+    void setChunks(List<Query> chunks) {
+        this.chunks = Collections.unmodifiableList(chunks);
+    }
+
+    /**
+     * Get query selecting ids of root entities of the page of this query. Paged query with fetch
+     * joins is performed in two phases. First ids of root entities of the page are selected with
+     * this query. Then entities are selected with their fetch joins by the ids with this query.
+     * See {@link #withPageIds(List)}.
+     *
+     * @return {@link Query} selecting ids of root entities in requested order or null if this
+     * query is not a two phase query.
+     *
+     * @since 2.1.4
+     */
+    public Query getPageQuery() {
+        return pageQuery;
+    }
+
+    void setPageQuery(Query pageQuery) {
+        this.pageQuery = pageQuery;
+    }
+
+    /**
+     * Create query selecting entities of the page with given ids of root entities. Ids are bound
+     * after the values of this query. See {@link #getPageQuery()}.
+     *
+     * @param ids List of ids of root entities of the page selected with page query.
+     * @return new {@link Query} to perform.
+     *
+     * @since 2.1.4
+     */
+    public Query withPageIds(List<?> ids) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < ids.size(); i++) {
+            placeholders.append(i > 0 ? ", ?" : "?");
+        }
+
+        Object[] pageValues = new Object[values.length + ids.size()];
+        System.arraycopy(values, 0, pageValues, 0, values.length);
+        for (int i = 0; i < ids.size(); i++) {
+            pageValues[values.length + i] = ids.get(i);
+        }
+
+        Query query = new Query(sql.replace(PAGE_IDS, placeholders.toString()), pageValues);
+        query.setRoot(root);
+
+        return query;
+    }
+
+    /**
+     * Get temporary tables of this query with their values. IN predicate that would make query
+     * exceed {@value QueryProcessor#MAX_HOST_PARAMETERS} host parameters and cannot be split to
+     * chunks selects its arguments from a temporary table. Tables must be created and filled with
+     * the values in column {@value Predicate#ID_TABLE_COLUMN} on the same connection before the
+     * query and its page query are performed.
+     *
+     * @return Map of names of temporary tables and their values or empty map if query does not
+     * use temporary tables.
+     *
+     * @since 2.1.4
+     */
+    public Map<String, Object[]> getIdTables() {
+        return idTables;
+    }
+
+    void setIdTables(Map<String, Object[]> idTables) {
+        this.idTables = Collections.unmodifiableMap(idTables);
+    }
+
     @Override
     public String toString() {
         return super.toString().concat(":").concat(sql);
@@ -24,27 +24,35 @@ SOFTWARE.
 package db.juhaku.juhakudb.filter;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
 
 import db.juhaku.juhakudb.core.NameResolver;
+import db.juhaku.juhakudb.core.schema.DateStorage;
 import db.juhaku.juhakudb.core.schema.Reference;
 import db.juhaku.juhakudb.core.schema.Schema;
 import db.juhaku.juhakudb.exception.IllegalJoinException;
 import db.juhaku.juhakudb.exception.NameResolveException;
 import db.juhaku.juhakudb.exception.QueryBuildException;
 import db.juhaku.juhakudb.filter.Predicate.BooleanOperator;
+import db.juhaku.juhakudb.filter.Predicate.In;
 import db.juhaku.juhakudb.filter.Predicate.Junction;
 import db.juhaku.juhakudb.filter.Root.Join;
 import db.juhaku.juhakudb.util.ReflectionUtils;
-import db.juhaku.juhakudb.util.ReservedWords;
 import db.juhaku.juhakudb.util.StringUtils;
 
 /**
@@ -59,7 +67,28 @@ import db.juhaku.juhakudb.util.StringUtils;
  */
 public class QueryProcessor {
 
+    /**
+     * Default maximum number of cached query templates.
+     */
+    public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 128;
+
+    /**
+     * Maximum number of host parameters in single sql statement. This is the default maximum
+     * of SQLite and the most older SQLite versions cannot be configured to allow more.
+     */
+    public static final int MAX_HOST_PARAMETERS = 999;
+
+    private static final char KEY_SEPARATOR = '\u0001';
+
+    /**
+     * Prefix of names of temporary tables holding arguments of IN predicates. See {@link Query#getIdTables()}.
+     */
+    private static final String ID_TABLE_PREFIX = "juhakudb_ids_";
+
     private Schema schema;
+    private final Map<String, QueryTemplate> templates;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
 
     /**
      * Initialize new {@link QueryProcessor} with given schema. Schema is used to resolve correct
@@ -70,13 +99,42 @@ public class QueryProcessor {
      * @since 1.2.0
      */
     public QueryProcessor(Schema schema) {
+        this(schema, DEFAULT_TEMPLATE_CACHE_SIZE);
+    }
+
+    /**
+     * Initialize new {@link QueryProcessor} with given schema and size of query template cache.
+     *
+     * @param schema instance of {@link Schema}.
+     * @param templateCacheSize int maximum number of cached query templates.
+     *
+     * @since 2.1.4
+     */
+    public QueryProcessor(Schema schema, final int templateCacheSize) {
         this.schema = schema;
+        this.templates = Collections.synchronizedMap(new LinkedHashMap<String, QueryTemplate>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Entry<String, QueryTemplate> eldest) {
+                return size() > templateCacheSize;
+            }
+        });
     }
 
     /**
      * Create full sql query with parameters. Sql query is formatted to {@link Query} object containing
      * sql and parameters in correct order.
      *
+     * <p>Sql of query is compiled once per shape of the query and cached to bounded LRU cache of
+     * query templates. Shape consists of root model, join tree, predicates without their arguments,
+     * sort and page. Query with same shape only binds arguments of its predicates to the template.</p>
+     *
+     * <p>If IN predicate would make query exceed {@value #MAX_HOST_PARAMETERS} host parameters
+     * the query is split to chunks if possible. See {@link Query#getChunks()}. Otherwise arguments
+     * of the largest IN predicates are selected from temporary tables. See {@link Query#getIdTables()}.</p>
+     *
+     * <p>Paged query with fetch joins is created as two phase query so that the page limits
+     * root entities instead of joined rows. See {@link Query#getPageQuery()}.</p>
+     *
      * @param modelClass Instance of {@link Class} of model class of database tables.
      * @param filter {@link Filter} to create select, joins and where statement.
      * @return newly created query.
@@ -91,18 +149,426 @@ public class QueryProcessor {
         // create joins and restrictions
         filter.filter(root, builder);
 
+        In in = findChunkedIn(builder.getPredicates());
+        if (in != null) {
+            return createChunkedQuery(root, builder, in, TemplateMode.SELECT);
+        }
+
+        return createQuery(root, builder, TemplateMode.SELECT, null);
+    }
+
+    /**
+     * Create query counting distinct root entities matching given filter. Query returns single
+     * row with single integer column. Sort and page of the filter are ignored.
+     *
+     * @param modelClass Instance of {@link Class} of model class of database tables.
+     * @param filter {@link Filter} to create joins and where statement.
+     * @return newly created count query.
+     *
+     * @since 2.1.4
+     */
+    public Query createCountQuery(Class<?> modelClass, Filter filter) {
+        return createQuery(modelClass, filter, TemplateMode.COUNT, null);
+    }
+
+    /**
+     * Create query checking whether any root entity matches given filter. Query returns single
+     * row with single integer column that is either 1 or 0. Sort and page of the filter are ignored.
+     *
+     * @param modelClass Instance of {@link Class} of model class of database tables.
+     * @param filter {@link Filter} to create joins and where statement.
+     * @return newly created exists query.
+     *
+     * @since 2.1.4
+     */
+    public Query createExistsQuery(Class<?> modelClass, Filter filter) {
+        return createQuery(modelClass, filter, TemplateMode.EXISTS, null);
+    }
+
+    /**
+     * Create aggregate query of rows matching given filter. Columns of the query are group by
+     * fields of the aggregate followed by aggregate functions. See {@link Aggregate}.
+     *
+     * @param modelClass Instance of {@link Class} of model class of database tables.
+     * @param filter {@link Filter} to create joins, where statement, sort and page.
+     * @param aggregate {@link Aggregate} describing aggregate functions and grouping.
+     * @return newly created aggregate query.
+     *
+     * @since 2.1.4
+     */
+    public Query createAggregateQuery(Class<?> modelClass, Filter filter, Aggregate aggregate) {
+        return createQuery(modelClass, filter, TemplateMode.AGGREGATE, aggregate);
+    }
+
+    /**
+     * Create query of given mode. Exists query is split to chunks like select query since any
+     * chunk having a match is a match. Count query is split only by IN clause of root column since
+     * then each root entity is counted by at most one chunk and counts of chunks can be summed.
+     * Other queries exceeding {@value #MAX_HOST_PARAMETERS} host parameters select arguments of IN
+     * predicates from temporary tables.
+     *
+     * @hide
+     */
+    private Query createQuery(Class<?> modelClass, Filter filter, TemplateMode mode, Aggregate aggregate) {
+        Root<?> root = new Root<>(modelClass);
+        PredicateBuilder builder = new PredicateBuilder();
+
+        filter.filter(root, builder);
+
+        In in = findChunkedIn(builder.getPredicates());
+        if (in != null && (mode == TemplateMode.EXISTS || (mode == TemplateMode.COUNT && in.column.isRoot()))) {
+            return createChunkedQuery(root, builder, in, mode);
+        }
+
+        return createQuery(root, builder, mode, aggregate);
+    }
+
+    /**
+     * Create query of given mode for given root and predicates from cached query templates. Paged
+     * select query with fetch joins is created as two phase query. See {@link Query#getPageQuery()}.
+     *
+     * @hide
+     */
+    private Query createQuery(Root<?> root, PredicateBuilder builder, TemplateMode mode, Aggregate aggregate) {
+        useIdTables(builder.getPredicates());
+        padInArgs(builder.getPredicates());
+
+        boolean ordered = mode == TemplateMode.SELECT || mode == TemplateMode.AGGREGATE;
+        String order = ordered ? builder.getSort() : null;
+        String page = ordered ? builder.getPage() : null;
+
+        if (mode == TemplateMode.SELECT && page != null && hasFetchJoins(root)) {
+            QueryTemplate ids = getTemplate(root, builder, order, page, TemplateMode.PAGE_IDS, null);
+            QueryTemplate entities = getTemplate(root, builder, order, null, TemplateMode.FETCH_PAGE, null);
+
+            Query query = new Query(entities.sql, entities.bindArgs(builder));
+            query.setRoot(root);
+            query.setPageQuery(new Query(ids.sql, ids.bindArgs(builder)));
+            query.setIdTables(entities.bindIdTables(builder));
+
+            return query;
+        }
+
+        QueryTemplate template = getTemplate(root, builder, order, page, mode, aggregate);
+        Query query = new Query(template.sql, template.bindArgs(builder));
+        query.setRoot(root);
+        query.setIdTables(template.bindIdTables(builder));
+
+        return query;
+    }
+
+    /**
+     * Get query template of given shape from cache. Template is compiled and cached if not found.
+     *
+     * @hide
+     */
+    private QueryTemplate getTemplate(Root<?> root, PredicateBuilder builder, String order, String page,
+                                      TemplateMode mode, Aggregate aggregate) {
+        String key = createTemplateKey(root, builder, order, page, mode, aggregate);
+        QueryTemplate template = templates.get(key);
+        if (template == null) {
+            misses.incrementAndGet();
+            template = compileTemplate(root, builder, order != null, page, mode, aggregate);
+            templates.put(key, template);
+        } else {
+            hits.incrementAndGet();
+        }
+
+        return template;
+    }
+
+    /**
+     * Check whether given root or any of its joins has fetch joins. Fetch joins multiply rows of
+     * root entities so limit of query would not count root entities.
+     *
+     * @hide
+     */
+    private static boolean hasFetchJoins(Root<?> root) {
+        for (Root<?> r : root.getJoins()) {
+            if (((Join) r).isFetch() || hasFetchJoins(r)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Find IN predicate that makes query exceed {@value #MAX_HOST_PARAMETERS} host parameters.
+     * Only top level IN predicates that are not negated can be chunked since only they restrict
+     * results to union of the results of the chunks.
+     *
+     * @param predicates List of predicates of query.
+     * @return {@link In} predicate to split query by or null if query does not need to be split or
+     * it cannot be split.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private In findChunkedIn(List<Predicate> predicates) {
+        if (countArgs(predicates) <= MAX_HOST_PARAMETERS) {
+            return null;
+        }
+
+        In chunked = null;
+        for (Predicate predicate : predicates) {
+            if (predicate instanceof In && !((In) predicate).negated
+                    && (chunked == null || predicate.getArgCount() > chunked.getArgCount())) {
+                chunked = (In) predicate;
+            }
+        }
+
+        return chunked;
+    }
+
+    /**
+     * Create query split to chunks by given IN predicate. Distinct arguments of the predicate are
+     * divided to chunks so that each chunk query stays within {@value #MAX_HOST_PARAMETERS} host
+     * parameters. Queries of chunks have at most two shapes thus they share cached templates.
+     *
+     * <p>Results of chunks cannot be sorted or paged together. Sorted or paged select query and
+     * query having too many arguments besides the IN predicate are created as single query selecting
+     * arguments of IN predicates from temporary tables instead.</p>
+     *
+     * @param root {@link Root} of query.
+     * @param builder {@link PredicateBuilder} containing predicates of query.
+     * @param in {@link In} predicate to split query by.
+     * @param mode {@link TemplateMode} of queries of chunks.
+     * @return new {@link Query} containing queries of its chunks.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private Query createChunkedQuery(Root<?> root, PredicateBuilder builder, In in, TemplateMode mode) {
+        List<Predicate> predicates = builder.getPredicates();
+        int chunkSize = MAX_HOST_PARAMETERS - (countArgs(predicates) - in.getArgCount());
+        if (chunkSize < 1) {
+            return createQuery(root, builder, mode, null);
+        }
+
+        List<Predicate> chunks = in.split(chunkSize);
+        if (chunks.size() > 1 && mode == TemplateMode.SELECT
+                && (builder.getSort() != null || builder.getPage() != null)) {
+            return createQuery(root, builder, mode, null);
+        }
+
+        int index = predicates.indexOf(in);
+        List<Query> queries = new ArrayList<>(chunks.size());
+        try {
+            for (Predicate chunk : chunks) {
+                predicates.set(index, chunk);
+                queries.add(createQuery(root, builder, mode, null));
+            }
+        } finally {
+            predicates.set(index, in);
+        }
+
+        if (queries.size() == 1) {
+            return queries.get(0);
+        }
+
+        Query first = queries.get(0);
+        Query query = new Query(first.getSql(), first.getValues());
+        query.setRoot(root);
+        query.setChunks(queries);
+
+        return query;
+    }
+
+    /**
+     * Select arguments of the largest IN predicates from temporary tables until query stays within
+     * {@value #MAX_HOST_PARAMETERS} host parameters. Unlike chunks temporary tables work with any IN
+     * predicate and any mode of query. Tables are named by their order in query so queries of same
+     * shape share query templates.
+     *
+     * @param predicates List of predicates of query.
+     * @throws QueryBuildException if query exceeds maximum number of host parameters without IN
+     * predicates.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private static void useIdTables(List<Predicate> predicates) {
+        int tables = 0;
+        while (countArgs(predicates) > MAX_HOST_PARAMETERS) {
+            In in = findLargestIn(predicates, null);
+            if (in == null) {
+                throw new QueryBuildException("Query exceeds maximum of " + MAX_HOST_PARAMETERS
+                        + " host parameters: " + countArgs(predicates));
+            }
+            in.useIdTable(ID_TABLE_PREFIX + tables++);
+        }
+    }
+
+    /**
+     * Find IN predicate with most arguments bound as host parameters including predicates of junctions.
+     *
+     * @hide
+     */
+    private static In findLargestIn(List<Predicate> predicates, In largest) {
+        for (Predicate predicate : predicates) {
+            if (predicate instanceof Junction) {
+                largest = findLargestIn(((Junction) predicate).getPredicates(), largest);
+            } else if (predicate instanceof In && predicate.getArgCount() > 0
+                    && (largest == null || predicate.getArgCount() > largest.getArgCount())) {
+                largest = (In) predicate;
+            }
+        }
+
+        return largest;
+    }
+
+    /**
+     * Pad arguments of IN predicates to next power of two by repeating their last argument as far
+     * as query stays within {@value #MAX_HOST_PARAMETERS} host parameters. Repeated arguments do not
+     * change results but IN predicates with varying number of arguments share query templates.
+     *
+     * @param predicates List of predicates of query.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private static void padInArgs(List<Predicate> predicates) {
+        padInArgs(predicates, MAX_HOST_PARAMETERS - countArgs(predicates));
+    }
+
+    /**
+     * @return int number of host parameters still available after padding.
+     *
+     * @hide
+     */
+    private static int padInArgs(List<Predicate> predicates, int available) {
+        for (Predicate predicate : predicates) {
+            if (predicate instanceof Junction) {
+                available = padInArgs(((Junction) predicate).getPredicates(), available);
+
+            } else if (predicate instanceof In && predicate.getArgCount() > 1) {
+                int count = predicate.getArgCount();
+                int size = Math.min(Integer.highestOneBit(count - 1) << 1, count + available);
+                if (size > count) {
+                    ((In) predicate).pad(size);
+                    available -= size - count;
+                }
+            }
+        }
+
+        return available;
+    }
+
+    /**
+     * Count arguments of given predicates including arguments of predicates of junctions.
+     *
+     * @hide
+     */
+    private static int countArgs(List<Predicate> predicates) {
+        int count = 0;
+        for (Predicate predicate : predicates) {
+            if (predicate instanceof Junction) {
+                count += countArgs(((Junction) predicate).getPredicates());
+            } else {
+                count += predicate.getArgCount();
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Get number of queries created with cached query template.
+     *
+     * @return long number of query template cache hits.
+     *
+     * @since 2.1.4
+     */
+    public long getTemplateCacheHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get number of queries that needed query template to be compiled.
+     *
+     * @return long number of query template cache misses.
+     *
+     * @since 2.1.4
+     */
+    public long getTemplateCacheMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Compile sql template for given root and predicates.
+     *
+     * @param root {@link Root} of query.
+     * @param builder {@link PredicateBuilder} containing predicates and sort of query.
+     * @param ordered boolean true if template is sorted by sort of builder.
+     * @param page String limit clause or null.
+     * @param mode {@link TemplateMode} of the template.
+     * @param aggregate {@link Aggregate} of aggregate template or null.
+     * @return new compiled {@link QueryTemplate}.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private QueryTemplate compileTemplate(Root<?> root, PredicateBuilder builder, boolean ordered, String page,
+                                          TemplateMode mode, Aggregate aggregate) {
+        Alias aliases = new Alias();
         StringBuilder sql = new StringBuilder();
-        createSelect(root, sql); // create select statement from root
+        String alias = aliases.forModel(root.getModel());
+        String id = alias.concat(".").concat(resolvePrimaryKey(root.getModel()));
+        String order = !ordered ? null : mode == TemplateMode.PAGE_IDS ? builder.getGroupedSort(alias)
+                : builder.getSort(alias);
+
+        switch (mode) {
+            case PAGE_IDS:
+                sql.append("SELECT ").append(id);
+                break;
+            case COUNT:
+                // Joins may multiply rows of root entities thus distinct ids are counted.
+                sql.append(root.getJoins().isEmpty() ? "SELECT COUNT(*)" : "SELECT COUNT(DISTINCT " + id + ")");
+                break;
+            case EXISTS:
+                sql.append("SELECT EXISTS (SELECT 1");
+                break;
+            case AGGREGATE:
+                sql.append("SELECT ");
+                aggregate.renderSelect(sql, alias);
+                break;
+            default:
+                createSelect(root, sql, aliases); // create select statement from root
+        }
+        if (mode != TemplateMode.SELECT && mode != TemplateMode.FETCH_PAGE) {
+            sql.append(" FROM ").append(resolveName(root.getModel())).append(" ").append(alias).append(" ");
+        }
 
-        createJoins(root, sql);
+        createJoins(root, sql, aliases);
 
-        if (!builder.getPredicates().isEmpty()) {
+        if (!builder.getPredicates().isEmpty() || mode == TemplateMode.FETCH_PAGE) {
             sql.append("WHERE ");
         }
-        String[] args = createWhere(root, sql, builder); // create where clause from predicates
+        List<DateStorage> dateStorages = new ArrayList<>();
+        createWhere(root, sql, builder, aliases, dateStorages); // create where clause from predicates
+
+        if (mode == TemplateMode.FETCH_PAGE) {
+            if (!builder.getPredicates().isEmpty()) {
+                sql.append(BooleanOperator.AND.getValue());
+            }
+            sql.append(id).append(" IN (").append(Query.PAGE_IDS).append(")");
+
+        } else if (mode == TemplateMode.PAGE_IDS) {
+            sql.append(" GROUP BY ").append(id);
+
+        } else if (mode == TemplateMode.AGGREGATE) {
+            aggregate.renderGroupBy(sql, alias);
+
+        } else if (mode == TemplateMode.EXISTS) {
+            sql.append(")");
+        }
 
-        String order = builder.getSort();
-        String page = builder.getPage();
         if (!StringUtils.isBlank(order)) {
             sql.append(order);
         }
@@ -110,12 +576,57 @@ public class QueryProcessor {
             sql.append(page);
         }
 
-        Alias.clearCache();
+        return new QueryTemplate(sql.toString(), dateStorages.toArray(new DateStorage[dateStorages.size()]),
+                !StringUtils.isBlank(page));
+    }
 
-        Query query = new Query(sql.toString(), args);
-        query.setRoot(root);
+    /**
+     * Create key identifying shape of query. Queries with same key produce same sql and they only
+     * differ by arguments.
+     *
+     * @hide
+     */
+    private static String createTemplateKey(Root<?> root, PredicateBuilder builder, String order, String page,
+                                            TemplateMode mode, Aggregate aggregate) {
+        StringBuilder key = new StringBuilder(mode.name()).append(KEY_SEPARATOR).append(root.getModel().getName())
+                .append(root.getSelection());
+        appendJoinKey(root, key);
+        appendPredicateKey(builder.getPredicates(), key);
+        key.append(KEY_SEPARATOR).append(order).append(KEY_SEPARATOR).append(page);
+        if (aggregate != null) {
+            key.append(KEY_SEPARATOR);
+            aggregate.renderSelect(key, null);
+            aggregate.renderGroupBy(key, null);
+        }
 
-        return query;
+        return key.toString();
+    }
+
+    /**
+     * @hide
+     */
+    private static void appendJoinKey(Root<?> root, StringBuilder key) {
+        key.append("[");
+        for (Root<?> r : root.getJoins()) {
+            Join join = (Join) r;
+            key.append(join.getTarget()).append(KEY_SEPARATOR).append(join.getAlias()).append(KEY_SEPARATOR)
+                    .append(join.getJoinMode()).append(KEY_SEPARATOR).append(join.isFetch())
+                    .append(join.getSelection());
+            appendJoinKey(join, key);
+        }
+        key.append("]");
+    }
+
+    /**
+     * @hide
+     */
+    private static void appendPredicateKey(List<Predicate> predicates, StringBuilder key) {
+        key.append("[");
+        for (Predicate predicate : predicates) {
+            predicate.appendKey(key);
+            key.append(KEY_SEPARATOR);
+        }
+        key.append("]");
     }
 
     /**
@@ -123,20 +634,21 @@ public class QueryProcessor {
      *
      * @param root {@link Root} of query.
      * @param sql Instance of {@link StringBuilder} containing current sql.
+     * @param aliases {@link Alias} context of query.
      *
      * @since 1.2.0
      *
      * @hide
      */
-    private void createSelect(Root<?> root, StringBuilder sql) {
+    private void createSelect(Root<?> root, StringBuilder sql, Alias aliases) {
         Class<?> model = root.getModel();
 
         sql.append("SELECT ");
-        sql.append(generateSelectForModel(model, Alias.forModel(model)));
+        sql.append(generateSelectForModel(root, aliases.forModel(model)));
 
-        alterSelect(root, sql);
+        alterSelect(root, sql, aliases);
 
-        sql.append(" FROM ").append(resolveName(model)).append(" ").append(Alias.forModel(model)).append(" ");
+        sql.append(" FROM ").append(resolveName(model)).append(" ").append(aliases.forModel(model)).append(" ");
     }
 
     /**
@@ -145,30 +657,32 @@ public class QueryProcessor {
      *
      * @param root {@link Root} where to create query from.
      * @param sql {@link StringBuilder} containing current sql.
+     * @param aliases {@link Alias} context of query.
      *
      * @since 1.2.0
      *
      * @hide
      */
-    private void alterSelect(Root<?> root, StringBuilder sql) {
+    private void alterSelect(Root<?> root, StringBuilder sql, Alias aliases) {
         for (Root r : root.getJoins()) {
             Join join = (Join) r;
             if (join.isFetch()) {
                 sql.append(", ");
-                sql.append(generateSelectForModel(join.getModel(), Alias.forJoin(join)));
+                sql.append(generateSelectForModel(join, aliases.forJoin(join)));
             }
             if (!root.getJoins().isEmpty()) {
-                alterSelect(join, sql);
+                alterSelect(join, sql, aliases);
             }
         }
     }
 
     /**
-     * Generates select statement for given model class. Model class must be instance of database
+     * Generates select statement for given root. Model class of root must be instance of database
      * entity classes. Select statement will be aliased and all the columns that are in database
-     * will be returned.
+     * will be returned unless root has selection of fields. Then only columns of selected fields
+     * and id are returned.
      *
-     * @param model Instance of {@link Class} of model class of database table entities.
+     * @param root {@link Root} to generate select for.
      * @param alias String alias for model class.
      * @return String containing select statement without "SELECT" in the beginning for given model.
      *
@@ -176,24 +690,47 @@ public class QueryProcessor {
      *
      * @hide
      */
-    private String generateSelectForModel(Class<?> model, String alias) {
-        Schema table = schema.getElement(resolveName(model));
+    private String generateSelectForModel(Root<?> root, String alias) {
+        Schema table = schema.getElement(resolveName(root.getModel()));
+        Set<String> columns = resolveSelectedColumns(root);
 
         StringBuilder select = new StringBuilder();
 
-        Iterator<String> colIterator = table.getElements().keySet().iterator();
-        while (colIterator.hasNext()) {
-
-            select.append(alias).append(".").append(colIterator.next());
-
-            if (colIterator.hasNext()) {
-                select.append(", ");
+        for (String column : table.getElements().keySet()) {
+            if (columns == null || columns.contains(column)) {
+                if (select.length() > 0) {
+                    select.append(", ");
+                }
+                select.append(alias).append(".").append(column);
             }
         }
 
         return select.toString();
     }
 
+    /**
+     * Resolve column names of selected fields of given root with the id column.
+     *
+     * @return Set of column names or null if all the columns are selected.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private static Set<String> resolveSelectedColumns(Root<?> root) {
+        if (root.getSelection() == null) {
+            return null;
+        }
+
+        Set<String> columns = new HashSet<>();
+        columns.add(resolvePrimaryKey(root.getModel()));
+        for (String field : root.getSelection()) {
+            columns.add(resolveName(ReflectionUtils.findField(root.getModel(), field)));
+        }
+
+        return columns;
+    }
+
     /**
      * Create where statement without "WHERE" in the beginning. Where statement is created from
      * provided predicates.
@@ -204,155 +741,135 @@ public class QueryProcessor {
      * @param root {@link Root} of where statement.
      * @param sql {@link StringBuilder} current sql.
      * @param predicateBuilder {@link PredicateBuilder} WHERE statement query builder.
-     * @return String array of parameters from predicates.
+     * @param aliases {@link Alias} context of query.
+     * @param dateStorages List where storages of dates of predicates are added in order of the
+     * predicates or null if not needed.
+     * @return Object array of typed parameters from predicates.
      *
      * @since 1.2.0
      *
      * @hide
      */
-    private String[] createWhere(Root<?> root, StringBuilder sql, PredicateBuilder predicateBuilder) {
-        String[] args = new String[0];
+    private Object[] createWhere(Root<?> root, StringBuilder sql, PredicateBuilder predicateBuilder,
+                                 Alias aliases, List<DateStorage> dateStorages) {
+        List<Object> args = new ArrayList<>();
         String alias = null;
 
         if (root.getModel() != null) {
-            alias = Alias.forModel(root.getModel());
+            alias = aliases.forModel(root.getModel());
         }
 
         Iterator<Predicate> iterator = predicateBuilder.getPredicates().iterator();
 
-        // Loop through all predicates to create where clause
+        // Render all predicates in single pass and collect their args in the same order
         while (iterator.hasNext()) {
             Predicate predicate = iterator.next();
+            predicate.render(sql, alias);
 
-            // Create grouping for junctions
-            if (predicate instanceof Junction) {
-                sql.append("(");
-                Iterator<Predicate> junctionIterator = ((Junction) predicate).getPredicates().iterator();
-
-                while (junctionIterator.hasNext()) {
-                    Predicate junction = junctionIterator.next();
-
-                    sql.append(formatClause(junction.getClause(), alias));
-
-                    if (junctionIterator.hasNext()) {
-                        sql.append(((Junction) predicate).getOperator().getValue());
-                    }
-
-                    // Only add args to array from junction if there actually is arguments.
-                    String[] junctionArgs = junction.getArgs();
-                    if (junctionArgs.length > 0) {
-                        args = addArgsToArray(args, junctionArgs);
-                    }
-                }
-                sql.append(")");
-
-                if (iterator.hasNext()) {
-                    sql.append(BooleanOperator.AND.getValue());
-                }
-
-            } else {
-                /*
-                 * Non junctions are just added to to where clause.
-                 */
-                sql.append(formatClause(predicate.getClause(), alias));
-
-                if (iterator.hasNext()) {
-                    sql.append(BooleanOperator.AND.getValue());
-                }
-
-                // Add args only if args are provided.
-                String[] predicateArgs = predicate.getArgs();
-                if (predicateArgs.length > 0) {
-                    args = addArgsToArray(args, predicateArgs);
-                }
+            if (iterator.hasNext()) {
+                sql.append(BooleanOperator.AND.getValue());
             }
+
+            addArgs(root, predicate, aliases, args, dateStorages);
         }
 
-        return args;
+        return args.toArray();
     }
 
     /**
-     * Append given args to array of args.
-     * @param array String[] array to append.
-     * @param args String[] to take args from.
-     * @return new string array containing previous args and newly appended args.
-     *
-     * @since 1.2.0
+     * Add typed values of given predicate to list of args. Storage of dates of the predicate is
+     * added to given list of storages if provided. Predicates of junctions are added recursively.
      *
      * @hide
      */
-    private String[] addArgsToArray(String[] array, String[] args) {
-        String[] newArray = new String[array.length + args.length];
-        System.arraycopy(array, 0, newArray, 0, array.length);
-        System.arraycopy(args, 0, newArray, array.length, args.length);
+    private void addArgs(Root<?> root, Predicate predicate, Alias aliases, List<Object> args,
+                         List<DateStorage> dateStorages) {
+        if (predicate instanceof Junction) {
+            for (Predicate junction : ((Junction) predicate).getPredicates()) {
+                addArgs(root, junction, aliases, args, dateStorages);
+            }
+
+            return;
+        }
+
+        DateStorage dateStorage = resolveDateStorage(root, predicate, aliases);
+        if (dateStorages != null) {
+            dateStorages.add(dateStorage);
+        }
 
-        return newArray;
+        Collections.addAll(args, predicate.getValues(dateStorage));
     }
 
     /**
-     * Formats WHERE clause without WHERE text appended to follow rules of database.
+     * Resolve storage of dates used to bind arguments of given predicate. Storage is resolved from
+     * the column of the predicate field. If column cannot be resolved default storage of schema
+     * will be used.
      *
-     * <ul>
-     *     <li>Formats clause's "this" prefixes as alias provided.</li>
-     *     <li>Formats empty prefixed columns with alias provided.</li>
-     *     <li>Formats .id fields as ._id since Android primary key field is prefixed with "_" underscore.</li>
-     * </ul>
+     * @param root {@link Root} of where statement.
+     * @param predicate {@link Predicate} to resolve storage for.
+     * @param aliases {@link Alias} context of query.
+     * @return Resolved {@link DateStorage}.
      *
-     * @param clause String sql clause to format aliases.
-     * @param alias String value of alias to use. Can be null if no formatting is required.
-     * @return String value of clause formatted if table name was provided otherwise returns the original
-     * clause.
-     * @hide
+     * @since 2.1.4
      *
-     * @since 1.1.2
+     * @hide
      */
-    private static String formatClause(String clause, String alias) {
-        String formatted = clause;
-
-        // format "this" prefixes to use correct alias alias
-        if (!StringUtils.isBlank(alias)) {
-            formatted = clause.replace("this", alias);
+    private DateStorage resolveDateStorage(Root<?> root, Predicate predicate, Alias aliases) {
+        DateStorage defaultStorage = schema.getDateStorage() == null ? DateStorage.TEXT : schema.getDateStorage();
+        String field = predicate.getField();
+        if (StringUtils.isBlank(field) || root.getModel() == null) {
+            return defaultStorage;
         }
 
-        // format .id fields to match correct primary key by adding "_" underscore in front.
-        formatted = formatted.replace(".id", ".".concat(NameResolver.ID_FIELD_SUFFIX));
-
-        StringTokenizer tokens = new StringTokenizer(formatted, " ");
-        StringBuilder formattedBuilder = new StringBuilder();
-        while (tokens.hasMoreElements()) {
-            String token = tokens.nextToken();
-
-            // check that token is not a reserved word nor symbol
-            if (!Predicate.isSymbol(token) && !ReservedWords.has(token)) {
+        Class<?> model = root.getModel();
+        int index = field.lastIndexOf(".");
+        if (index > -1) {
+            String prefix = field.substring(0, index);
+            field = field.substring(index + 1);
 
-                // if token really is column name in database and alias is provided
-                if (!token.contains(".") && !token.startsWith("(") && !token.startsWith(Predicate.PARAM_PLACE_HOLDER) && !StringUtils.isBlank(alias)) {
-                    if (token.equals("id")) {
-                        token = NameResolver.ID_FIELD_SUFFIX;
-                    }
+            if (!prefix.equals("this") && !prefix.equals(aliases.forModel(model))) {
+                model = findJoinModel(root, prefix, aliases);
+            }
+        }
 
-                    if (token.contains("(") && token.contains("?")) {
-                        formattedBuilder.append(token);
+        Field modelField = model == null ? null : ReflectionUtils.findField(model, field);
+        if (modelField == null || !Date.class.isAssignableFrom(modelField.getType())) {
+            return defaultStorage;
+        }
 
-                    } else {
-                        formattedBuilder.append(alias.concat(".").concat(token));
-                    }
+        Schema table = schema.getElement(resolveName(model));
+        Schema column = table == null ? null : table.getElement(resolveName(modelField));
 
-                } else {
-                    formattedBuilder.append(token); // otherwise add token.
-                }
+        return column == null || column.getDateStorage() == null
+                ? DateStorage.resolve(modelField, defaultStorage) : column.getDateStorage();
+    }
 
-            } else {
-                formattedBuilder.append(token); // just add token as it does not contain relative information
+    /**
+     * Find model of join by given alias from join tree of root.
+     *
+     * @param root {@link Root} to look join for.
+     * @param alias String alias of join.
+     * @param aliases {@link Alias} context of query.
+     * @return Model class of join or null if not found.
+     *
+     * @since 2.1.4
+     *
+     * @hide
+     */
+    private static Class<?> findJoinModel(Root<?> root, String alias, Alias aliases) {
+        for (Root<?> r : root.getJoins()) {
+            Join join = (Join) r;
+            if (alias.equals(aliases.forJoin(join))) {
+                return join.getModel();
             }
 
-            // lastly add " " space to text.
-            if (tokens.hasMoreElements()) {
-                formattedBuilder.append(" ");
+            Class<?> model = findJoinModel(join, alias, aliases);
+            if (model != null) {
+                return model;
             }
         }
 
-        return formattedBuilder.toString();
+        return null;
     }
 
     /**
@@ -406,13 +923,9 @@ public class QueryProcessor {
 
         filter.filter(root, builder);
         StringBuilder sql = new StringBuilder();
-        String[] args = createWhere(root, sql, builder);
+        Object[] values = createWhere(root, sql, builder, new Alias(), null);
 
-        if (modelClass != null) {
-            Alias.clearCache();
-        }
-
-        return new Query(sql.toString(), args);
+        return new Query(sql.toString(), values);
     }
 
     /**
@@ -421,15 +934,16 @@ public class QueryProcessor {
      *
      * @param root Instance of {@link Root} where to create joins from.
      * @param sql Instance of {@link StringBuilder} that contains current sql.
+     * @param aliases {@link Alias} context of query.
      *
      * @since 1.2.0
      *
      * @hide
      */
-    private void createJoins(Root<?> root, StringBuilder sql) {
+    private void createJoins(Root<?> root, StringBuilder sql, Alias aliases) {
         Class<?> model = root.getModel();
 
-        String rootAlias = Alias.forModel(model);
+        String rootAlias = aliases.forModel(model);
         String rootTable = resolveName(model);
 
         for (Root<?> r : root.getJoins()) {
@@ -439,7 +953,7 @@ public class QueryProcessor {
 
             if (targetField.isAnnotationPresent(ManyToMany.class)) {
 
-                createMiddleTableJoin(rootAlias, rootTable, join, sql);
+                createMiddleTableJoin(rootAlias, rootTable, join, sql, aliases);
 
             } else if (targetField.isAnnotationPresent(ManyToOne.class) ||
                     (targetField.isAnnotationPresent(OneToOne.class)
@@ -450,7 +964,7 @@ public class QueryProcessor {
                  */
                 joinSql(sql, join.getJoinMode(), resolveName(join.getModel()),
                         resolvePrimaryKey(model), rootAlias, resolveReverseJoinColumnName(model, join.getModel()),
-                        Alias.forJoin(join), true);
+                        aliases.forJoin(join), true);
             } else {
 
                 /*
@@ -459,11 +973,11 @@ public class QueryProcessor {
 
                 //TODO if target field has column annotation use it as the name
                 joinSql(sql, join.getJoinMode(), resolveName(join.getModel()), resolvePrimaryKey(model),
-                        rootAlias, resolveReverseJoinColumnName(join.getModel(), model), Alias.forJoin(join), false);
+                        rootAlias, resolveReverseJoinColumnName(join.getModel(), model), aliases.forJoin(join), false);
             }
 
             if (!join.getJoins().isEmpty()) {
-                createJoins(join, sql);
+                createJoins(join, sql, aliases);
             }
         }
     }
@@ -476,24 +990,21 @@ public class QueryProcessor {
      * @param rootTable String name of root table join will be created from.
      * @param join instance of {@link Join} between root table and joined table.
      * @param sql {@link StringBuilder} containing current sql.
+     * @param aliases {@link Alias} context of query.
      *
      * @since 1.2.0
      *
      * @hide
      */
-    private void createMiddleTableJoin(String rootAlias, String rootTable, Join join, StringBuilder sql) {
+    private void createMiddleTableJoin(String rootAlias, String rootTable, Join join, StringBuilder sql, Alias aliases) {
         String targetTable = resolveName(join.getModel());
 
-        Schema middleTable = findTableByName(rootTable.concat("_").concat(targetTable));
-        if (middleTable == null) {
-            middleTable = findTableByName(targetTable.concat("_").concat(rootTable));
-        }
-
+        Schema middleTable = schema.getMiddleTable(rootTable, targetTable);
         if (middleTable == null) {
             throw new QueryBuildException("Failed to create join from table: " + rootTable + " to " + targetTable + ", no middle table found!");
         }
 
-        String middleTableAlias = Alias.generateAlias(middleTable.getName());
+        String middleTableAlias = aliases.generateAlias(middleTable.getName());
 
         for (Reference reference : middleTable.getReferences()) {
 
@@ -504,7 +1015,7 @@ public class QueryProcessor {
 
             if (reference.getReferenceTableName().equals(targetTable)) {
                 joinSql(sql, join.getJoinMode(), targetTable, reference.getColumnName(),
-                        middleTableAlias, NameResolver.ID_FIELD_SUFFIX, Alias.forJoin(join), false);
+                        middleTableAlias, NameResolver.ID_FIELD_SUFFIX, aliases.forJoin(join), false);
             }
         }
     }
@@ -525,7 +1036,7 @@ public class QueryProcessor {
      * @hide
      */
     private String resolveReverseJoinColumnName(Class<?> model, Class<?> reverseModel) {
-        Schema table = findTableByName(resolveName(model));
+        Schema table = schema.getElement(resolveName(model));
         String reverseJoinTableName = resolveName(reverseModel);
 
         for (Reference reference : table.getReferences()) {
@@ -538,26 +1049,6 @@ public class QueryProcessor {
                 + " to: " + reverseModel.getName() + " no reverse join column in table: " + table.getName());
     }
 
-    /**
-     * Find table by name from Schema.
-     *
-     * @param tableName String name of table.
-     * @return Found table or null if not found.
-     *
-     * @since 1.2.0
-     *
-     * @hide
-     */
-    private Schema findTableByName(String tableName) {
-        for (Schema table : Schema.toSet(schema)) {
-            if (table.getName().equals(tableName)) {
-                return table;
-            }
-        }
-
-        return null;
-    }
-
     /**
      * Creates join sql with given join mode to target table according given parameters.
      *
@@ -582,19 +1073,139 @@ public class QueryProcessor {
                 .append(toColumn).append(" ");
     }
 
+    /**
+     * Shape of sql compiled to query template.
+     *
+     * @hide
+     */
+    private enum TemplateMode {
+
+        /**
+         * Select entities with their fetch joins.
+         */
+        SELECT,
+
+        /**
+         * Select ids of root entities of a page. Sort columns are aggregated per root entity.
+         */
+        PAGE_IDS,
+
+        /**
+         * Select entities with their fetch joins restricted to ids of root entities of a page.
+         */
+        FETCH_PAGE,
+
+        /**
+         * Count distinct root entities.
+         */
+        COUNT,
+
+        /**
+         * Check existence of any root entity.
+         */
+        EXISTS,
+
+        /**
+         * Select aggregate functions of {@link Aggregate}.
+         */
+        AGGREGATE
+    }
+
+    /**
+     * Compiled sql of query with storages of dates needed to bind arguments of its predicates.
+     *
+     * @hide
+     */
+    private static class QueryTemplate {
+
+        private final String sql;
+        private final DateStorage[] dateStorages;
+        private final boolean paged;
+
+        QueryTemplate(String sql, DateStorage[] dateStorages, boolean paged) {
+            this.sql = sql;
+            this.dateStorages = dateStorages;
+            this.paged = paged;
+        }
+
+        /**
+         * Bind typed arguments of predicates of given builder in order they appear in sql of this
+         * template. Limit and offset of paged template are bound last.
+         */
+        Object[] bindArgs(PredicateBuilder builder) {
+            List<Object> args = new ArrayList<>();
+            bindArgs(builder.getPredicates(), args, 0);
+            if (paged) {
+                Collections.addAll(args, builder.getPageValues());
+            }
+
+            return args.toArray();
+        }
+
+        /**
+         * Bind typed arguments of IN predicates using temporary tables of given builder to their
+         * tables. See {@link Query#getIdTables()}.
+         */
+        Map<String, Object[]> bindIdTables(PredicateBuilder builder) {
+            Map<String, Object[]> idTables = new LinkedHashMap<>();
+            bindIdTables(builder.getPredicates(), idTables, 0);
+
+            return idTables;
+        }
+
+        /**
+         * @return int index of storage of dates of next predicate.
+         */
+        private int bindIdTables(List<Predicate> predicates, Map<String, Object[]> idTables, int index) {
+            for (Predicate predicate : predicates) {
+                if (predicate instanceof Junction) {
+                    index = bindIdTables(((Junction) predicate).getPredicates(), idTables, index);
+                } else if (predicate instanceof In && ((In) predicate).getIdTable() != null) {
+                    idTables.put(((In) predicate).getIdTable(), ((In) predicate).getIdTableValues(dateStorages[index++]));
+                } else {
+                    index++;
+                }
+            }
+
+            return index;
+        }
+
+        /**
+         * Bind arguments of given predicates and predicates of their junctions recursively.
+         *
+         * @return int index of storage of dates of next predicate.
+         */
+        private int bindArgs(List<Predicate> predicates, List<Object> args, int index) {
+            for (Predicate predicate : predicates) {
+                if (predicate instanceof Junction) {
+                    index = bindArgs(((Junction) predicate).getPredicates(), args, index);
+                } else {
+                    Collections.addAll(args, predicate.getValues(dateStorages[index++]));
+                }
+            }
+
+            return index;
+        }
+    }
+
     /**
      * Alias provides centralized way of aliasing sql queries to database tables. It can be used
      * to create alias for entities of database or joins created with filters.
      *
-     * <p>All sql queries are aliased via this class to maintain integrity inside queries.</p>
+     * <p>All sql queries are aliased via this class to maintain integrity inside queries. Aliases
+     * are scoped to a single query. Each query is built with its own alias context so queries can
+     * be built concurrently from multiple threads.</p>
      *
      * @since 1.2.0
      */
     public static class Alias {
 
-        private static AtomicInteger count = new AtomicInteger();
+        private int count;
 
-        private static Map<Class<?>, String> aliasMap = new HashMap<>();
+        private final Map<Class<?>, String> aliasMap = new HashMap<>();
+
+        Alias() {
+        }
 
         /**
          * Get alias for join. If custom alias is used then it will be returned otherwise alias
@@ -606,7 +1217,7 @@ public class QueryProcessor {
          *
          * @since 1.2.0
          */
-        public static String forJoin(Join join) {
+        public String forJoin(Join join) {
 
             /*
              * If alias is empty and it does not exist in cache add new one.
@@ -615,10 +1226,7 @@ public class QueryProcessor {
 
                 return forModel(join.getModel());
             } else {
-                String alias = join.getAlias();
-//                aliasMap.put(join.getModel(), alias);
-
-                return alias;
+                return join.getAlias();
             }
         }
 
@@ -632,7 +1240,7 @@ public class QueryProcessor {
          *
          * @since 1.2.0
          */
-        public static String forModel(Class<?> model) {
+        public String forModel(Class<?> model) {
             String alias = aliasMap.get(model);
 
             /*
@@ -653,7 +1261,7 @@ public class QueryProcessor {
          *
          * @since 1.2.0
          */
-        static String generateAlias(String tableName) {
+        String generateAlias(String tableName) {
             StringBuilder aliasBuilder = new StringBuilder(String.valueOf(tableName.charAt(0)));
             int index;
             while ((index = tableName.indexOf("_")) > -1) {
@@ -661,23 +1269,7 @@ public class QueryProcessor {
                 tableName = tableName.substring(index + 1);
             }
 
-            return aliasBuilder.append(String.valueOf(count.incrementAndGet())).toString();
+            return aliasBuilder.append(String.valueOf(++count)).toString();
         }
-
-        /**
-         * Clear alias cache. If done, it should not be done during the query building process in order
-         * to avoid broken queries.
-         *
-         * @since 1.2.0
-         */
-        static void clearCache() {
-            if (aliasMap != null) {
-                aliasMap.clear();
-            }
-            if (count != null) {
-                count.set(0);
-            }
-        }
-
     }
 }
@@ -26,9 +26,12 @@ package db.juhaku.juhakudb.filter;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import db.juhaku.juhakudb.exception.IllegalJoinException;
+import db.juhaku.juhakudb.exception.QueryBuildException;
 import db.juhaku.juhakudb.util.ReflectionUtils;
 
 /**
@@ -47,6 +50,8 @@ public class Root<T> {
 
     private List<Root<T>> joins;
 
+    private Set<String> selection;
+
     /**
      * Create new root for given model class. Model class must be an entity in database. Newly created
      * root will be the starting point of joins to sql queries.
@@ -135,6 +140,43 @@ public class Root<T> {
         return join;
     }
 
+    /**
+     * Select only given fields of this root. By default all the columns of root and its fetch
+     * joins are selected. Selecting only needed fields makes rows narrow and more of them fit to
+     * cursor window at once. Id is always selected.
+     *
+     * <p>Fields that are not selected are left to their default values in converted entities.
+     * Storing such entity only writes the fields that are changed after it was loaded.</p>
+     *
+     * @param fields String array of names of fields of model of this root.
+     * @return This root.
+     *
+     * @since 2.1.4
+     */
+    public Root<T> select(String... fields) {
+        Set<String> selection = new LinkedHashSet<>();
+        for (String field : fields) {
+            if (ReflectionUtils.findField(model, field) == null) {
+                throw new QueryBuildException("Could not select field: " + field + ", no such field in: " + model);
+            }
+            selection.add(field);
+        }
+        this.selection = Collections.unmodifiableSet(selection);
+
+        return this;
+    }
+
+    /**
+     * Get names of fields selected from this root. See {@link #select(String...)}.
+     *
+     * @return Set of names of selected fields or null if all the fields are selected.
+     *
+     * @since 2.1.4
+     */
+    public Set<String> getSelection() {
+        return selection;
+    }
+
     /**
      * Get list of joins added to this root. Joins can either be regular joins or fetch joins.
      * @return instance of {@link ArrayList} containing joins added.
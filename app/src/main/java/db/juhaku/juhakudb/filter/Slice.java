@@ -0,0 +1,92 @@
+/**
+MIT License
+
+Copyright (c) 2018 juhaku
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package db.juhaku.juhakudb.filter;
+
+import java.util.List;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * <p>Slice is a page of keyset pagination. It contains entities of the page and continuation
+ * to fetch the next page with. Continuation is the values of keyset columns of the last entity
+ * of the page. See {@link PredicateBuilder#seekAfter(Order, String[], Object[])}.</p>
+ *
+ * @author juha
+ *
+ * @since 2.1.4
+ */
+public class Slice<T> {
+
+    private List<T> content;
+    private Object[] next;
+
+    /**
+     * Initialize new slice.
+     *
+     * @param content List of entities of the slice.
+     * @param next Object array of values of keyset columns of the last entity or null if there
+     *             are no more entities after this slice.
+     *
+     * @since 2.1.4
+     */
+    public Slice(List<T> content, Object[] next) {
+        this.content = content;
+        this.next = next;
+    }
+
+    /**
+     * Get entities of this slice.
+     *
+     * @return List of entities.
+     *
+     * @since 2.1.4
+     */
+    public List<T> getContent() {
+        return content;
+    }
+
+    /**
+     * Get continuation of next slice. Continuation is passed as last values to keyset pagination
+     * to fetch next slice.
+     *
+     * @return Object array of values of keyset columns of the last entity of this slice or null
+     * if this is the last slice.
+     *
+     * @since 2.1.4
+     */
+    public Object[] getNext() {
+        return next;
+    }
+
+    /**
+     * Check whether there are more entities after this slice.
+     *
+     * @return boolean true if next slice can be fetched; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    public boolean hasNext() {
+        return next != null;
+    }
+}
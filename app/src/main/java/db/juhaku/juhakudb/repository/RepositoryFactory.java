@@ -32,6 +32,7 @@ import java.lang.reflect.Proxy;
 import db.juhaku.juhakudb.annotation.Repository;
 import db.juhaku.juhakudb.annotation.Repository.NoRepository;
 import db.juhaku.juhakudb.core.android.EntityManager;
+import db.juhaku.juhakudb.core.android.StoreStrategy;
 import db.juhaku.juhakudb.repository.android.SimpleAndroidRepository;
 import db.juhaku.juhakudb.util.ReflectionUtils;
 import db.juhaku.juhakudb.util.StringUtils;
@@ -79,6 +80,7 @@ public class RepositoryFactory {
         if (interf.isAnnotationPresent(Repository.class)) {
 
             Class<?> impl = interf.getAnnotation(Repository.class).value();
+            StoreStrategy storeStrategy = interf.getAnnotation(Repository.class).storeStrategy();
 
             /*
              * If impl refers to no repository then use default implementation for interface.
@@ -87,20 +89,28 @@ public class RepositoryFactory {
             if (impl.isAssignableFrom(NoRepository.class)) {
                 Class<?> entity = ReflectionUtils.getInterfaceGenericTypes(interf)[1];
 
+                SimpleAndroidRepository repository;
                 if (baseRepositoryClass == null) {
 
-                    return proxyImpl(interf, new SimpleAndroidRepository(em, entity) {});
+                    repository = new SimpleAndroidRepository(em, entity) {};
                 } else {
 
-                    return proxyImpl(interf, (SimpleAndroidRepository)
-                            customBaseImpl(baseRepositoryClass, em, entity));
+                    repository = customBaseImpl(baseRepositoryClass, em, entity);
                 }
+                repository.setStoreStrategy(storeStrategy);
+
+                return proxyImpl(interf, repository);
 
 
             } else {
 
                 // If real implementation is provided return the provided impl for interface.
-                return (T) customImpl(interf.getAnnotation(Repository.class).value(), em);
+                SimpleAndroidRepository repository = customImpl(interf.getAnnotation(Repository.class).value(), em);
+                if (repository != null) {
+                    repository.setStoreStrategy(storeStrategy);
+                }
+
+                return (T) repository;
             }
 
         }
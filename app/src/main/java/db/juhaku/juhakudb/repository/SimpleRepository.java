@@ -27,8 +27,13 @@ import java.util.Collection;
 import java.util.List;
 
 import db.juhaku.juhakudb.core.android.ResultTransformer;
+import db.juhaku.juhakudb.core.android.RowCallback;
+import db.juhaku.juhakudb.core.android.StoreStrategy;
+import db.juhaku.juhakudb.filter.Aggregate;
 import db.juhaku.juhakudb.filter.Filter;
+import db.juhaku.juhakudb.filter.Order;
 import db.juhaku.juhakudb.filter.Query;
+import db.juhaku.juhakudb.filter.Slice;
 
 /**
  * Created by juha on 18/04/17.
@@ -64,7 +69,11 @@ public interface SimpleRepository<K, T> {
      *
      * <p>Store operation uses replace on conflict algorithm when storing items. This means when
      * primary key or unique constraint or other constraint has conflict the row will be replaced with
-     * provided data.</p>
+     * provided data. This can be changed with store strategy of the repository, see
+     * {@link db.juhaku.juhakudb.annotation.Repository#storeStrategy()}.</p>
+     *
+     * <p>Entities that have been loaded from or stored to database are updated instead and only
+     * the columns changed since then are written.</p>
      *
      * <p>Store operation is cascading.</p>
      *
@@ -93,6 +102,30 @@ public interface SimpleRepository<K, T> {
      */
     List<T> storeAll(Collection<T> objects);
 
+    /**
+     * Stores given entity with given store strategy. This overrides the store strategy of the
+     * repository for this call. See {@link #store(Object)}.
+     *
+     * @param object Object that must be database entity.
+     * @param strategy {@link StoreStrategy} to store entities not known to be persisted.
+     * @return Stored instance of given object.
+     *
+     * @since 2.1.4
+     */
+    T store(T object, StoreStrategy strategy);
+
+    /**
+     * Stores collection of given entities with given store strategy. This overrides the store
+     * strategy of the repository for this call. See {@link #storeAll(Collection)}.
+     *
+     * @param objects Collection of entities.
+     * @param strategy {@link StoreStrategy} to store entities not known to be persisted.
+     * @return List of stored instances of given entities.
+     *
+     * @since 2.1.4
+     */
+    List<T> storeAll(Collection<T> objects, StoreStrategy strategy);
+
     /**
      * Removes entity with given id from database completely. Remove operation is performed for entity
      * that the current repository is managing. Remove operation is cascading.
@@ -128,6 +161,21 @@ public interface SimpleRepository<K, T> {
      */
     T findOne(final K id);
 
+    /**
+     * Find entities with given ids from database. Query is performed for entity that the
+     * repository is managing. Ids that are not found are ignored and each entity is returned once
+     * regardless of duplicate ids.
+     *
+     * <p>Ids are queried with IN clause which is split to several queries if there are more ids
+     * than fits to single sql statement. Results of the queries are merged.</p>
+     *
+     * @param ids Collection of ids of the entities to look for.
+     * @return List of found entities or empty list if none is found.
+     *
+     * @since 2.1.4
+     */
+    List<T> findAllById(Collection<K> ids);
+
     /**
      * Find one entity with given filter. Filter can be a single instance of {@link Filter} or
      * list of filters can be provided as {@link db.juhaku.juhakudb.filter.Filters}. In any case
@@ -161,6 +209,78 @@ public interface SimpleRepository<K, T> {
      */
     List<T> find(Filter<T> filter);
 
+    /**
+     * Count entities matching given filter without loading them. Sort and page of the filter are
+     * ignored.
+     *
+     * @param filter Instance of {@link Filter} to create query for current entity as the root entity.
+     * @return long number of matching entities.
+     *
+     * @since 2.1.4
+     */
+    long count(Filter<T> filter);
+
+    /**
+     * Check whether any entity matches given filter without loading it.
+     *
+     * @param filter Instance of {@link Filter} to create query for current entity as the root entity.
+     * @return boolean true if at least one entity matches; false otherwise.
+     *
+     * @since 2.1.4
+     */
+    boolean exists(Filter<T> filter);
+
+    /**
+     * Perform aggregate query for entities matching given filter. E.g. count entities by group
+     * with {@code aggregate(filter, new Aggregate().groupBy("g.name").count())}.
+     *
+     * @param filter Instance of {@link Filter} to create query for current entity as the root entity.
+     * @param aggregate {@link Aggregate} describing aggregate functions and grouping.
+     * @return List of rows where each row contains values of group by fields followed by values
+     * of aggregate functions. Without grouping there is exactly one row.
+     *
+     * @since 2.1.4
+     */
+    List<Object[]> aggregate(Filter<T> filter, Aggregate aggregate);
+
+    /**
+     * Find slice of entities with given filter using keyset pagination. Entities are sorted by
+     * given columns and only entities after given continuation are returned. Unlike paging with
+     * offset each slice costs an index seek regardless of how deep it is.
+     *
+     * <p>Columns must be columns of the entity and they should identify entities uniquely thus
+     * the last column is typically id. Continuation of next slice is available from
+     * {@link Slice#getNext()}.</p>
+     *
+     * @param filter Instance of {@link Filter} to create query for current entity as the root entity.
+     * @param order {@link Order} of the columns.
+     * @param size int maximum number of entities in slice.
+     * @param after Object array of continuation of previous slice or null for the first slice.
+     * @param columns String array of columns to sort and seek by.
+     * @return {@link Slice} of found entities.
+     *
+     * @since 2.1.4
+     */
+    Slice<T> findSlice(Filter<T> filter, Order order, int size, Object[] after, String... columns);
+
+    /**
+     * Stream entities found with given filter to given callback one at a time. Unlike
+     * {@link #find(Filter)} the result is not collected to a list thus memory usage stays flat
+     * regardless of the size of the result. This is suitable e.g. for exporting large tables.
+     *
+     * <p>Entities are passed to callback in the order they are returned from database. Entity with
+     * fetch joins is passed once all of its adjacent rows are read. Instances are not shared
+     * between entities passed to the callback. Eager fetches are queried for a bounded batch of
+     * entities at once before the entities of the batch are passed to the callback.</p>
+     *
+     * @param filter Instance of {@link Filter} to create query for current entity as the root entity.
+     * @param callback Instance of {@link RowCallback} to receive the entities.
+     * @return Int number of entities passed to the callback.
+     *
+     * @since 2.1.4
+     */
+    int stream(Filter<T> filter, RowCallback<T> callback);
+
     /**
      * Perform custom query to database and return the result. Result can be transformed with
      * {@link ResultTransformer}. Query can contain the sql and args as array. If args is provided
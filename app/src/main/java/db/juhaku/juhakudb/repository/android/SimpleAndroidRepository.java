@@ -23,6 +23,7 @@ SOFTWARE.
 */
 package db.juhaku.juhakudb.repository.android;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -31,14 +32,19 @@ import javax.persistence.Id;
 import db.juhaku.juhakudb.core.NameResolver;
 import db.juhaku.juhakudb.core.android.EntityManager;
 import db.juhaku.juhakudb.core.android.ResultTransformer;
+import db.juhaku.juhakudb.core.android.RowCallback;
+import db.juhaku.juhakudb.core.android.StoreStrategy;
 import db.juhaku.juhakudb.exception.MappingException;
 import db.juhaku.juhakudb.exception.NameResolveException;
+import db.juhaku.juhakudb.filter.Aggregate;
 import db.juhaku.juhakudb.filter.Filter;
+import db.juhaku.juhakudb.filter.Order;
 import db.juhaku.juhakudb.filter.Predicate;
 import db.juhaku.juhakudb.filter.PredicateBuilder;
 import db.juhaku.juhakudb.filter.Predicates;
 import db.juhaku.juhakudb.filter.Query;
 import db.juhaku.juhakudb.filter.Root;
+import db.juhaku.juhakudb.filter.Slice;
 import db.juhaku.juhakudb.repository.SimpleRepository;
 import db.juhaku.juhakudb.util.ReflectionUtils;
 
@@ -61,6 +67,7 @@ public abstract class SimpleAndroidRepository<K, T>  implements SimpleRepository
 
     private Class<?> persistentClass;
     private EntityManager entityManager;
+    private StoreStrategy storeStrategy = StoreStrategy.REPLACE;
 
     /**
      * Initialize new instance of simple android repository. Persistent class will be resolved
@@ -87,14 +94,47 @@ public abstract class SimpleAndroidRepository<K, T>  implements SimpleRepository
         this.persistentClass = persistentClass;
     }
 
+    /**
+     * Get store strategy of this repository.
+     *
+     * @return {@link StoreStrategy} used when storing entities.
+     *
+     * @since 2.1.4
+     */
+    public StoreStrategy getStoreStrategy() {
+        return storeStrategy;
+    }
+
+    /**
+     * Set store strategy of this repository. Strategy is used for all the store operations that
+     * do not define strategy explicitly.
+     *
+     * @param storeStrategy {@link StoreStrategy} to use when storing entities.
+     *
+     * @since 2.1.4
+     */
+    public void setStoreStrategy(StoreStrategy storeStrategy) {
+        this.storeStrategy = storeStrategy;
+    }
+
     @Override
     public T store(T object) {
-        return entityManager.store(object);
+        return store(object, storeStrategy);
     }
 
     @Override
     public List<T> storeAll(Collection<T> objects) {
-        return entityManager.store(objects);
+        return storeAll(objects, storeStrategy);
+    }
+
+    @Override
+    public T store(T object, StoreStrategy strategy) {
+        return entityManager.store(object, strategy);
+    }
+
+    @Override
+    public List<T> storeAll(Collection<T> objects, StoreStrategy strategy) {
+        return entityManager.store(objects, strategy);
     }
 
     @Override
@@ -117,6 +157,20 @@ public abstract class SimpleAndroidRepository<K, T>  implements SimpleRepository
         });
     }
 
+    @Override
+    public List<T> findAllById(final Collection<K> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return find(new Filter<T>() {
+            @Override
+            public void filter(Root<T> root, PredicateBuilder builder) {
+                builder.in(resolveIdColumnName(), ids.toArray());
+            }
+        });
+    }
+
     @Override
     public T findOne(Filter<T> filter) {
         List<T> result = find(filter);
@@ -144,6 +198,31 @@ public abstract class SimpleAndroidRepository<K, T>  implements SimpleRepository
         return entityManager.query(persistentClass, filter);
     }
 
+    @Override
+    public long count(Filter<T> filter) {
+        return entityManager.count(persistentClass, filter);
+    }
+
+    @Override
+    public boolean exists(Filter<T> filter) {
+        return entityManager.exists(persistentClass, filter);
+    }
+
+    @Override
+    public List<Object[]> aggregate(Filter<T> filter, Aggregate aggregate) {
+        return entityManager.aggregate(persistentClass, filter, aggregate);
+    }
+
+    @Override
+    public Slice<T> findSlice(Filter<T> filter, Order order, int size, Object[] after, String... columns) {
+        return entityManager.querySlice(persistentClass, filter, order, size, after, columns);
+    }
+
+    @Override
+    public int stream(Filter<T> filter, RowCallback<T> callback) {
+        return entityManager.stream(persistentClass, filter, callback);
+    }
+
     @Override
     public <E> E find(Query query, ResultTransformer<E> resultTransformer) {
         return entityManager.query(persistentClass, query, resultTransformer);
@@ -23,6 +23,10 @@ SOFTWARE.
 */
 package db.juhaku.juhakudb.util;
 
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
 /**
  * Created by juha on 14/03/17.
  * <p>Utility enum for mapping reserved words for SQL queries and ORM mapping.</p>
@@ -36,6 +40,14 @@ public enum ReservedWords {
     IS, NULL, BETWEEN, ASC, DESC, LIMIT, ORDER, BY, OFFSET, MIN, MAX, AVG, SUM, COUNT,
     LOWER, UPPER, ABS, COALESCE, LENGTH, TRIM;
 
+    private static final Set<String> WORDS = new HashSet<>();
+
+    static {
+        for (ReservedWords reservedWord : values()) {
+            WORDS.add(reservedWord.name());
+        }
+    }
+
     /**
      * Check if given word belongs to reserved words. Word match is searched case insensitive.
      * @param word String value of word to look for.
@@ -43,12 +55,6 @@ public enum ReservedWords {
      * @since 1.1.2
      */
     public static boolean has(String word) {
-        for (ReservedWords reservedWord : ReservedWords.values()) {
-            if (reservedWord.toString().equalsIgnoreCase(word)) {
-                return true;
-            }
-        }
-
-        return false;
+        return word != null && WORDS.contains(word.toUpperCase(Locale.ENGLISH));
     }
 }
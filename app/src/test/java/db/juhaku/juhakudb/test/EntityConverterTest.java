@@ -0,0 +1,312 @@
+package db.juhaku.juhakudb.test;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import db.juhaku.juhakudb.core.DatabaseConfiguration;
+import db.juhaku.juhakudb.core.android.EntityConverter;
+import db.juhaku.juhakudb.core.android.RowCallback;
+import db.juhaku.juhakudb.core.schema.Schema;
+import db.juhaku.juhakudb.filter.Filter;
+import db.juhaku.juhakudb.filter.JoinMode;
+import db.juhaku.juhakudb.filter.PredicateBuilder;
+import db.juhaku.juhakudb.filter.Query;
+import db.juhaku.juhakudb.filter.QueryProcessor;
+import db.juhaku.juhakudb.filter.Root;
+import db.juhaku.juhakudb.test.bean.Authority;
+import db.juhaku.juhakudb.test.bean.ClassRoom;
+import db.juhaku.juhakudb.test.bean.Group;
+import db.juhaku.juhakudb.test.bean.Level;
+import db.juhaku.juhakudb.test.bean.Permission;
+import db.juhaku.juhakudb.test.bean.Person;
+import db.juhaku.juhakudb.test.bean.Teacher;
+import db.juhaku.juhakudb.test.util.ListCursor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by juha on 17/10/26.
+ *
+ * @author juha
+ */
+public class EntityConverterTest {
+
+    private static final int ROWS = 50;
+    private static final int ROOMS = 3;
+    private static final long LARGE_ID = 5000000000L;
+
+    private static Query personQuery;
+    private static Query classRoomQuery;
+    private static Query permissionQuery;
+
+    @BeforeClass
+    public static void createQueries() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class, Authority.class, Permission.class});
+
+        QueryProcessor processor = new QueryProcessor(schema);
+
+        personQuery = processor.createQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                root.fetch("rooms", "r", JoinMode.LEFT_JOIN);
+            }
+        });
+        classRoomQuery = processor.createQuery(ClassRoom.class, new Filter<ClassRoom>() {
+            @Override
+            public void filter(Root<ClassRoom> root, PredicateBuilder builder) {
+            }
+        });
+        permissionQuery = processor.createQuery(Permission.class, new Filter<Permission>() {
+            @Override
+            public void filter(Root<Permission> root, PredicateBuilder builder) {
+            }
+        });
+    }
+
+    @Test
+    public void convertFetchJoin() throws Exception {
+        assertPersons(new EntityConverter().<Person>convertCursorToEntityList(personCursor(), personQuery.getRoot()));
+    }
+
+    @Test
+    public void shareInstancesByIdentity() throws Exception {
+        ListCursor cursor = new ListCursor("_id", "username", "_id", "name")
+                .addRow(1, "user1", 10, "room10")
+                .addRow(1, "user1", 10, "room10")
+                .addRow(2, "user2", 10, "room10")
+                .addRow(1, "user1", 11, "room11")
+                .addRow(3, "user3", null, null);
+
+        List<Person> persons = new EntityConverter().convertCursorToEntityList(cursor, personQuery.getRoot());
+
+        assertEquals(3, persons.size());
+        assertEquals(Integer.valueOf(1), persons.get(0).getId());
+        assertEquals(Integer.valueOf(2), persons.get(1).getId());
+        assertEquals(Integer.valueOf(3), persons.get(2).getId());
+        assertEquals(2, persons.get(0).getRooms().size());
+        assertEquals(1, persons.get(1).getRooms().size());
+        assertSame(persons.get(0).getRooms().get(0), persons.get(1).getRooms().get(0));
+        assertTrue(persons.get(2).getRooms().isEmpty());
+    }
+
+    @Test
+    public void closeCursorAfterConversion() throws Exception {
+        ListCursor cursor = personCursor();
+        new EntityConverter().convertCursorToEntityList(cursor, personQuery.getRoot());
+
+        assertTrue(cursor.isClosed());
+    }
+
+    @Test
+    public void streamAdjacentRows() throws Exception {
+        ListCursor cursor = new ListCursor("_id", "username", "_id", "name")
+                .addRow(1, "user1", 10, "room10")
+                .addRow(1, "user1", 11, "room11")
+                .addRow(2, "user2", 10, "room10")
+                .addRow(3, "user3", null, null);
+
+        final List<Person> persons = new ArrayList<>();
+        EntityConverter converter = new EntityConverter();
+        int count = converter.convertCursorToEntities(cursor, personQuery.getRoot(), new RowCallback<Person>() {
+            @Override
+            public void onRow(Person entity) {
+                persons.add(entity);
+            }
+        });
+
+        assertEquals(3, count);
+        assertEquals(3, persons.size());
+        assertEquals(Integer.valueOf(1), persons.get(0).getId());
+        assertEquals(2, persons.get(0).getRooms().size());
+        assertEquals(1, persons.get(1).getRooms().size());
+        assertTrue(persons.get(2).getRooms().isEmpty());
+        assertNull("snapshot of streamed entity", converter.getSnapshot(persons.get(0)));
+    }
+
+    @Test
+    public void convertProjection() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        Query query = new QueryProcessor(schema).createQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                root.select("id").fetch("rooms", "r", JoinMode.LEFT_JOIN).select("name");
+            }
+        });
+        assertTrue(query.getSql(), query.getSql().startsWith("SELECT p1._id, r._id, r.name FROM person p1 "));
+
+        ListCursor cursor = new ListCursor("_id", "_id", "name")
+                .addRow(1, 10, "room10")
+                .addRow(1, 11, "room11");
+        List<Person> persons = new EntityConverter().convertCursorToEntityList(cursor, query.getRoot());
+
+        assertEquals(1, persons.size());
+        assertEquals(Integer.valueOf(1), persons.get(0).getId());
+        assertNull(persons.get(0).getUsername());
+        assertEquals(2, persons.get(0).getRooms().size());
+        assertEquals("room11", persons.get(0).getRooms().get(1).getName());
+    }
+
+    @Test
+    public void readRealColumnAsDouble() throws Exception {
+        ListCursor cursor = new ListCursor("value").addRow(0.1d);
+        cursor.moveToFirst();
+
+        Object value = new EntityConverter().cursorToCustomResultSet(cursor).get("value").getColumnValue();
+        assertEquals(Double.valueOf(0.1d), value);
+    }
+
+    @Test
+    public void convertAllColumnTypes() throws Exception {
+        assertPermissions(new EntityConverter().<Permission>convertCursorToEntityList(permissionCursor(), permissionQuery.getRoot()));
+    }
+
+    @Test
+    public void snapshotLoadedColumns() throws Exception {
+        EntityConverter converter = new EntityConverter();
+        Permission permission = converter.<Permission>convertCursorToEntityList(permissionCursor(),
+                permissionQuery.getRoot()).get(0);
+
+        Object[] snapshot = converter.getSnapshot(permission);
+        assertNotNull(snapshot);
+        assertTrue(Arrays.deepEquals(snapshot, converter.entityToColumnValues(permission)));
+
+        permission.setValue("changed");
+        Object[] values = converter.entityToColumnValues(permission);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals("column " + i, i == 8, !Arrays.deepEquals(new Object[]{snapshot[i]}, new Object[]{values[i]}));
+        }
+        assertNull(converter.getSnapshot(new Permission()));
+    }
+
+    @Test
+    public void convertConcurrentlyWithSharedConverter() throws Exception {
+        final EntityConverter converter = new EntityConverter();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 600; i++) {
+                final int task = i % 3;
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        if (task == 0) {
+                            assertPersons(converter.<Person>convertCursorToEntityList(personCursor(), personQuery.getRoot()));
+                        } else if (task == 1) {
+                            assertClassRooms(converter.<ClassRoom>convertCursorToEntityList(classRoomCursor(), classRoomQuery.getRoot()));
+                        } else {
+                            assertPermissions(converter.<Permission>convertCursorToEntityList(permissionCursor(), permissionQuery.getRoot()));
+                        }
+
+                        return null;
+                    }
+                }));
+            }
+
+            // Rethrows any assertion error or exception that occurred in worker threads.
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ListCursor personCursor() {
+        ListCursor cursor = new ListCursor("_id", "username", "_id", "name");
+        for (int i = 1; i <= ROWS; i++) {
+            for (int room = 1; room <= ROOMS; room++) {
+                cursor.addRow(i, "user" + i, i * 10 + room, "room" + (i * 10 + room));
+            }
+        }
+
+        return cursor;
+    }
+
+    private static void assertPersons(List<Person> persons) {
+        assertEquals(ROWS, persons.size());
+        for (int i = 0; i < ROWS; i++) {
+            Person person = persons.get(i);
+            assertEquals(Integer.valueOf(i + 1), person.getId());
+            assertEquals("user" + (i + 1), person.getUsername());
+            assertNotNull(person.getRooms());
+            assertEquals(ROOMS, person.getRooms().size());
+            for (int room = 0; room < ROOMS; room++) {
+                ClassRoom classRoom = person.getRooms().get(room);
+                int id = (i + 1) * 10 + room + 1;
+                assertEquals(Integer.valueOf(id), classRoom.getId());
+                assertEquals("room" + id, classRoom.getName());
+            }
+        }
+    }
+
+    private static ListCursor classRoomCursor() {
+        ListCursor cursor = new ListCursor("_id", "name");
+        for (int i = 1; i <= ROWS; i++) {
+            cursor.addRow(i, "class" + i);
+        }
+
+        return cursor;
+    }
+
+    private static void assertClassRooms(List<ClassRoom> classRooms) {
+        assertEquals(ROWS, classRooms.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(Integer.valueOf(i + 1), classRooms.get(i).getId());
+            assertEquals("class" + (i + 1), classRooms.get(i).getName());
+            assertNull(classRooms.get(i).getPersons());
+        }
+    }
+
+    private static ListCursor permissionCursor() {
+        ListCursor cursor = new ListCursor("_id", "a_boolean", "a_double", "a_float", "data", "date",
+                "integer", "level", "value");
+        for (int i = 1; i <= ROWS; i++) {
+            cursor.addRow(LARGE_ID + i, i % 2, i + 0.1d, i + 0.25f, new byte[]{(byte) i},
+                    "2017-04-18 12:30:00.000", i * 100, i % 2 == 0 ? Level.MASTER.name() : Level.GRAND_MASTER.name(),
+                    "value" + i);
+        }
+
+        return cursor;
+    }
+
+    private static void assertPermissions(List<Permission> permissions) {
+        assertEquals(ROWS, permissions.size());
+        for (int i = 0; i < ROWS; i++) {
+            Permission permission = permissions.get(i);
+            int row = i + 1;
+            assertEquals(Long.valueOf(LARGE_ID + row), permission.getId());
+            assertEquals(row % 2 != 0, permission.getaBoolean());
+            assertEquals(row + 0.1d, permission.getaDouble(), 0d);
+            assertEquals(row + 0.25f, permission.getaFloat(), 0.0001f);
+            assertEquals(row, permission.getData()[0]);
+            assertNotNull(permission.getDate());
+            assertEquals(Integer.valueOf(row * 100), permission.getInteger());
+            assertEquals(row % 2 == 0 ? Level.MASTER : Level.GRAND_MASTER, permission.getLevel());
+            assertEquals("value" + row, permission.getValue());
+        }
+    }
+}
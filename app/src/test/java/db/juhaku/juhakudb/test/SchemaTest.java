@@ -2,10 +2,26 @@ package db.juhaku.juhakudb.test;
 
 import org.junit.Test;
 
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import db.juhaku.juhakudb.core.DatabaseConfiguration;
+import db.juhaku.juhakudb.core.android.transaction.DeletePlan;
 import db.juhaku.juhakudb.core.schema.Constraint;
+import db.juhaku.juhakudb.core.schema.DateStorage;
+import db.juhaku.juhakudb.core.schema.ReferenceAction;
 import db.juhaku.juhakudb.core.schema.Schema;
 import db.juhaku.juhakudb.core.schema.Schema.DDL;
+import db.juhaku.juhakudb.filter.Aggregate;
 import db.juhaku.juhakudb.filter.Filter;
 import db.juhaku.juhakudb.filter.Filters;
 import db.juhaku.juhakudb.filter.JoinMode;
@@ -22,7 +38,10 @@ import db.juhaku.juhakudb.test.bean.Permission;
 import db.juhaku.juhakudb.test.bean.Person;
 import db.juhaku.juhakudb.test.bean.Teacher;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by juha on 22/12/15.
@@ -227,6 +246,30 @@ public class SchemaTest {
         System.out.println(query);
     }
 
+    @Test
+    public void storeDatesAsEpochMillis() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setVersion(1);
+        configuration.setDateStorage(DateStorage.EPOCH_MILLIS);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{Permission.class});
+
+        Schema table = schema.getElement("permission");
+        assertTrue("date column not integer", table.toDDL(DDL.CREATE).contains("date INTEGER"));
+        assertEquals(DateStorage.EPOCH_MILLIS, table.getElement("date").getDateStorage());
+
+        final Date from = new Date(1000L);
+        final Date to = new Date(2000L);
+        Query query = new QueryProcessor(schema).createQuery(Permission.class, new Filter<Permission>() {
+            @Override
+            public void filter(Root<Permission> root, PredicateBuilder builder) {
+                builder.between("this.date", from, to);
+            }
+        });
+
+        assertArrayEquals(new String[]{"1000", "2000"}, query.getArgs());
+    }
+
     @Test
     public void testSortAndOrder() throws Exception {
         DatabaseConfiguration configuration = new DatabaseConfiguration();
@@ -251,4 +294,505 @@ public class SchemaTest {
         assertNotNull("query not null", query);
         System.out.println(query);
     }
+
+    @Test
+    public void restoreSchemaOfEarlierVersion() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(2);
+        Class<?>[] entities = new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class, Authority.class, Permission.class};
+        Schema schema = Schema.newInstance(configuration, entities);
+
+        // Schema file is written by version 1.x of the library.
+        Schema oldSchema = restoreSchema("/testdb_1.schema");
+        for (Schema table : Schema.toSet(schema)) {
+            Schema oldTable = oldSchema.getElement(table.getName());
+            assertNotNull("table not restored: " + table.getName(), oldTable);
+            assertEquals(table.toDDL(DDL.CREATE), oldTable.toDDL(DDL.CREATE));
+            assertTrue("table requires rebuild: " + table.getName(), !DDL.requiresRebuild(table, oldTable));
+        }
+
+        configuration.setDateStorage(DateStorage.EPOCH_MILLIS);
+        Schema epochSchema = Schema.newInstance(configuration, entities);
+        assertTrue("date storage not migrated", DDL.requiresRebuild(epochSchema.getElement("permission"),
+                oldSchema.getElement("permission")));
+    }
+
+    @Test
+    public void rebuildOnlyTablesWithOldColumnTypes() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setDateStorage(DateStorage.EPOCH_MILLIS);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{Permission.class});
+        Schema permission = schema.getElement("permission");
+
+        // Declared column types as read from table created by 1.x of the library.
+        Map<String, String> columnTypes = new LinkedHashMap<>();
+        columnTypes.put("_id", "INTEGER");
+        columnTypes.put("a_boolean", "NUMERIC");
+        columnTypes.put("a_double", "REAL");
+        columnTypes.put("a_float", "REAL");
+        columnTypes.put("data", "BLOB");
+        columnTypes.put("date", "TEXT");
+        columnTypes.put("integer", "INTEGER");
+        columnTypes.put("level", "TEXT");
+        columnTypes.put("value", "TEXT");
+        assertTrue("date column not rebuilt", DDL.requiresRebuild(permission, DDL.existingTable("permission", columnTypes)));
+
+        // Once rebuilt, retrying the rebuild must not convert dates again.
+        columnTypes.put("date", "INTEGER");
+        assertTrue("rebuilt table rebuilt again", !DDL.requiresRebuild(permission, DDL.existingTable("permission", columnTypes)));
+    }
+
+    private static Schema restoreSchema(String resource) throws Exception {
+        ObjectInputStream in = new ObjectInputStream(SchemaTest.class.getResourceAsStream(resource));
+        try {
+            return (Schema) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void planCascadeDelete() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        DeletePlan plan = DeletePlan.forTable(schema, "person");
+        assertTrue("plan is not cached", plan == DeletePlan.forTable(schema, "person"));
+
+        String orphans = "_id IN ({ids}) AND _id NOT IN (SELECT rooms_id FROM person_class_room WHERE rooms_id IS NOT NULL)";
+        assertEquals(Arrays.asList(
+                "SELECT DISTINCT rooms_id FROM person_class_room WHERE person_id IN ({ids})",
+                "DELETE FROM person_class_room WHERE person_id IN ({ids})",
+                "DELETE FROM teacher WHERE class_room_id IN (SELECT _id FROM class_room WHERE " + orphans + ")",
+                "DELETE FROM class_room WHERE " + orphans,
+                "DELETE FROM group WHERE person_id IN ({ids})",
+                "DELETE FROM person WHERE _id IN ({ids})"), plan.getStatements());
+    }
+
+    @Test
+    public void leaveCascadeToDatabase() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        configuration.setOnDelete(ReferenceAction.CASCADE);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        assertTrue("foreign key without action", schema.getElement("group").toDDL(DDL.CREATE)
+                .contains("REFERENCES person(_id) ON DELETE CASCADE"));
+
+        List<String> statements = DeletePlan.forTable(schema, "group").getStatements();
+        assertEquals(1, statements.size());
+
+        for (String statement : DeletePlan.forTable(schema, "person").getStatements()) {
+            assertTrue("cascaded table deleted by plan: " + statement, !statement.startsWith("DELETE FROM group")
+                    && !statement.startsWith("DELETE FROM teacher"));
+        }
+
+        // Actions of existing tables are read from PRAGMA foreign_key_list.
+        assertEquals(ReferenceAction.CASCADE, ReferenceAction.fromSql("CASCADE"));
+        assertEquals(ReferenceAction.SET_NULL, ReferenceAction.fromSql("SET NULL"));
+        assertEquals(ReferenceAction.NO_ACTION, ReferenceAction.fromSql("NO ACTION"));
+        assertEquals(ReferenceAction.NO_ACTION, ReferenceAction.fromSql("RESTRICT"));
+    }
+
+    @Test
+    public void deleteMiddleTableRowsByPlan() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        configuration.setOnDelete(ReferenceAction.SET_NULL);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        String middleTable = schema.getMiddleTable("person", "class_room").toDDL(DDL.CREATE);
+        assertTrue("middle table keys nulled", middleTable.contains("REFERENCES person(_id) ON DELETE CASCADE")
+                && middleTable.contains("REFERENCES class_room(_id) ON DELETE CASCADE"));
+
+        String orphans = "_id IN ({ids}) AND _id NOT IN (SELECT rooms_id FROM person_class_room WHERE rooms_id IS NOT NULL)";
+        assertEquals(Arrays.asList(
+                "SELECT DISTINCT rooms_id FROM person_class_room WHERE person_id IN ({ids})",
+                "DELETE FROM person_class_room WHERE person_id IN ({ids})",
+                "DELETE FROM class_room WHERE " + orphans,
+                "DELETE FROM person WHERE _id IN ({ids})"), DeletePlan.forTable(schema, "person").getStatements());
+    }
+
+    @Test
+    public void indexTables() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        Schema middleTable = schema.getMiddleTable("class_room", "person");
+        assertNotNull("middle table not found", middleTable);
+        assertTrue("middle table differs by order", middleTable == schema.getMiddleTable("person", "class_room"));
+
+        List<Schema> tables = schema.getReferencingTables("person");
+        assertEquals(2, tables.size());
+        assertTrue("middle table not referencing", tables.contains(middleTable));
+        assertTrue("group not referencing", tables.contains(schema.getElement("group")));
+        assertTrue("unreferenced table has references", schema.getReferencingTables("teacher").isEmpty());
+
+        // Indexes are not persisted, they are built for restored schema on demand.
+        Schema oldSchema = restoreSchema("/testdb_1.schema");
+        assertNotNull("middle table of restored schema not found", oldSchema.getMiddleTable("person", "class_room"));
+        assertEquals(2, oldSchema.getReferencingTables("person").size());
+    }
+
+    @Test
+    public void cacheQueryTemplates() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        QueryProcessor processor = new QueryProcessor(schema, 1);
+        Query first = processor.createQuery(Person.class, findByUsername("matti"));
+        Query second = processor.createQuery(Person.class, findByUsername("kimmo"));
+
+        assertEquals(first.getSql(), second.getSql());
+        assertArrayEquals(new String[]{"kimmo"}, second.getArgs());
+        assertEquals(1, processor.getTemplateCacheHits());
+        assertEquals(1, processor.getTemplateCacheMisses());
+
+        processor.createQuery(ClassRoom.class, new Filter<ClassRoom>() {
+            @Override
+            public void filter(Root<ClassRoom> root, PredicateBuilder builder) {
+                builder.eq("name", "a");
+            }
+        });
+        processor.createQuery(Person.class, findByUsername("laura"));
+        assertEquals("evicted template was not compiled again", 3, processor.getTemplateCacheMisses());
+    }
+
+    @Test
+    public void sharePagedAndInTemplates() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        QueryProcessor processor = new QueryProcessor(schema);
+        for (int i = 0; i < 5; i++) {
+            final int page = i;
+            processor.createQuery(Person.class, new Filter<Person>() {
+                @Override
+                public void filter(Root<Person> root, PredicateBuilder builder) {
+                    builder.setPageSize(10).setPage(page);
+                }
+            });
+        }
+        assertEquals("pages do not share template", 1, processor.getTemplateCacheMisses());
+
+        Query query = null;
+        for (int i = 5; i <= 8; i++) {
+            query = processor.createQuery(Person.class, findByIds(i));
+        }
+        assertEquals("IN clauses of similar size do not share template", 2, processor.getTemplateCacheMisses());
+        assertEquals(8, query.getValues().length);
+
+        query = processor.createQuery(Person.class, findByIds(5));
+        assertArrayEquals(new Object[]{1L, 2L, 3L, 4L, 5L, 5L, 5L, 5L}, query.getValues());
+    }
+
+    private static Filter<Person> findByIds(int count) {
+        final Object[] ids = new Object[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = (long) i + 1;
+        }
+
+        return new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                builder.in("id", ids);
+            }
+        };
+    }
+
+    private static Filter<Person> findByUsername(final String username) {
+        return new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                root.fetch("rooms", JoinMode.LEFT_JOIN);
+                builder.eq("username", username);
+            }
+        };
+    }
+
+    @Test
+    public void buildQueriesConcurrently() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        // Templates are not cached so that aliases are allocated for every query.
+        final QueryProcessor processor = new QueryProcessor(schema, 0);
+        final Filter<ClassRoom> classRoomFilter = new Filter<ClassRoom>() {
+            @Override
+            public void filter(Root<ClassRoom> root, PredicateBuilder builder) {
+                root.fetch("persons", JoinMode.INNER_JOIN).join("groups", JoinMode.LEFT_JOIN);
+                root.join("teacher", JoinMode.LEFT_JOIN);
+                builder.eq("this.name", "a");
+            }
+        };
+        final String personSql = processor.createQuery(Person.class, findByUsername("matti")).getSql();
+        final String classRoomSql = processor.createQuery(ClassRoom.class, classRoomFilter).getSql();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            final boolean person = i % 2 == 0;
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    if (person) {
+                        return personSql.equals(processor.createQuery(Person.class, findByUsername("matti")).getSql());
+                    }
+
+                    return classRoomSql.equals(processor.createQuery(ClassRoom.class, classRoomFilter).getSql());
+                }
+            }));
+        }
+        executor.shutdown();
+
+        for (Future<Boolean> result : results) {
+            assertTrue("query built with wrong aliases", result.get());
+        }
+    }
+
+    @Test
+    public void renderPredicates() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        Query query = new QueryProcessor(schema).createQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                root.join("groups", "g", JoinMode.LEFT_JOIN);
+                builder.gt("id", 1).not().like("this.username", "m%").not().gt("g.id", 2)
+                        .not().in("thistle", 1, 1).disjunction().isNull("username").not().isNull("g.name");
+            }
+        });
+
+        String where = query.getSql().substring(query.getSql().indexOf("WHERE "));
+        assertEquals("WHERE p1._id > ? AND p1.username NOT LIKE ? AND g._id <= ? AND p1.thistle NOT IN (?, ?)"
+                + " AND (p1.username IS NULL OR g.name IS NOT NULL)", where);
+        assertArrayEquals(new String[]{"1", "m%", "2", "1", "1"}, query.getArgs());
+    }
+
+    @Test
+    public void bindTypedValues() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        final byte[] blob = new byte[]{1, 2};
+        Query query = new QueryProcessor(schema).createQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                builder.eq("id", 1).eq("username", "kimmo").eq("thistle", true).eq("username", 1.5f)
+                        .eq("username", blob);
+            }
+        });
+
+        assertArrayEquals(new Object[]{1L, "kimmo", 1L, 1.5d, blob}, query.getValues());
+        assertArrayEquals(new String[]{"1", "kimmo", "1", "1.5", null}, query.getArgs());
+    }
+
+    @Test
+    public void chunkLargeInClause() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        final List<Object> ids = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            ids.add(i % 2000);
+        }
+        QueryProcessor processor = new QueryProcessor(schema);
+        Query query = processor.createQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                builder.eq("username", "kimmo").in("id", ids.toArray());
+            }
+        });
+
+        assertEquals(3, query.getChunks().size());
+        assertEquals(999, query.getChunks().get(0).getValues().length);
+        assertEquals(999, query.getChunks().get(1).getValues().length);
+        assertEquals(5, query.getChunks().get(2).getValues().length);
+        assertEquals("kimmo", query.getChunks().get(2).getValues()[0]);
+        assertEquals(1999L, query.getChunks().get(2).getValues()[4]);
+        assertEquals(2, processor.getTemplateCacheMisses());
+
+        // Results of chunks cannot be sorted together thus ids are selected from temporary table.
+        Query sorted = processor.createQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                builder.in("id", ids.toArray()).sort(Order.ASC, "username");
+            }
+        });
+        assertTrue("sorted query was split", sorted.getChunks().isEmpty());
+        assertEquals(0, sorted.getValues().length);
+        assertTrue(sorted.getSql(), sorted.getSql().contains("._id IN (SELECT value FROM temp.juhakudb_ids_0)"));
+        assertEquals(1, sorted.getIdTables().size());
+        assertEquals(2500, sorted.getIdTables().get("juhakudb_ids_0").length);
+        assertEquals(1999L, sorted.getIdTables().get("juhakudb_ids_0")[1999]);
+
+        Query count = processor.createCountQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                builder.in("id", ids.toArray());
+            }
+        });
+        assertEquals(3, count.getChunks().size());
+
+        count = processor.createCountQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                root.join("groups", "g", JoinMode.INNER_JOIN);
+                builder.in("g.id", ids.toArray());
+            }
+        });
+        assertTrue("count by joined column was split", count.getChunks().isEmpty());
+        assertEquals(0, count.getValues().length);
+        assertEquals(2500, count.getIdTables().get("juhakudb_ids_0").length);
+
+        Query aggregate = processor.createAggregateQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                builder.not().in("id", ids.toArray()).eq("username", "kimmo");
+            }
+        }, new Aggregate().count("id"));
+        assertTrue(aggregate.getSql(), aggregate.getSql().contains("._id NOT IN (SELECT value FROM temp.juhakudb_ids_0)"));
+        assertArrayEquals(new Object[]{"kimmo"}, aggregate.getValues());
+
+        Query exists = processor.createExistsQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                root.join("groups", "g", JoinMode.INNER_JOIN);
+                builder.in("g.id", ids.toArray());
+            }
+        });
+        assertEquals(3, exists.getChunks().size());
+    }
+
+    @Test
+    public void pageRootIdsFirst() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        Query query = new QueryProcessor(schema).createQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                root.fetch("groups", "g", JoinMode.LEFT_JOIN);
+                builder.eq("g.name", "admins").sort(Order.DESC, "username").sort(Order.ASC, "g.name");
+                builder.setPageSize(20).setPage(2);
+            }
+        });
+
+        // Root entity with many groups is ordered by its first group in the order.
+        String ids = query.getPageQuery().getSql();
+        assertTrue(ids, ids.startsWith("SELECT p1._id FROM person p1 "));
+        assertTrue(ids, ids.endsWith("WHERE g.name = ? GROUP BY p1._id ORDER BY MIN(g.name) ASC, MAX(username) DESC"
+                + " LIMIT ? OFFSET ?"));
+        assertArrayEquals(new Object[]{"admins", 20L, 40L}, query.getPageQuery().getValues());
+        assertTrue(query.getSql(), query.getSql().endsWith("WHERE g.name = ? AND p1._id IN ({ids})"
+                + " ORDER BY g.name ASC, username DESC"));
+
+        Query page = query.withPageIds(Arrays.<Object>asList(3L, 1L));
+        assertTrue(page.getSql(), page.getSql().contains("p1._id IN (?, ?)"));
+        assertArrayEquals(new Object[]{"admins", 3L, 1L}, page.getValues());
+    }
+
+    @Test
+    public void seekAfterKeyset() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        Query query = new QueryProcessor(schema).createQuery(Person.class, new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                builder.eq("username", "kimmo").seekAfter(Order.DESC, new String[]{"username", "id"},
+                        new Object[]{"kimmo", 20}).setPageSize(11);
+            }
+        });
+
+        String where = query.getSql().substring(query.getSql().indexOf("WHERE "));
+        assertEquals("WHERE p1.username = ? AND (p1.username < ? OR (p1.username = ? AND p1._id < ?))"
+                + " ORDER BY p1.username DESC, p1._id DESC LIMIT ?", where);
+        assertArrayEquals(new Object[]{"kimmo", "kimmo", "kimmo", 20L, 11L}, query.getValues());
+    }
+
+    @Test
+    public void compileAggregateQueries() throws Exception {
+        DatabaseConfiguration configuration = new DatabaseConfiguration();
+        configuration.setName("testdb");
+        configuration.setBasePackages("db.juhaku.juhakudb.test.bean");
+        configuration.setVersion(1);
+        Schema schema = Schema.newInstance(configuration, new Class<?>[]{
+                Teacher.class, Person.class, ClassRoom.class, Group.class});
+
+        QueryProcessor processor = new QueryProcessor(schema);
+        Filter<Person> filter = new Filter<Person>() {
+            @Override
+            public void filter(Root<Person> root, PredicateBuilder builder) {
+                root.join("groups", "g", JoinMode.INNER_JOIN);
+                builder.eq("username", "kimmo").sort(Order.ASC, "g.name");
+            }
+        };
+
+        String count = processor.createCountQuery(Person.class, filter).getSql();
+        assertTrue(count, count.startsWith("SELECT COUNT(DISTINCT p1._id) FROM person p1 "));
+        assertTrue(count, count.endsWith("WHERE p1.username = ?"));
+
+        String exists = processor.createExistsQuery(Person.class, filter).getSql();
+        assertTrue(exists, exists.startsWith("SELECT EXISTS (SELECT 1 FROM person p1 "));
+        assertTrue(exists, exists.endsWith("WHERE p1.username = ?)"));
+
+        Query aggregate = processor.createAggregateQuery(Person.class, filter,
+                new Aggregate().groupBy("g.name").count().max("id"));
+        assertTrue(aggregate.getSql(), aggregate.getSql().startsWith("SELECT g.name, COUNT(*), MAX(p1._id) FROM person p1 "));
+        assertTrue(aggregate.getSql(), aggregate.getSql().endsWith("WHERE p1.username = ? GROUP BY g.name ORDER BY g.name ASC"));
+        assertArrayEquals(new Object[]{"kimmo"}, aggregate.getValues());
+    }
 }